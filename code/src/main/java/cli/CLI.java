@@ -19,6 +19,22 @@ public class CLI {
         options.addOption("r", "reformat", false, "Reformat SPL code and exit (WARNING: Removes comments)");
         options.addOption("v", "version", false, "Print the version of the compiler");
         options.addOption("p", "python", false, "Compile to Python instead of SSM");
+        options.addOption("b", "bytecode", false, "Compile to a JVM class file instead of SSM, and run it in the JVM of the compiler (not with -p or -n)");
+        options.addOption("e", "embedded", false, "Run the SSM code in the built-in SSM machine instead of starting ssm.jar");
+        options.addOption("o", "object", false, "Write the SSM code in the compact binary format (.sso) and run it in the built-in SSM machine (not with -p or -b)");
+        options.addOption(Option.builder("d").longOpt("disassemble").hasArg().argName("file")
+                .desc("Print the SSM code of a file in the binary format as text").build());
+        options.addOption(Option.builder("t").longOpt("timeout").hasArg().argName("seconds")
+                .desc("Stop the SSM or Python process if it runs longer than this").build());
+        options.addOption("j", "parallel", false, "Parse the top-level declarations and typecheck the function bodies in parallel");
+        options.addOption("n", "incremental", false, "Reuse the code of the functions that did not change since the last compilation");
+        options.addOption(Option.builder("O").longOpt("optimize").hasArg().optionalArg(true).argName("rules")
+                .desc("Optimize with all rules or a comma separated list of: ast (simplify the program before "
+                        + "generating code), and the peephole rules for the SSM code nops, constants, conditions, "
+                        + "loads_stores, jumps, dead_code").build());
+        options.addOption(Option.builder("a").longOpt("cds-archive").hasArg().argName("file")
+                .desc("Compile the input file once to create a class data archive that makes the compiler start "
+                        + "faster, and print how to use it").build());
         options.addOption("h", "help", false, "Show compiler usage");
 
         return options;
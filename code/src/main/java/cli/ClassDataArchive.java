@@ -0,0 +1,96 @@
+package cli;
+
+import org.apache.commons.cli.CommandLine;
+import org.apache.commons.cli.Option;
+import org.apache.commons.cli.ParseException;
+
+import java.io.IOException;
+import java.net.URISyntaxException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Creates an AppCDS archive of the classes the compiler loads, so the JVM can map them from the archive instead of
+ * loading and verifying them from the jar on every start. For a small file this is most of the time of a compile.
+ * <p>
+ * The archive is written by a training run of the compiler in a new JVM with -XX:ArchiveClassesAtExit, which needs
+ * Java 13 or newer. It is used by starting the compiler with -XX:SharedArchiveFile and the same jar.
+ */
+public class ClassDataArchive {
+
+    private final Path archive;
+    private final Path jar;
+
+    /**
+     * @param archive file to write the archive to
+     * @throws ParseException if the compiler does not run from a jar, as only classes from jars are archived
+     */
+    public ClassDataArchive(String archive) throws ParseException {
+        this.archive = Paths.get(archive).toAbsolutePath();
+        try {
+            this.jar = Paths.get(Main.class.getProtectionDomain().getCodeSource().getLocation().toURI());
+        } catch (URISyntaxException e) {
+            throw new ParseException("The location of the compiler could not be found: " + e.getMessage());
+        }
+        if (!jar.toString().endsWith(".jar")) {
+            throw new ParseException("A class data archive can only be created when the compiler runs from its jar");
+        }
+    }
+
+    /**
+     * @return whether the JVM the compiler runs in, which also runs the training, can write an archive
+     */
+    public static boolean isSupported() {
+        // "1.8" up to Java 8, "9", "10" and so on after that
+        String version = System.getProperty("java.specification.version");
+        return !version.startsWith("1.") && Integer.parseInt(version) >= 13;
+    }
+
+    /**
+     * Compiles the program of the command line in a training run, without running it, and writes the archive.
+     * @param cmd the command line, its options except the archive are passed on to the training run
+     * @return the exit code of the training run
+     */
+    public int create(CommandLine cmd) throws IOException, InterruptedException {
+        List<String> command = new ArrayList<>();
+        command.add(Paths.get(System.getProperty("java.home"), "bin", "java").toString());
+        command.add("-XX:ArchiveClassesAtExit=" + archive);
+        // Classes of commons-cli are too old to be archived, which is not worth a warning
+        command.add("-Xlog:cds=off");
+        command.add("-Xlog:cds+dynamic=off");
+        command.add("-cp");
+        command.add(jar.toString());
+        command.add(Main.class.getName());
+        for (Option option : cmd.getOptions()) {
+            if (!option.getOpt().equals("a") && !option.getOpt().equals("c")) {
+                command.add("-" + option.getOpt());
+                if (option.getValue() != null) {
+                    command.add(option.getValue());
+                }
+            }
+        }
+        command.add("-c");
+
+        // The JVM does not overwrite an archive, which it creates read-only
+        Files.deleteIfExists(archive);
+        Process process = new ProcessBuilder(command).inheritIO().start();
+        return process.waitFor();
+    }
+
+    /**
+     * @return whether the archive file exists
+     */
+    public boolean isWritten() {
+        return Files.isRegularFile(archive);
+    }
+
+    /**
+     * @return the command that starts the compiler with the archive
+     */
+    public String usage() {
+        return String.format("java -XX:SharedArchiveFile=%s -jar %s", archive, jar);
+    }
+}
@@ -1,8 +1,10 @@
 package cli;
 
+import codeGeneration.ssm.ObjectFile;
 import org.apache.commons.cli.CommandLine;
 import org.apache.commons.cli.ParseException;
 
+import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.IOException;
 
@@ -24,6 +26,34 @@ public class Main {
                 cli.help();
                 return;
             }
+            if (cmd.hasOption("a")) {
+                if (!cmd.hasOption("i")) {
+                    throw new ParseException("An input file must be provided to train the class data archive!");
+                }
+                if (!ClassDataArchive.isSupported()) {
+                    System.err.println("A class data archive needs Java 13 or newer, the compiler runs on Java "
+                            + System.getProperty("java.specification.version") + ".");
+                    return;
+                }
+                if (!new File(cmd.getOptionValue("i")).isFile()) {
+                    throw new FileNotFoundException(cmd.getOptionValue("i"));
+                }
+                ClassDataArchive archive = new ClassDataArchive(cmd.getOptionValue("a"));
+                int exitCode = archive.create(cmd);
+                if (exitCode == 0 && archive.isWritten()) {
+                    System.out.println("Start the compiler with the archive by:\n" + archive.usage());
+                } else {
+                    System.err.println(String.format("The class data archive could not be created, the training "
+                            + "run of the compiler exited with code %d.", exitCode));
+                }
+                return;
+            }
+            if (cmd.hasOption("d")) {
+                for (String line : ObjectFile.read(cmd.getOptionValue("d")).disassemble()) {
+                    System.out.println(line);
+                }
+                return;
+            }
             Runner runner = new Runner(cmd);
             runner.execute();
         } catch (ParseException e) {
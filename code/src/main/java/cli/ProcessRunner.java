@@ -0,0 +1,129 @@
+package cli;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runs a process and forwards what it prints while it runs. The standard output and error of the process are each
+ * read by a thread of their own, so a process that fills the pipe of one of them never blocks, and output shows up as
+ * soon as it is printed. At most one buffer of {@link #BUFFER_SIZE} bytes per stream is held at a time.
+ */
+public class ProcessRunner {
+
+    static final int BUFFER_SIZE = 8192;
+
+    /**
+     * How a process ended.
+     */
+    public static final class Result {
+        // Exit code of the process, or -1 if it was stopped after the timeout
+        public final int exitCode;
+        public final long wallMillis;
+        public final boolean timedOut;
+
+        Result(int exitCode, long wallMillis, boolean timedOut) {
+            this.exitCode = exitCode;
+            this.wallMillis = wallMillis;
+            this.timedOut = timedOut;
+        }
+
+        @Override
+        public String toString() {
+            if (timedOut) {
+                return String.format("Process stopped after the timeout, %d ms", wallMillis);
+            }
+            return String.format("Process exited with code %d in %d ms", exitCode, wallMillis);
+        }
+    }
+
+    private final long timeoutMillis;
+    private final OutputStream out;
+    private final OutputStream err;
+
+    /**
+     * @param timeoutMillis time after which the process is stopped, or 0 to wait until it ends
+     * @param out where the standard output of the process goes
+     * @param err where the standard error of the process goes
+     */
+    public ProcessRunner(long timeoutMillis, OutputStream out, OutputStream err) {
+        this.timeoutMillis = timeoutMillis;
+        this.out = out;
+        this.err = err;
+    }
+
+    /**
+     * Starts the process and waits until it ends, or is stopped after the timeout.
+     * @throws IOException if the process could not be started or its output could not be forwarded
+     */
+    public Result run(ProcessBuilder processBuilder) throws IOException, InterruptedException {
+        long start = System.nanoTime();
+        Process process = processBuilder.start();
+        Forwarder stdout = new Forwarder(process.getInputStream(), out, "stdout");
+        Forwarder stderr = new Forwarder(process.getErrorStream(), err, "stderr");
+        stdout.start();
+        stderr.start();
+
+        boolean finished;
+        try {
+            if (timeoutMillis > 0) {
+                finished = process.waitFor(timeoutMillis, TimeUnit.MILLISECONDS);
+            } else {
+                process.waitFor();
+                finished = true;
+            }
+        } finally {
+            if (process.isAlive()) {
+                process.destroyForcibly();
+            }
+        }
+        if (!finished) {
+            process.waitFor();
+        }
+        // The pipes are closed once the process is gone, so the forwarders end after the last output
+        stdout.join();
+        stderr.join();
+        long wallMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+        stdout.rethrow();
+        stderr.rethrow();
+        return new Result(finished ? process.exitValue() : -1, wallMillis, !finished);
+    }
+
+    /**
+     * Copies a stream of the process until it ends.
+     */
+    private static final class Forwarder extends Thread {
+        private final InputStream in;
+        private final OutputStream out;
+        private IOException exception = null;
+
+        Forwarder(InputStream in, OutputStream out, String name) {
+            super("process " + name);
+            this.in = in;
+            this.out = out;
+            setDaemon(true);
+        }
+
+        @Override
+        public void run() {
+            byte[] buffer = new byte[BUFFER_SIZE];
+            try (InputStream input = in) {
+                int read;
+                while ((read = input.read(buffer)) >= 0) {
+                    out.write(buffer, 0, read);
+                    out.flush();
+                }
+            } catch (IOException e) {
+                exception = e;
+            }
+        }
+
+        void rethrow() throws IOException {
+            if (exception != null) {
+                throw exception;
+            }
+        }
+    }
+}
@@ -1,35 +1,72 @@
 package cli;
 
+import codeGeneration.jvm.ProgramLoader;
 import codeGeneration.python.CodeGenerator;
+import codeGeneration.ssm.Machine;
+import codeGeneration.ssm.ObjectFile;
+import codeGeneration.ssm.PeepholeOptimizer;
 import lexer.Lexer;
+import optimizer.AstOptimizer;
 import org.apache.commons.cli.CommandLine;
 import org.apache.commons.cli.ParseException;
 import parser.Parser;
 import parser.declarations.Declaration;
 import typechecker.Typechecker;
 import util.CheckPython;
+import util.CompilationCache;
 import util.PrettyPrinter;
 import util.ReadSPL;
 
 import java.io.BufferedReader;
+import java.io.BufferedWriter;
 import java.io.IOException;
-import java.io.InputStream;
 import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
 import java.util.ArrayList;
 import java.util.InputMismatchException;
 import java.util.List;
+import java.util.Set;
 
 public class Runner {
 
     private final String path;
     private final boolean python;
+    private final boolean bytecode;
     private final boolean compileOnly;
     private final boolean reformat;
+    private final boolean embedded;
+    private final boolean object;
+    private final boolean parallel;
+    private final boolean incremental;
+    private final Set<PeepholeOptimizer.Rule> optimizerRules;
+    private final PeepholeOptimizer optimizer;
+    private final long timeoutMillis;
 
     public Runner(CommandLine cmd) throws ParseException {
         this.python = cmd.hasOption("p");
+        this.bytecode = cmd.hasOption("b");
         this.compileOnly = cmd.hasOption("c");
         this.reformat = cmd.hasOption("r");
+        this.object = cmd.hasOption("o");
+        // ssm.jar only reads the text format
+        this.embedded = cmd.hasOption("e") || object;
+        this.parallel = cmd.hasOption("j");
+        this.incremental = cmd.hasOption("n");
+        this.optimizerRules = cmd.hasOption("O") ? optimizerRules(cmd.getOptionValue("O")) : null;
+        this.optimizer = optimizerRules != null ? new PeepholeOptimizer(optimizerRules) : null;
+
+        this.timeoutMillis = cmd.hasOption("t") ? timeoutMillis(cmd.getOptionValue("t")) : 0;
+        if (python && bytecode) {
+            throw new ParseException("Python (-p) and JVM bytecode (-b) are different targets, choose one");
+        }
+        if (object && (python || bytecode)) {
+            // The binary format holds SSM code only
+            throw new ParseException("The SSM object format (-o) cannot be used with Python (-p) or JVM bytecode (-b)");
+        }
+        if (bytecode && incremental) {
+            // The class file is written as a whole, there are no fragments of functions to reuse
+            throw new ParseException("Incremental compilation (-n) is not supported for JVM bytecode (-b)");
+        }
 
         if (!cmd.hasOption("i")) {
             throw new ParseException("An input file must be provided!");
@@ -43,50 +80,122 @@ public class Runner {
         }
     }
 
+    private static Set<PeepholeOptimizer.Rule> optimizerRules(String names) throws ParseException {
+        try {
+            return PeepholeOptimizer.Rule.parse(names);
+        } catch (IllegalArgumentException e) {
+            throw new ParseException("Unknown optimizer rule in: " + names);
+        }
+    }
+
+    private static long timeoutMillis(String seconds) throws ParseException {
+        try {
+            long millis = Math.round(Double.parseDouble(seconds) * 1000);
+            if (millis <= 0) {
+                throw new ParseException("The timeout should be a positive number of seconds: " + seconds);
+            }
+            return millis;
+        } catch (NumberFormatException e) {
+            throw new ParseException("The timeout should be a number of seconds: " + seconds);
+        }
+    }
+
     public void execute() throws IOException, InterruptedException {
         String inputfile = path + ".spl";
-        String outputfile = python ? path + ".py" : path + ".ssm";
+        String outputfile = python ? path + ".py" : bytecode ? path + ".class"
+                : object ? path + ObjectFile.EXTENSION : path + ".ssm";
 
-        String program = ReadSPL.readLineByLineJava8(inputfile);
+        CharSequence program = ReadSPL.mapFile(inputfile);
 
         Lexer l = new Lexer(program);
-        Parser p = new Parser(l.tokenize());
-        List<Declaration> nodes = p.parseSPL();
+        Parser p = new Parser(l.tokenizeStream());
+        p.setRecovering(true);
+        List<Declaration> nodes = parallel ? p.parseSPLParallel() : p.parseSPL();
+        if (!p.getErrors().isEmpty()) {
+            for (parser.exceptions.ParseException e : p.getErrors()) {
+                System.err.println(e.getMessage());
+            }
+            throw new InputMismatchException(String.format("Found %d syntax error(s).", p.getErrors().size()));
+        }
         if (reformat) {
             PrettyPrinter.writeToFile(inputfile, nodes);
             return;
         }
+        // Functions optimized with other rules compile to different code, so their fragments are kept apart
+        String target = (python ? "python" : "ssm") + (optimizerRules != null ? " -O " + optimizerRules : "");
+        int codeVersion = python ? CodeGenerator.CODE_VERSION : codeGeneration.ssm.CodeGenerator.CODE_VERSION;
+        CompilationCache cache = incremental
+                ? CompilationCache.load(path + ".splcache", target, codeVersion, nodes) : null;
         Typechecker tc = new Typechecker();
-        tc.typecheck(nodes);
+        if (cache != null) {
+            tc.setCheckedBefore(cache.reusable());
+        }
+        boolean correct = parallel ? tc.typecheckParallel(nodes) : tc.typecheck(nodes);
+        if (optimizerRules != null && optimizerRules.contains(PeepholeOptimizer.Rule.AST)) {
+            new AstOptimizer().optimize(nodes);
+        }
 
+        if (bytecode) {
+            if (!correct) {
+                // The JVM would refuse a class with mismatched types
+                throw new InputMismatchException("Found type errors, no class file is written.");
+            }
+            codeGeneration.jvm.CodeGenerator codeGenerator = new codeGeneration.jvm.CodeGenerator(outputfile);
+            codeGenerator.generateCode(nodes);
+            if (!compileOnly) {
+                runClass(codeGenerator.getClassName(), codeGenerator.getClassFile());
+            }
+            return;
+        }
         if (python) {
             CodeGenerator codeGenerator = new codeGeneration.python.CodeGenerator(outputfile, tc.getEnvironment());
+            codeGenerator.setCache(cache);
             codeGenerator.generateCode(nodes);
         } else {
             codeGeneration.ssm.CodeGenerator codeGenerator = new codeGeneration.ssm.CodeGenerator(outputfile);
+            codeGenerator.setCache(cache);
+            codeGenerator.setOptimizer(optimizer);
             codeGenerator.generateCode(nodes, null);
         }
+        if (cache != null && correct) {
+            cache.save();
+        }
 
-        if (!compileOnly) {
+        if (!compileOnly && embedded && !python) {
+            runMachine(outputfile);
+        } else if (!compileOnly) {
             ProcessBuilder processBuilder = python ? createPythonProcess(outputfile) : createSSMProcess(outputfile);
             runProcess(processBuilder);
         }
     }
 
-    private void runProcess(ProcessBuilder processBuilder) throws IOException, InterruptedException {
-        final Process process = processBuilder.start();
-        InputStream is = process.getInputStream();
-        InputStreamReader isr = new InputStreamReader(is);
-        BufferedReader br = new BufferedReader(isr);
-
-        process.waitFor();
+    private void runMachine(String filename) throws IOException {
+        BufferedReader input = new BufferedReader(new InputStreamReader(System.in));
+        BufferedWriter output = new BufferedWriter(new OutputStreamWriter(System.out));
+        try {
+            Machine.load(filename).run(input, output);
+        } finally {
+            output.flush();
+        }
+    }
 
-        String line;
-        while ((line = br.readLine()) != null) {
-            System.out.println(line);
+    private void runClass(String className, byte[] classFile) throws IOException {
+        BufferedReader input = new BufferedReader(new InputStreamReader(System.in));
+        BufferedWriter output = new BufferedWriter(new OutputStreamWriter(System.out));
+        try {
+            ProgramLoader.run(className, classFile, input, output);
+        } finally {
+            output.flush();
         }
     }
 
+    private void runProcess(ProcessBuilder processBuilder) throws IOException, InterruptedException {
+        // The program reads from the console, what it prints is forwarded while it runs
+        processBuilder.redirectInput(ProcessBuilder.Redirect.INHERIT);
+        ProcessRunner.Result result = new ProcessRunner(timeoutMillis, System.out, System.err).run(processBuilder);
+        System.err.println(result);
+    }
+
     private ProcessBuilder createPythonProcess(String filename) {
         String pythonVersion = CheckPython.getPythonVersion();
         List<String> command = new ArrayList<>();
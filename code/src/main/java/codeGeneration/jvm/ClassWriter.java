@@ -0,0 +1,201 @@
+package codeGeneration.jvm;
+
+import codeGeneration.CompileException;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Builds a class file with public static fields and methods.
+ * <p>
+ * The class file has version 49 (Java 5), which the JVM still verifies by inferring the types itself. Later versions
+ * need a table with the types on the stack at every jump target, which the code generator would have to compute.
+ */
+public class ClassWriter {
+
+    private static final int VERSION = 49;
+
+    static final int ACC_PUBLIC = 0x0001;
+    static final int ACC_STATIC = 0x0008;
+    static final int ACC_FINAL = 0x0010;
+    static final int ACC_SUPER = 0x0020;
+
+    private static final int CONSTANT_UTF8 = 1;
+    private static final int CONSTANT_INTEGER = 3;
+    private static final int CONSTANT_CLASS = 7;
+    private static final int CONSTANT_FIELDREF = 9;
+    private static final int CONSTANT_METHODREF = 10;
+    private static final int CONSTANT_NAME_AND_TYPE = 12;
+
+    private final String name;
+
+    // The constant pool, entries are numbered from 1 and looked up by a key made of their tag and content
+    private final ByteArrayOutputStream constants = new ByteArrayOutputStream();
+    private final DataOutputStream constantsOut = new DataOutputStream(constants);
+    private final Map<String, Integer> constantIndices = new HashMap<>();
+    private int constantCount = 1;
+
+    private final List<byte[]> fields = new ArrayList<>();
+    private final List<MethodWriter> methods = new ArrayList<>();
+
+    /**
+     * @param name internal name of the class, like "quick_sort" or "codeGeneration/jvm/SplList"
+     */
+    public ClassWriter(String name) {
+        this.name = name;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public void addField(String fieldName, String descriptor) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        try {
+            out.writeShort(ACC_PUBLIC | ACC_STATIC);
+            out.writeShort(utf8(fieldName));
+            out.writeShort(utf8(descriptor));
+            out.writeShort(0);
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+        fields.add(bytes.toByteArray());
+    }
+
+    /**
+     * @return writer for the code of a new public static method
+     */
+    public MethodWriter addMethod(String methodName, String descriptor) {
+        MethodWriter method = new MethodWriter(this, methodName, descriptor);
+        methods.add(method);
+        return method;
+    }
+
+    public byte[] toByteArray() {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        try {
+            // Everything that refers to the constant pool is written first, as it may add constants
+            int thisClass = classConstant(name);
+            int superClass = classConstant("java/lang/Object");
+            int code = utf8("Code");
+            List<byte[]> methodBytes = new ArrayList<>();
+            for (MethodWriter method : methods) {
+                methodBytes.add(method.toByteArray(code));
+            }
+            if (constantCount > 0xffff) {
+                throw new CompileException("The program has too many constants for a class file", null);
+            }
+
+            out.writeInt(0xcafebabe);
+            out.writeShort(0);
+            out.writeShort(VERSION);
+            out.writeShort(constantCount);
+            constants.writeTo(out);
+            out.writeShort(ACC_PUBLIC | ACC_FINAL | ACC_SUPER);
+            out.writeShort(thisClass);
+            out.writeShort(superClass);
+            out.writeShort(0);
+            out.writeShort(fields.size());
+            for (byte[] field : fields) {
+                out.write(field);
+            }
+            out.writeShort(methodBytes.size());
+            for (byte[] method : methodBytes) {
+                out.write(method);
+            }
+            out.writeShort(0);
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+        return bytes.toByteArray();
+    }
+
+    int utf8(String value) {
+        Integer index = constantIndices.get("u" + value);
+        if (index == null) {
+            index = add("u" + value);
+            try {
+                constantsOut.writeByte(CONSTANT_UTF8);
+                constantsOut.writeUTF(value);
+            } catch (IOException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+        return index;
+    }
+
+    int integer(int value) {
+        Integer index = constantIndices.get("i" + value);
+        if (index == null) {
+            index = add("i" + value);
+            write(CONSTANT_INTEGER, value >>> 16, value & 0xffff);
+        }
+        return index;
+    }
+
+    int classConstant(String className) {
+        Integer index = constantIndices.get("c" + className);
+        if (index == null) {
+            int nameIndex = utf8(className);
+            index = add("c" + className);
+            write(CONSTANT_CLASS, nameIndex);
+        }
+        return index;
+    }
+
+    int field(String owner, String fieldName, String descriptor) {
+        return member(CONSTANT_FIELDREF, owner, fieldName, descriptor);
+    }
+
+    int method(String owner, String methodName, String descriptor) {
+        return member(CONSTANT_METHODREF, owner, methodName, descriptor);
+    }
+
+    private int member(int tag, String owner, String memberName, String descriptor) {
+        String key = tag + owner + "." + memberName + ":" + descriptor;
+        Integer index = constantIndices.get(key);
+        if (index == null) {
+            int ownerIndex = classConstant(owner);
+            int nameAndType = nameAndType(memberName, descriptor);
+            index = add(key);
+            write(tag, ownerIndex, nameAndType);
+        }
+        return index;
+    }
+
+    private int nameAndType(String memberName, String descriptor) {
+        String key = "n" + memberName + ":" + descriptor;
+        Integer index = constantIndices.get(key);
+        if (index == null) {
+            int nameIndex = utf8(memberName);
+            int descriptorIndex = utf8(descriptor);
+            index = add(key);
+            write(CONSTANT_NAME_AND_TYPE, nameIndex, descriptorIndex);
+        }
+        return index;
+    }
+
+    private int add(String key) {
+        int index = constantCount++;
+        constantIndices.put(key, index);
+        return index;
+    }
+
+    private void write(int tag, int... shorts) {
+        try {
+            constantsOut.writeByte(tag);
+            for (int s : shorts) {
+                constantsOut.writeShort(s);
+            }
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,611 @@
+package codeGeneration.jvm;
+
+import codeGeneration.CompileException;
+import lexer.TokenType;
+import parser.declarations.Declaration;
+import parser.declarations.FunctionDeclaration;
+import parser.declarations.VariableDeclaration;
+import parser.expressions.*;
+import parser.statements.*;
+import parser.types.*;
+import util.Node;
+import util.Visitor;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Compiles a program to a JVM class, so it runs at the speed of the JIT compiler instead of being interpreted.
+ * <p>
+ * Every function becomes a public static method with the name of the function, and every global variable a static
+ * field. A value of type Int, Bool or Char is an int, with -1 for True and 0 for False like in the SSM, and a list or
+ * tuple is a reference to a {@link SplList} or {@link SplTuple}. The empty list is null.
+ * <p>
+ * The method "$run" initializes the global variables and calls main, and the class has a Java main method that calls
+ * "$run", so the class file runs on its own with "java -cp compiler.jar:. name" as well.
+ */
+public class CodeGenerator implements Visitor {
+
+    private static final String LIST = "codeGeneration/jvm/SplList";
+    private static final String TUPLE = "codeGeneration/jvm/SplTuple";
+    private static final String RUNTIME = "codeGeneration/jvm/SplRuntime";
+    private static final String OBJECT = "Ljava/lang/Object;";
+    private static final String RUN = "$run";
+
+    /**
+     * A variable, with the number of its local variable in the method, or -1 for a global variable.
+     */
+    private static final class Variable {
+        final String name;
+        final Type type;
+        final int local;
+
+        Variable(String name, Type type, int local) {
+            this.name = name;
+            this.type = type;
+            this.local = local;
+        }
+    }
+
+    private final Path filepath;
+    private final ClassWriter classWriter;
+    private byte[] classFile;
+
+    // Descriptors and return types of the functions and the global variables, keyed by the SymbolTable id of the name
+    private final Map<Integer, String> functionDescriptors = new HashMap<>();
+    private final Map<Integer, Type> functionTypes = new HashMap<>();
+    private final Map<Integer, Variable> globals = new HashMap<>();
+
+    // The method that is being written, with its arguments and local variables
+    private MethodWriter method;
+    private Type returnType;
+    private Map<Integer, Variable> locals = new HashMap<>();
+    private final MethodWriter run;
+
+    /**
+     * @param filepath file the class is written to, its name without the extension is the name of the class
+     */
+    public CodeGenerator(String filepath) {
+        this.filepath = Paths.get(filepath);
+        this.classWriter = new ClassWriter(className(this.filepath));
+        this.run = classWriter.addMethod(RUN, "()V");
+    }
+
+    private static String className(Path filepath) {
+        String name = filepath.getFileName().toString();
+        if (name.contains(".")) {
+            name = name.substring(0, name.lastIndexOf('.'));
+        }
+        StringBuilder sb = new StringBuilder();
+        for (char c : name.toCharArray()) {
+            sb.append(Character.isJavaIdentifierPart(c) ? c : '_');
+        }
+        if (sb.length() == 0 || !Character.isJavaIdentifierStart(sb.charAt(0))) {
+            sb.insert(0, '_');
+        }
+        return sb.toString();
+    }
+
+    /**
+     * @return the name of the generated class
+     */
+    public String getClassName() {
+        return classWriter.getName();
+    }
+
+    /**
+     * @return the generated class file, after {@link #generateCode}
+     */
+    public byte[] getClassFile() {
+        return classFile;
+    }
+
+    public void generateCode(List<Declaration> nodes) throws IOException {
+        // Functions can be called, and globals used, before they are declared
+        for (Node n : nodes) {
+            if (n instanceof FunctionDeclaration) {
+                declareFunction((FunctionDeclaration) n);
+            } else if (n instanceof VariableDeclaration) {
+                VariableDeclaration d = (VariableDeclaration) n;
+                Type type = variableType(d);
+                globals.put(d.left.id, new Variable(d.left.name, type, -1));
+                classWriter.addField(d.left.name, descriptor(type));
+            }
+        }
+
+        for (Node n : nodes) {
+            method = run;
+            locals = new HashMap<>();
+            n.accept(this);
+        }
+
+        String main = functionDescriptors.get(mainId(nodes));
+        if (main != null && main.startsWith("()")) {
+            run.addMethod(Opcode.INVOKESTATIC, getClassName(), "main", main);
+            if (!main.endsWith("V")) {
+                run.add(Opcode.POP);
+            }
+        }
+        run.add(Opcode.RETURN);
+
+        MethodWriter javaMain = classWriter.addMethod("main", "([Ljava/lang/String;)V");
+        javaMain.addMethod(Opcode.INVOKESTATIC, getClassName(), RUN, "()V");
+        javaMain.add(Opcode.RETURN);
+
+        classFile = classWriter.toByteArray();
+        Files.write(filepath, classFile);
+    }
+
+    private static int mainId(List<Declaration> nodes) {
+        for (Node n : nodes) {
+            if (n instanceof FunctionDeclaration && ((FunctionDeclaration) n).funName.name.equals("main")) {
+                return ((FunctionDeclaration) n).funName.id;
+            }
+        }
+        return -1;
+    }
+
+    private void declareFunction(FunctionDeclaration d) {
+        if (functionDescriptors.containsKey(d.funName.id)) {
+            throw new CompileException(String.format("The function %s is already defined", d.funName.name), d);
+        }
+        StringBuilder sb = new StringBuilder("(");
+        for (Type argument : d.funType.argsTypes) {
+            sb.append(descriptor(argument));
+        }
+        sb.append(')').append(descriptor(d.funType.returnType));
+        functionDescriptors.put(d.funName.id, sb.toString());
+        functionTypes.put(d.funName.id, d.funType.returnType);
+    }
+
+    /**
+     * @return the type without the var types around it, or null if it is not known
+     */
+    private static Type resolve(Type type) {
+        while (type instanceof VarType) {
+            type = ((VarType) type).type;
+        }
+        return type;
+    }
+
+    /**
+     * @return whether a value of the type is an int, and not a reference
+     */
+    private static boolean isInt(Type type) {
+        type = resolve(type);
+        return type instanceof IntType || type instanceof BoolType || type instanceof CharType;
+    }
+
+    private static String descriptor(Type type) {
+        if (resolve(type) instanceof VoidType) {
+            return "V";
+        }
+        return isInt(type) ? "I" : OBJECT;
+    }
+
+    private static Type variableType(VariableDeclaration d) {
+        Type type = resolve(d.varType);
+        return type != null ? type : d.right.getType();
+    }
+
+    @Override
+    public void visit(Expression e) {
+        Expression.visitExpression(this, e);
+    }
+
+    @Override
+    public void visit(BooleanExpression e) {
+        method.addInt(e.name ? -1 : 0);
+    }
+
+    @Override
+    public void visit(CallExpression e) {
+        call(e.function_name, e.args);
+    }
+
+    private void call(IdentifierExpression function, List<Expression> args) {
+        String descriptor = functionDescriptors.get(function.id);
+        if (descriptor == null) {
+            throw new CompileException(String.format("Function %s was not defined.", function.name), function);
+        }
+        for (Expression arg : args) {
+            this.visit(arg);
+        }
+        method.addMethod(Opcode.INVOKESTATIC, getClassName(), function.name, descriptor);
+    }
+
+    @Override
+    public void visit(CharacterExpression e) {
+        method.addInt(e.name);
+    }
+
+    @Override
+    public void visit(IdentifierExpression e) {
+        Variable variable = variable(e);
+        if (variable.local >= 0) {
+            method.addLocal(isInt(variable.type) ? Opcode.ILOAD : Opcode.ALOAD, variable.local);
+        } else {
+            method.addField(Opcode.GETSTATIC, getClassName(), variable.name, descriptor(variable.type));
+        }
+    }
+
+    private Variable variable(IdentifierExpression e) {
+        Variable variable = locals.get(e.id);
+        if (variable == null) {
+            variable = globals.get(e.id);
+        }
+        if (variable == null) {
+            throw new CompileException(String.format("Variable %s out of scope or undefined.", e.name), e);
+        }
+        return variable;
+    }
+
+    @Override
+    public void visit(IntegerExpression e) {
+        method.addInt(e.name);
+    }
+
+    @Override
+    public void visit(isEmptyExpression e) {
+        condition(e);
+    }
+
+    @Override
+    public void visit(ListExpression e) {
+        method.add(Opcode.ACONST_NULL);
+    }
+
+    @Override
+    public void visit(OperatorExpression e) {
+        switch (e.operator) {
+            case TOK_PLUS:
+                binary(e, Opcode.IADD);
+                break;
+            case TOK_MINUS:
+                binary(e, Opcode.ISUB);
+                break;
+            case TOK_MULT:
+                binary(e, Opcode.IMUL);
+                break;
+            case TOK_DIV:
+                binary(e, Opcode.IDIV);
+                break;
+            case TOK_MOD:
+                binary(e, Opcode.IREM);
+                break;
+            case TOK_CONS:
+                method.addType(Opcode.NEW, LIST);
+                method.add(Opcode.DUP);
+                this.visit(e.left);
+                this.visit(e.right);
+                method.addMethod(Opcode.INVOKESPECIAL, LIST, "<init>",
+                        "(" + descriptor(e.left.getType()) + OBJECT + ")V");
+                break;
+            case TOK_AND:
+            case TOK_OR:
+            case TOK_EQ:
+            case TOK_NEQ:
+            case TOK_LT:
+            case TOK_GT:
+            case TOK_LEQ:
+            case TOK_GEQ:
+                condition(e);
+                break;
+            default:
+                throw new CompileException(String.format("Invalid operator '%s'.", e.operator), e);
+        }
+    }
+
+    private void binary(OperatorExpression e, Opcode opcode) {
+        this.visit(e.left);
+        this.visit(e.right);
+        method.add(opcode);
+    }
+
+    /**
+     * Computes a Bool with jumps: -1 if the condition holds and 0 otherwise.
+     */
+    private void condition(Expression e) {
+        MethodWriter.Label isTrue = new MethodWriter.Label();
+        MethodWriter.Label end = new MethodWriter.Label();
+        jumpIf(e, true, isTrue);
+        method.addInt(0);
+        method.addJump(Opcode.GOTO, end);
+        method.placeLabel(isTrue);
+        method.addInt(-1);
+        method.placeLabel(end);
+    }
+
+    /**
+     * Jumps to a label if a condition has the given value, and falls through otherwise. Like in the SSM backend, the
+     * operands of && and || are turned into jumps of their own, and ! swaps the value that is jumped on. Comparisons
+     * and isEmpty jump on their operands directly, without computing a Bool first.
+     */
+    private void jumpIf(Expression condition, boolean value, MethodWriter.Label target) {
+        if (condition instanceof PrefixExpression && ((PrefixExpression) condition).operator == TokenType.TOK_NOT) {
+            jumpIf(((PrefixExpression) condition).right, !value, target);
+        } else if (condition instanceof BooleanExpression) {
+            if (((BooleanExpression) condition).name == value) {
+                method.addJump(Opcode.GOTO, target);
+            }
+        } else if (condition instanceof isEmptyExpression) {
+            this.visit(((isEmptyExpression) condition).arg);
+            method.addJump(value ? Opcode.IFNULL : Opcode.IFNONNULL, target);
+        } else if (condition instanceof OperatorExpression && comparison((OperatorExpression) condition) != null) {
+            OperatorExpression e = (OperatorExpression) condition;
+            this.visit(e.left);
+            this.visit(e.right);
+            Opcode jump = comparison(e);
+            method.addJump(value ? jump : jump.negate(), target);
+        } else if (condition instanceof OperatorExpression && (((OperatorExpression) condition).operator
+                == TokenType.TOK_AND || ((OperatorExpression) condition).operator == TokenType.TOK_OR)) {
+            OperatorExpression e = (OperatorExpression) condition;
+            // The left operand decides the jump on its own if it is False for && or True for ||
+            boolean decides = e.operator == TokenType.TOK_OR;
+            if (decides == value) {
+                jumpIf(e.left, value, target);
+                jumpIf(e.right, value, target);
+            } else {
+                MethodWriter.Label skip = new MethodWriter.Label();
+                jumpIf(e.left, decides, skip);
+                jumpIf(e.right, value, target);
+                method.placeLabel(skip);
+            }
+        } else {
+            this.visit(condition);
+            method.addJump(value ? Opcode.IFNE : Opcode.IFEQ, target);
+        }
+    }
+
+    /**
+     * @return the jump that is taken when the comparison holds, or null if the operator does not compare
+     */
+    private static Opcode comparison(OperatorExpression e) {
+        boolean ints = isInt(e.left.getType());
+        switch (e.operator) {
+            case TOK_EQ: return ints ? Opcode.IF_ICMPEQ : Opcode.IF_ACMPEQ;
+            case TOK_NEQ: return ints ? Opcode.IF_ICMPNE : Opcode.IF_ACMPNE;
+            case TOK_LT: return Opcode.IF_ICMPLT;
+            case TOK_GT: return Opcode.IF_ICMPGT;
+            case TOK_LEQ: return Opcode.IF_ICMPLE;
+            case TOK_GEQ: return Opcode.IF_ICMPGE;
+            default: return null;
+        }
+    }
+
+    @Override
+    public void visit(PostfixExpression e) {
+        this.visit(e.left);
+        method.addType(Opcode.CHECKCAST, owner(e.operator));
+        boolean isInt = isInt(e.getType());
+        method.addField(Opcode.GETFIELD, owner(e.operator), field(e.operator, isInt), isInt ? "I" : OBJECT);
+    }
+
+    private static String owner(TokenType operator) {
+        return operator == TokenType.TOK_HD || operator == TokenType.TOK_TL ? LIST : TUPLE;
+    }
+
+    private static String field(TokenType operator, boolean isInt) {
+        switch (operator) {
+            case TOK_HD: return isInt ? "hd" : "hdRef";
+            case TOK_TL: return "tl";
+            case TOK_FST: return isInt ? "fst" : "fstRef";
+            default: return isInt ? "snd" : "sndRef";
+        }
+    }
+
+    @Override
+    public void visit(PrefixExpression e) {
+        this.visit(e.right);
+        if (e.operator == TokenType.TOK_MINUS) {
+            method.add(Opcode.INEG);
+        } else if (e.operator == TokenType.TOK_NOT) {
+            // True is -1 and False is 0, so ! flips all bits like in the SSM
+            method.addInt(-1);
+            method.add(Opcode.IXOR);
+        } else {
+            throw new CompileException("Invalid operator", e);
+        }
+    }
+
+    @Override
+    public void visit(ReadExpression e) {
+        method.addMethod(Opcode.INVOKESTATIC, RUNTIME, e.arg.name == 0 ? "readInt" : "readChar", "()I");
+    }
+
+    @Override
+    public void visit(TupleExpression e) {
+        method.addType(Opcode.NEW, TUPLE);
+        method.add(Opcode.DUP);
+        this.visit(e.left);
+        this.visit(e.right);
+        method.addMethod(Opcode.INVOKESPECIAL, TUPLE, "<init>",
+                "(" + descriptor(e.left.getType()) + descriptor(e.right.getType()) + ")V");
+    }
+
+    @Override
+    public void visit(Statement s) {
+        Statement.visitStatement(this, s);
+    }
+
+    @Override
+    public void visit(AssignStatement s) {
+        if (s.name instanceof PostfixExpression) {
+            PostfixExpression target = (PostfixExpression) s.name;
+            this.visit(target.left);
+            method.addType(Opcode.CHECKCAST, owner(target.operator));
+            this.visit(s.right);
+            boolean isInt = isInt(target.getType() != null ? target.getType() : s.right.getType());
+            method.addField(Opcode.PUTFIELD, owner(target.operator), field(target.operator, isInt),
+                    isInt ? "I" : OBJECT);
+            return;
+        }
+        this.visit(s.right);
+        store(variable((IdentifierExpression) s.name));
+    }
+
+    private void store(Variable variable) {
+        if (variable.local >= 0) {
+            method.addLocal(isInt(variable.type) ? Opcode.ISTORE : Opcode.ASTORE, variable.local);
+        } else {
+            method.addField(Opcode.PUTSTATIC, getClassName(), variable.name, descriptor(variable.type));
+        }
+    }
+
+    @Override
+    public void visit(CallStatement s) {
+        call(s.function_name, s.args);
+        if (!(resolve(functionTypes.get(s.function_name.id)) instanceof VoidType)) {
+            method.add(Opcode.POP);
+        }
+    }
+
+    @Override
+    public void visit(ConditionalStatement conditionalStatement) {
+        MethodWriter.Label branchElse = new MethodWriter.Label();
+        MethodWriter.Label branchEnd = new MethodWriter.Label();
+        jumpIf(conditionalStatement.condition, false, branchElse);
+        for (Statement s : conditionalStatement.then_expression) {
+            this.visit(s);
+        }
+        if (!conditionalStatement.else_expression.isEmpty() && method.isReachable()) {
+            method.addJump(Opcode.GOTO, branchEnd);
+        }
+        method.placeLabel(branchElse);
+        for (Statement s : conditionalStatement.else_expression) {
+            this.visit(s);
+        }
+        method.placeLabel(branchEnd);
+    }
+
+    @Override
+    public void visit(LoopStatement loopStatement) {
+        MethodWriter.Label branchLoop = new MethodWriter.Label();
+        MethodWriter.Label branchEnd = new MethodWriter.Label();
+        method.placeLabel(branchLoop);
+        jumpIf(loopStatement.condition, false, branchEnd);
+        for (Statement s : loopStatement.body) {
+            this.visit(s);
+        }
+        method.addJump(Opcode.GOTO, branchLoop);
+        method.placeLabel(branchEnd);
+    }
+
+    @Override
+    public void visit(PrintStatement s) {
+        Type type = resolve(s.arg.getType());
+        if (type instanceof CharType) {
+            this.visit(s.arg);
+            method.addMethod(Opcode.INVOKESTATIC, RUNTIME, "printChar", "(I)V");
+        } else if (type instanceof IntType || type instanceof BoolType) {
+            this.visit(s.arg);
+            method.addMethod(Opcode.INVOKESTATIC, RUNTIME, "printInt", "(I)V");
+        } else if (type instanceof TupleType) {
+            this.visit(s.arg);
+            printTuple((TupleType) type);
+        } else {
+            throw new CompileException(String.format("Printing is not supported for type %s", s.arg.getType()), s);
+        }
+    }
+
+    /**
+     * Prints the tuple on the stack the way the SSM backend does: (1
+     * , 'a')
+     */
+    private void printTuple(TupleType t) {
+        method.addType(Opcode.CHECKCAST, TUPLE);
+        printCharacter('(');
+        method.add(Opcode.DUP);
+        printElement(TokenType.TOK_FST, t.left);
+        printCharacter(',');
+        printCharacter(' ');
+        printElement(TokenType.TOK_SND, t.right);
+        printCharacter(')');
+    }
+
+    private void printElement(TokenType operator, Type t) {
+        Type type = resolve(t);
+        boolean isInt = isInt(type);
+        method.addField(Opcode.GETFIELD, TUPLE, field(operator, isInt), isInt ? "I" : OBJECT);
+        if (type instanceof IntType) {
+            method.addMethod(Opcode.INVOKESTATIC, RUNTIME, "printInt", "(I)V");
+        } else if (type instanceof CharType) {
+            printCharacter('\'');
+            method.addMethod(Opcode.INVOKESTATIC, RUNTIME, "printChar", "(I)V");
+            printCharacter('\'');
+        } else if (type instanceof TupleType) {
+            printTuple((TupleType) type);
+        } else {
+            throw new CompileException(String.format("Printing of Type %s is not yet supported.", t), null);
+        }
+    }
+
+    private void printCharacter(char c) {
+        method.addInt(c);
+        method.addMethod(Opcode.INVOKESTATIC, RUNTIME, "printChar", "(I)V");
+    }
+
+    @Override
+    public void visit(ReturnStatement s) {
+        if (s.arg != null) {
+            this.visit(s.arg);
+        }
+        if (s.arg == null || resolve(returnType) instanceof VoidType) {
+            method.add(Opcode.RETURN);
+        } else {
+            method.add(isInt(returnType) ? Opcode.IRETURN : Opcode.ARETURN);
+        }
+    }
+
+    @Override
+    public void visit(Declaration d) {
+        Declaration.visitDeclaration(this, d);
+    }
+
+    @Override
+    public void visit(FunctionDeclaration d) {
+        method = classWriter.addMethod(d.funName.name, functionDescriptors.get(d.funName.id));
+        returnType = d.funType.returnType;
+        locals = new HashMap<>();
+        for (int i = 0; i < d.args.size(); i++) {
+            IdentifierExpression arg = d.args.get(i);
+            locals.put(arg.id, new Variable(arg.name, d.funType.argsTypes.get(i), i));
+        }
+        for (VariableDeclaration varDec : d.decls) {
+            this.visit(varDec);
+        }
+        for (Statement s : d.stats) {
+            this.visit(s);
+        }
+
+        // The JVM does not allow the code to run off the end of a method
+        if (method.isReachable()) {
+            if (resolve(returnType) instanceof VoidType) {
+                method.add(Opcode.RETURN);
+            } else if (isInt(returnType)) {
+                method.addInt(0);
+                method.add(Opcode.IRETURN);
+            } else {
+                method.add(Opcode.ACONST_NULL);
+                method.add(Opcode.ARETURN);
+            }
+        }
+    }
+
+    @Override
+    public void visit(VariableDeclaration d) {
+        this.visit(d.right);
+        if (method == run) {
+            store(globals.get(d.left.id));
+        } else {
+            Variable local = new Variable(d.left.name, variableType(d), locals.size());
+            locals.put(d.left.id, local);
+            store(local);
+        }
+    }
+}
@@ -0,0 +1,237 @@
+package codeGeneration.jvm;
+
+import codeGeneration.CompileException;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Writes the code of a method. The writer keeps track of the number of words on the stack, so the maximum that the
+ * class file needs is known, and fills in the offsets of the jumps once their labels are placed.
+ */
+public class MethodWriter {
+
+    /**
+     * A place in the code that can be jumped to.
+     */
+    public static class Label {
+        // Offset of the label in the code, -1 while it is not placed
+        private int offset = -1;
+        // Words on the stack at the label, -1 while no jump to it or the label itself is written
+        private int depth = -1;
+        // Offsets of the jumps to the label that are written before the label is placed
+        private final List<Integer> jumps = new ArrayList<>();
+    }
+
+    private final ClassWriter owner;
+    private final String name;
+    private final String descriptor;
+
+    private byte[] code = new byte[64];
+    private int length = 0;
+    // Words on the stack, -1 after a jump or return, until a label that is jumped to is placed
+    private int depth = 0;
+    private int maxDepth = 0;
+    private int maxLocals;
+
+    MethodWriter(ClassWriter owner, String name, String descriptor) {
+        this.owner = owner;
+        this.name = name;
+        this.descriptor = descriptor;
+        this.maxLocals = argumentCount(descriptor);
+    }
+
+    /**
+     * @param descriptor method descriptor, in which every argument is a single word
+     * @return the number of arguments
+     */
+    static int argumentCount(String descriptor) {
+        int count = 0;
+        int i = 1;
+        while (descriptor.charAt(i) != ')') {
+            while (descriptor.charAt(i) == '[') {
+                i++;
+            }
+            i = descriptor.charAt(i) == 'L' ? descriptor.indexOf(';', i) + 1 : i + 1;
+            count++;
+        }
+        return count;
+    }
+
+    public void add(Opcode opcode) {
+        write(opcode.code);
+        stack(opcode.stack);
+        if (opcode == Opcode.IRETURN || opcode == Opcode.ARETURN || opcode == Opcode.RETURN) {
+            depth = -1;
+        }
+    }
+
+    public void addInt(int value) {
+        if (value >= -1 && value <= 5) {
+            add(Opcode.values()[Opcode.ICONST_0.ordinal() + value]);
+        } else if (value >= Byte.MIN_VALUE && value <= Byte.MAX_VALUE) {
+            write(Opcode.BIPUSH.code);
+            write(value);
+            stack(Opcode.BIPUSH.stack);
+        } else if (value >= Short.MIN_VALUE && value <= Short.MAX_VALUE) {
+            write(Opcode.SIPUSH.code);
+            writeShort(value);
+            stack(Opcode.SIPUSH.stack);
+        } else {
+            int index = owner.integer(value);
+            if (index <= 0xff) {
+                write(Opcode.LDC.code);
+                write(index);
+            } else {
+                write(Opcode.LDC_W.code);
+                writeShort(index);
+            }
+            stack(Opcode.LDC.stack);
+        }
+    }
+
+    /**
+     * @param opcode ILOAD, ALOAD, ISTORE or ASTORE
+     * @param local number of the local variable, arguments come first
+     */
+    public void addLocal(Opcode opcode, int local) {
+        if (local > 0xff) {
+            throw new CompileException(String.format("The function %s has too many variables", name), null);
+        }
+        write(opcode.code);
+        write(local);
+        stack(opcode.stack);
+        maxLocals = Math.max(maxLocals, local + 1);
+    }
+
+    /**
+     * @param opcode NEW or CHECKCAST
+     * @param className internal name of the class
+     */
+    public void addType(Opcode opcode, String className) {
+        write(opcode.code);
+        writeShort(owner.classConstant(className));
+        stack(opcode.stack);
+    }
+
+    /**
+     * @param opcode GETSTATIC, PUTSTATIC, GETFIELD or PUTFIELD
+     * @param fieldDescriptor descriptor of a single word field
+     */
+    public void addField(Opcode opcode, String className, String fieldName, String fieldDescriptor) {
+        write(opcode.code);
+        writeShort(owner.field(className, fieldName, fieldDescriptor));
+        switch (opcode) {
+            case GETSTATIC: stack(1); break;
+            case PUTSTATIC: stack(-1); break;
+            case PUTFIELD: stack(-2); break;
+            default: break;
+        }
+    }
+
+    /**
+     * @param opcode INVOKESTATIC, INVOKESPECIAL or INVOKEVIRTUAL
+     * @param methodDescriptor descriptor of a method that takes and returns single words
+     */
+    public void addMethod(Opcode opcode, String className, String methodName, String methodDescriptor) {
+        write(opcode.code);
+        writeShort(owner.method(className, methodName, methodDescriptor));
+        int arguments = argumentCount(methodDescriptor) + (opcode == Opcode.INVOKESTATIC ? 0 : 1);
+        stack(-arguments + (methodDescriptor.endsWith(")V") ? 0 : 1));
+    }
+
+    /**
+     * @param opcode GOTO or a conditional jump
+     */
+    public void addJump(Opcode opcode, Label label) {
+        int from = length;
+        write(opcode.code);
+        stack(opcode.stack);
+        if (label.offset >= 0) {
+            writeShort(offset(label.offset - from));
+        } else {
+            label.jumps.add(from);
+            writeShort(0);
+        }
+        if (label.depth < 0) {
+            label.depth = depth;
+        }
+        if (opcode == Opcode.GOTO) {
+            depth = -1;
+        }
+    }
+
+    public void placeLabel(Label label) {
+        if (label.depth >= 0) {
+            depth = label.depth;
+        } else {
+            label.depth = depth;
+        }
+        label.offset = length;
+        if (!label.jumps.isEmpty()) {
+            for (int from : label.jumps) {
+                int offset = offset(label.offset - from);
+                code[from + 1] = (byte) (offset >> 8);
+                code[from + 2] = (byte) offset;
+            }
+            label.jumps.clear();
+        }
+    }
+
+    /**
+     * @return whether the code that is written next can be reached by falling through
+     */
+    public boolean isReachable() {
+        return depth >= 0;
+    }
+
+    private int offset(int offset) {
+        if (offset < Short.MIN_VALUE || offset > Short.MAX_VALUE) {
+            throw new CompileException(String.format("The function %s is too large for a JVM method", name), null);
+        }
+        return offset;
+    }
+
+    private void stack(int words) {
+        if (depth < 0) {
+            // Code that is not reached, the JVM does not check it
+            depth = 0;
+        }
+        depth += words;
+        maxDepth = Math.max(maxDepth, depth);
+    }
+
+    private void write(int value) {
+        if (length == code.length) {
+            code = Arrays.copyOf(code, length * 2);
+        }
+        code[length++] = (byte) value;
+    }
+
+    private void writeShort(int value) {
+        write(value >> 8);
+        write(value);
+    }
+
+    byte[] toByteArray(int codeAttribute) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeShort(ClassWriter.ACC_PUBLIC | ClassWriter.ACC_STATIC);
+        out.writeShort(owner.utf8(name));
+        out.writeShort(owner.utf8(descriptor));
+        out.writeShort(1);
+        out.writeShort(codeAttribute);
+        out.writeInt(12 + length);
+        out.writeShort(maxDepth);
+        out.writeShort(maxLocals);
+        out.writeInt(length);
+        out.write(code, 0, length);
+        out.writeShort(0);
+        out.writeShort(0);
+        return bytes.toByteArray();
+    }
+}
@@ -0,0 +1,87 @@
+package codeGeneration.jvm;
+
+/**
+ * The JVM instructions the code generator emits, with their code in a class file and the number of words they put on
+ * the stack. The effect of field and method instructions depends on their descriptor, their stack is 0 here.
+ */
+public enum Opcode {
+    ACONST_NULL(0x01, 1),
+    ICONST_M1(0x02, 1),
+    ICONST_0(0x03, 1),
+    ICONST_1(0x04, 1),
+    ICONST_2(0x05, 1),
+    ICONST_3(0x06, 1),
+    ICONST_4(0x07, 1),
+    ICONST_5(0x08, 1),
+    BIPUSH(0x10, 1),
+    SIPUSH(0x11, 1),
+    LDC(0x12, 1),
+    LDC_W(0x13, 1),
+    ILOAD(0x15, 1),
+    ALOAD(0x19, 1),
+    ISTORE(0x36, -1),
+    ASTORE(0x3a, -1),
+    POP(0x57, -1),
+    DUP(0x59, 1),
+    IADD(0x60, -1),
+    ISUB(0x64, -1),
+    IMUL(0x68, -1),
+    IDIV(0x6c, -1),
+    IREM(0x70, -1),
+    INEG(0x74, 0),
+    IXOR(0x82, -1),
+    IFEQ(0x99, -1),
+    IFNE(0x9a, -1),
+    IF_ICMPEQ(0x9f, -2),
+    IF_ICMPNE(0xa0, -2),
+    IF_ICMPLT(0xa1, -2),
+    IF_ICMPGE(0xa2, -2),
+    IF_ICMPGT(0xa3, -2),
+    IF_ICMPLE(0xa4, -2),
+    IF_ACMPEQ(0xa5, -2),
+    IF_ACMPNE(0xa6, -2),
+    GOTO(0xa7, 0),
+    IRETURN(0xac, -1),
+    ARETURN(0xb0, -1),
+    RETURN(0xb1, 0),
+    GETSTATIC(0xb2, 0),
+    PUTSTATIC(0xb3, 0),
+    GETFIELD(0xb4, 0),
+    PUTFIELD(0xb5, 0),
+    INVOKEVIRTUAL(0xb6, 0),
+    INVOKESPECIAL(0xb7, 0),
+    INVOKESTATIC(0xb8, 0),
+    NEW(0xbb, 1),
+    CHECKCAST(0xc0, 0),
+    IFNULL(0xc6, -1),
+    IFNONNULL(0xc7, -1);
+
+    public final int code;
+    public final int stack;
+
+    Opcode(int code, int stack) {
+        this.code = code;
+        this.stack = stack;
+    }
+
+    /**
+     * @return the jump that is taken when this one is not, for the conditional jumps
+     */
+    public Opcode negate() {
+        switch (this) {
+            case IFEQ: return IFNE;
+            case IFNE: return IFEQ;
+            case IF_ICMPEQ: return IF_ICMPNE;
+            case IF_ICMPNE: return IF_ICMPEQ;
+            case IF_ICMPLT: return IF_ICMPGE;
+            case IF_ICMPGE: return IF_ICMPLT;
+            case IF_ICMPGT: return IF_ICMPLE;
+            case IF_ICMPLE: return IF_ICMPGT;
+            case IF_ACMPEQ: return IF_ACMPNE;
+            case IF_ACMPNE: return IF_ACMPEQ;
+            case IFNULL: return IFNONNULL;
+            case IFNONNULL: return IFNULL;
+            default: throw new IllegalStateException(this + " is not a conditional jump");
+        }
+    }
+}
@@ -0,0 +1,42 @@
+package codeGeneration.jvm;
+
+import java.io.BufferedReader;
+import java.lang.reflect.InvocationTargetException;
+
+/**
+ * Loads a class from the {@link CodeGenerator} into the running JVM and runs it. Every program gets a loader of its
+ * own, so programs with the same name can be loaded next to each other and are unloaded with their loader.
+ */
+public class ProgramLoader extends ClassLoader {
+
+    public ProgramLoader() {
+        // The runtime classes come from the loader of the compiler
+        super(ProgramLoader.class.getClassLoader());
+    }
+
+    public Class<?> load(String className, byte[] classFile) {
+        return defineClass(className.replace('/', '.'), classFile, 0, classFile.length);
+    }
+
+    /**
+     * Runs the program, which reads from input and prints to output. The output is not flushed.
+     */
+    public static void run(String className, byte[] classFile, BufferedReader input, Appendable output) {
+        Class<?> program = new ProgramLoader().load(className, classFile);
+        SplRuntime.use(input, output);
+        try {
+            program.getMethod("$run").invoke(null);
+        } catch (InvocationTargetException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new IllegalStateException(cause);
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("The compiled program could not be run", e);
+        }
+    }
+}
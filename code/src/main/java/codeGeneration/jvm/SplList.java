@@ -0,0 +1,21 @@
+package codeGeneration.jvm;
+
+/**
+ * A non-empty list in a program compiled to JVM bytecode, the empty list is null. A head of type Int, Bool or Char is
+ * kept in hd, any other head in hdRef.
+ */
+public final class SplList {
+    public int hd;
+    public Object hdRef;
+    public Object tl;
+
+    public SplList(int hd, Object tl) {
+        this.hd = hd;
+        this.tl = tl;
+    }
+
+    public SplList(Object hdRef, Object tl) {
+        this.hdRef = hdRef;
+        this.tl = tl;
+    }
+}
@@ -0,0 +1,73 @@
+package codeGeneration.jvm;
+
+import java.io.BufferedReader;
+import java.io.EOFException;
+import java.io.Flushable;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
+
+/**
+ * Printing and reading for programs compiled to JVM bytecode. The output is the same as that of the SSM: an Int or
+ * Bool is printed as a number on a line of its own, a Char without a newline, and reading prompts like ssm.jar does.
+ */
+public final class SplRuntime {
+
+    private static BufferedReader input;
+    private static Appendable output = System.out;
+
+    private SplRuntime() {
+    }
+
+    /**
+     * Sets where the program reads from and prints to, instead of the standard input and output.
+     */
+    static void use(BufferedReader in, Appendable out) {
+        input = in;
+        output = out;
+    }
+
+    public static void printInt(int value) {
+        append(Integer.toString(value));
+        append("\n");
+    }
+
+    public static void printChar(int value) {
+        append(new String(Character.toChars(value)));
+    }
+
+    public static int readInt() {
+        return Integer.parseInt(readLine("Please enter an integer: "));
+    }
+
+    public static int readChar() {
+        return readLine("Please enter a character: ").charAt(0);
+    }
+
+    private static void append(String s) {
+        try {
+            output.append(s);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static String readLine(String prompt) {
+        append(prompt);
+        try {
+            if (output instanceof Flushable) {
+                ((Flushable) output).flush();
+            }
+            if (input == null) {
+                input = new BufferedReader(new InputStreamReader(System.in));
+            }
+            String line = input.readLine();
+            if (line == null) {
+                throw new EOFException("The program reads past the end of the input");
+            }
+            return line;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
@@ -0,0 +1,32 @@
+package codeGeneration.jvm;
+
+/**
+ * A tuple in a program compiled to JVM bytecode. An element of type Int, Bool or Char is kept in fst or snd, any other
+ * element in fstRef or sndRef.
+ */
+public final class SplTuple {
+    public int fst;
+    public Object fstRef;
+    public int snd;
+    public Object sndRef;
+
+    public SplTuple(int fst, int snd) {
+        this.fst = fst;
+        this.snd = snd;
+    }
+
+    public SplTuple(int fst, Object sndRef) {
+        this.fst = fst;
+        this.sndRef = sndRef;
+    }
+
+    public SplTuple(Object fstRef, int snd) {
+        this.fstRef = fstRef;
+        this.snd = snd;
+    }
+
+    public SplTuple(Object fstRef, Object sndRef) {
+        this.fstRef = fstRef;
+        this.sndRef = sndRef;
+    }
+}
@@ -11,6 +11,7 @@ import parser.types.EmptyListType;
 import parser.types.ListType;
 import parser.types.Types;
 import typechecker.Environment;
+import util.CompilationCache;
 import util.Node;
 import util.Visitor;
 
@@ -21,6 +22,9 @@ import java.util.List;
 
 public class CodeGenerator implements Visitor {
 
+    // Version of the generated code in the CompilationCache, raise it whenever a function compiles to different code
+    public static final int CODE_VERSION = 1;
+
     private final ProgramWriter programWriter;
 
     private final Environment env;
@@ -29,6 +33,9 @@ public class CodeGenerator implements Visitor {
     private boolean listUsed = false;
     private boolean tupleUsed = false;
 
+    // Code of the functions that did not change since the previous compilation, or null
+    private CompilationCache cache = null;
+
     public CodeGenerator(String filepath, Environment env) {
         // For indentation, we can use spaces or tabs
 //        String indent = "\t";
@@ -38,9 +45,20 @@ public class CodeGenerator implements Visitor {
         this.variablesUsedAsGlobal = new ArrayList<>();
     }
 
+    /**
+     * @param cache cache the code of unchanged functions is taken from, and the code of the other functions is put in
+     */
+    public void setCache(CompilationCache cache) {
+        this.cache = cache;
+    }
+
     public void generateCode(List<Declaration> nodes) throws FileNotFoundException {
         for(Node n : nodes){
-            n.accept(this);
+            if(cache != null && n instanceof FunctionDeclaration){
+                generateCached((FunctionDeclaration) n);
+            } else {
+                n.accept(this);
+            }
         }
 
         if(listUsed){
@@ -64,6 +82,32 @@ public class CodeGenerator implements Visitor {
         programWriter.writeToFile();
     }
 
+    /**
+     * Writes the code of the function from the cache, or generates it and puts it in the cache.
+     * The first line of a fragment tells whether the function uses lists and tuples, so their classes are imported.
+     */
+    private void generateCached(FunctionDeclaration d) {
+        List<String> fragment = cache.get(d);
+        if(fragment == null){
+            boolean listUsedBefore = this.listUsed;
+            boolean tupleUsedBefore = this.tupleUsed;
+            this.listUsed = false;
+            this.tupleUsed = false;
+            int from = programWriter.size();
+            d.accept(this);
+            List<String> lines = new ArrayList<>();
+            lines.add((this.listUsed ? "list" : "") + " " + (this.tupleUsed ? "tuple" : ""));
+            lines.addAll(programWriter.fragment(from));
+            cache.put(d, lines);
+            this.listUsed |= listUsedBefore;
+            this.tupleUsed |= tupleUsedBefore;
+            return;
+        }
+        this.listUsed |= fragment.get(0).startsWith("list");
+        this.tupleUsed |= fragment.get(0).endsWith("tuple");
+        programWriter.addFragment(fragment.subList(1, fragment.size()));
+    }
+
     @Override
     public void visit(Expression e) {
         Expression.visitExpression(this, e);
@@ -95,7 +139,7 @@ public class CodeGenerator implements Visitor {
 
     @Override
     public void visit(IdentifierExpression e) {
-        if(this.env.isGlobalVariable(e.name) && !this.variablesUsedAsGlobal.contains(e.name)){
+        if(this.env.isGlobalVariable(e.id) && !this.variablesUsedAsGlobal.contains(e.name)){
             this.variablesUsedAsGlobal.add(e.name);
         }
         programWriter.addToOutput(e.name, false);
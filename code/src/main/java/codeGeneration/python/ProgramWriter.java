@@ -23,8 +23,6 @@ public class ProgramWriter {
 
     public static boolean testProgram = false;
 
-    private final boolean splTypesInstalled;
-
     private final List<String> toAdd;
 
     public ProgramWriter(String filepath, String indent){
@@ -33,18 +31,18 @@ public class ProgramWriter {
         this.indent = indent;
         this.currIndent = "";
         this.currLine = "";
-        this.splTypesInstalled = CheckPython.spl_types_installed();
         this.toAdd = new ArrayList<>();
     }
 
     public void addImport(String class_name){
+        // Only programs with lists or tuples need to know whether spl_types is installed, which starts Python
         if(class_name.equals("Node")){
-            if(this.splTypesInstalled)
+            if(CheckPython.spl_types_installed())
                 this.program.add(0, "from spl_types.lists import Node");
             else
                 toAdd.add(ReadSPL.readLineByLineJava8("./src/main/python/spl_types/spl_types/lists.py"));
         } else if(class_name.equals("Tuple")){
-            if(this.splTypesInstalled)
+            if(CheckPython.spl_types_installed())
                 this.program.add(0, "from spl_types.tuple import Tuple");
             else
                 toAdd.add(ReadSPL.readLineByLineJava8("./src/main/python/spl_types/spl_types/tuple.py"));
@@ -65,6 +63,34 @@ public class ProgramWriter {
         addToOutput(line, space, false);
     }
 
+    /**
+     * @return the number of lines written so far
+     */
+    public int size(){
+        return this.program.size();
+    }
+
+    /**
+     * @param from number of lines before the first line of the fragment
+     * @return the lines written since, without the blank line that separates a function from the code above it
+     */
+    public List<String> fragment(int from){
+        List<String> lines = this.program.subList(from, this.program.size());
+        if(!lines.isEmpty() && lines.get(0).isEmpty())
+            lines = lines.subList(1, lines.size());
+        return new ArrayList<>(lines);
+    }
+
+    /**
+     * Writes the lines of a fragment made by {@link #fragment(int)}.
+     * @param lines lines of the fragment
+     */
+    public void addFragment(List<String> lines){
+        if(this.program.size() != 0)
+            this.program.add(""); // Blank line for visual pleasure
+        this.program.addAll(lines);
+    }
+
     public void addIndent(){
         this.currIndent += this.indent;
     }
@@ -1,6 +1,7 @@
 package codeGeneration.ssm;
 
 import codeGeneration.CompileException;
+import lexer.SymbolTable;
 import lexer.TokenType;
 import parser.declarations.Declaration;
 import parser.declarations.FunctionDeclaration;
@@ -8,33 +9,29 @@ import parser.declarations.VariableDeclaration;
 import parser.expressions.*;
 import parser.statements.*;
 import parser.types.*;
-import util.Hashing;
+import util.CompilationCache;
 import util.Node;
 import util.Visitor;
 
 import java.io.FileNotFoundException;
-import java.security.MessageDigest;
-import java.security.NoSuchAlgorithmException;
 import java.util.ArrayList;
-import java.util.HashMap;
+import java.util.Arrays;
 import java.util.List;
 
 public class CodeGenerator implements Visitor {
 
+    // Version of the generated code in the CompilationCache, raise it whenever a function compiles to different code
+    public static final int CODE_VERSION = 2;
+
     private final ProgramWriter programWriter;
 
     // String which denotes the branch on which you are currently writing to
     private String currentBranch = "root";
+    // Name of the function that is being generated, its labels contain this name
+    private String currentFunction = "root";
 
-    // Counters for the number of then branches in the current function.
-    // Needed if there are multiple or nested if conditions
-    private int thenBranches = 0;
-    // Counters for the number of end branches in the current function.
-    // Needed if there are multiple if conditions and/or while loops or nested if conditions
-    private int endBranches = 0;
-    // Counters for the number of loop branches in the current function.
-    // Needed if there are multiple and/or nested while loops
-    private int loopBranches = 0;
+    // Number of labels created in the current function, see label
+    private int labels = 0;
 
     //Controls what to do if identifier is in lhs of Assignment (stl)
     //Or rhs (load from MP + offset);
@@ -45,28 +42,36 @@ public class CodeGenerator implements Visitor {
 
     private boolean isFirstGlobalVariable = false;
 
-    private HashMap<String, Integer> currentArgumentsPlusOffsettmp = new HashMap<>();
+    // Offsets of the arguments, locals and globals, keyed by the SymbolTable id of their name
+    private OffsetTable currentArgumentsPlusOffsettmp = OffsetTable.local();
 
-    private HashMap<String, Integer> currentlocalVariablesPlusOffset = new HashMap<>();
-    private HashMap<String, Integer> GlobalVariablesPlusOffset = new HashMap<>();
+    private OffsetTable currentlocalVariablesPlusOffset = OffsetTable.local();
+    private OffsetTable GlobalVariablesPlusOffset = OffsetTable.global(SymbolTable.global().size());
 
-    private HashMap<String, HashMap<String, Integer>> functionsLocalsEnvironment = new HashMap<>();
-    private HashMap<String, HashMap<String, Integer>> functionsArgsEnvironment = new HashMap<>();
+    // Arguments and return types of the functions, indexed by the SymbolTable id of the function name
+    private OffsetTable[] functionsArgsEnvironment = new OffsetTable[SymbolTable.global().size()];
+    private Type[] functionTypes = new Type[SymbolTable.global().size()];
     private int numberOfGlobals = 0;
 
-    private MessageDigest md5Generator;
-
-    private HashMap<String, Type> functionTypes = new HashMap<>();
-
+    // Code of the functions that did not change since the previous compilation, or null
+    private CompilationCache cache = null;
 
     public CodeGenerator(String filepath) {
         this.programWriter = new ProgramWriter(filepath);
+    }
 
-        try {
-            this.md5Generator = MessageDigest.getInstance("MD5");
-        } catch (NoSuchAlgorithmException e) {
-            e.printStackTrace();
-        }
+    /**
+     * @param cache cache the code of unchanged functions is taken from, and the code of the other functions is put in
+     */
+    public void setCache(CompilationCache cache) {
+        this.cache = cache;
+    }
+
+    /**
+     * @param optimizer optimizer the generated code is run through before it is written, or null
+     */
+    public void setOptimizer(PeepholeOptimizer optimizer) {
+        programWriter.setOptimizer(optimizer);
     }
 
     public void generateCode(List<Declaration> nodes, Command postamble) throws FileNotFoundException {
@@ -76,7 +81,9 @@ public class CodeGenerator implements Visitor {
                 if(((VariableDeclaration) n).isGlobal)
                     numberOfGlobals++;
             if(n instanceof FunctionDeclaration){
-                functionTypes.put(((FunctionDeclaration) n).funName.name, ((FunctionDeclaration) n).funType.returnType);
+                FunctionDeclaration f = (FunctionDeclaration) n;
+                functionTypes = ensureCapacity(functionTypes, f.funName.id);
+                functionTypes[f.funName.id] = f.funType.returnType;
             }
         }
 
@@ -84,7 +91,11 @@ public class CodeGenerator implements Visitor {
             isFirstGlobalVariable = true;
 
         for(Node n : nodes){
-            n.accept(this);
+            if(cache != null && n instanceof FunctionDeclaration){
+                generateCached((FunctionDeclaration) n);
+            } else {
+                n.accept(this);
+            }
             if(n instanceof VariableDeclaration) {
                 if (((VariableDeclaration) n).isGlobal)
                     numberOfGlobals++;
@@ -102,12 +113,36 @@ public class CodeGenerator implements Visitor {
     public void generateCode(Node n, Command postamble) throws FileNotFoundException {
         n.accept(this);
 
+        // An expression with && or || ends in a branch of its own, the postamble goes after it
         if (postamble != null) {
-            programWriter.addToOutput("root", postamble);
+            programWriter.addToOutput(currentBranch, postamble);
         }
         programWriter.writeToFile();
     }
 
+    /**
+     * Writes the code of the function from the cache, or generates it and puts it in the cache.
+     */
+    private void generateCached(FunctionDeclaration d) {
+        List<String> fragment = cache.get(d);
+        if(fragment == null){
+            int from = programWriter.branchCount();
+            d.accept(this);
+            cache.put(d, programWriter.fragment(from));
+            return;
+        }
+        // Leave the offsets as generating the function would have, code that follows may still use them
+        enterFunction(d);
+        currentlocalVariablesPlusOffset = OffsetTable.local();
+        for(int i = 0; i < d.decls.size(); i++){
+            localVariableDeclarationOffset = i;
+            currentlocalVariablesPlusOffset.put(d.decls.get(i).left.id, i);
+        }
+        functionsArgsEnvironment = ensureCapacity(functionsArgsEnvironment, d.funName.id);
+        functionsArgsEnvironment[d.funName.id] = currentArgumentsPlusOffsettmp;
+        currentBranch = programWriter.addFragment(fragment);
+    }
+
     @Override
     public void visit(Expression e) {
         Expression.visitExpression(this, e);
@@ -115,36 +150,36 @@ public class CodeGenerator implements Visitor {
 
     @Override
     public void visit(BooleanExpression e) {
-        // If e.name than "-1" else "0"
-        String val = e.name ? "-1" : "0";
-        programWriter.addToOutput(currentBranch, new Command("ldc", val));
+        // If e.name than -1 else 0
+        int val = e.name ? -1 : 0;
+        programWriter.addToOutput(currentBranch, new Command(Opcode.LDC, val));
     }
 
     @Override
     public void visit(CallExpression e) {
-        HashMap<String, Integer> previous = currentArgumentsPlusOffsettmp;
+        OffsetTable previous = currentArgumentsPlusOffsettmp;
         //SAVES previous MP
         //saves MP before putting arguments on stack
-        programWriter.addToOutput(currentBranch, new Command("ldr", "MP"));
+        programWriter.addToOutput(currentBranch, new Command(Opcode.LDR, Register.MP));
 
         for(Expression arg : e.args){
             this.visit(arg);
         }
-        currentArgumentsPlusOffsettmp = functionsArgsEnvironment.get(e.function_name.name);
-        programWriter.addToOutput(currentBranch, new Command("bsr", e.function_name.name));
+        currentArgumentsPlusOffsettmp = functionArguments(e.function_name.id);
+        programWriter.addToOutput(currentBranch, new Command(Opcode.BSR, e.function_name.name));
 
         //REASON: restore old MP
-        programWriter.addToOutput(currentBranch, new Command("ajs", Integer.toString(-currentArgumentsPlusOffsettmp.size())));
+        programWriter.addToOutput(currentBranch, new Command(Opcode.AJS, -currentArgumentsPlusOffsettmp.size()));
 
-        //programWriter.addToOutput(currentBranch, new Command("str", "SP"));
+        //programWriter.addToOutput(currentBranch, new Command(Opcode.STR, Register.SP));
         //stores old MP in MP
-        programWriter.addToOutput(currentBranch, new Command("str", "MP"));
+        programWriter.addToOutput(currentBranch, new Command(Opcode.STR, Register.MP));
         //adjust SP
-        //programWriter.addToOutput(currentBranch, new Command("ajs", Integer.toString(-e.args.size())));
+        //programWriter.addToOutput(currentBranch, new Command(Opcode.AJS, -e.args.size()));
 
         //Only loads result from call if function is not void
-        if(!(functionTypes.get(e.function_name.name) instanceof VoidType))
-            programWriter.addToOutput(currentBranch, new Command("ldr", "RR"));
+        if(!(functionType(e.function_name.id) instanceof VoidType))
+            programWriter.addToOutput(currentBranch, new Command(Opcode.LDR, Register.RR));
 
         currentArgumentsPlusOffsettmp = previous;
 
@@ -152,32 +187,30 @@ public class CodeGenerator implements Visitor {
 
     @Override
     public void visit(CharacterExpression e) {
-        programWriter.addToOutput(currentBranch, new Command("ldc", Integer.toString( (int) e.name)));
+        programWriter.addToOutput(currentBranch, new Command(Opcode.LDC, (int) e.name));
     }
 
     @Override
     public void visit(IdentifierExpression e) {
         //If identifier is in the rhs of Assignment, we need to use an offset to load it to the stack;
-        if(functionsLocalsEnvironment.get(currentBranch) != null)
-            currentlocalVariablesPlusOffset = functionsLocalsEnvironment.get(currentBranch);
         if(currentlocalVariablesPlusOffset != null) {
-            if (!leftsideVarDeclaration && (currentlocalVariablesPlusOffset.get(e.name) != null)) {
-                programWriter.addToOutput(currentBranch, new Command("ldl", Integer.toString(currentlocalVariablesPlusOffset.get(e.name)))); //Loads value from address
+            if (!leftsideVarDeclaration && currentlocalVariablesPlusOffset.contains(e.id)) {
+                programWriter.addToOutput(currentBranch, new Command(Opcode.LDL, currentlocalVariablesPlusOffset.get(e.id))); //Loads value from address
 
             }
             //we assume it's an argument
-            else if (!leftsideVarDeclaration && currentArgumentsPlusOffsettmp.get(e.name) != null) {
+            else if (!leftsideVarDeclaration && currentArgumentsPlusOffsettmp.contains(e.id)) {
                 //first arguments have higher offset;
                                     //2                                   1
-                Integer offset = -currentArgumentsPlusOffsettmp.size() + currentArgumentsPlusOffsettmp.get(e.name);
-                programWriter.addToOutput(currentBranch, new Command("ldl", (Integer.toString(offset - 1)))); //Loads value from add
+                int offset = -currentArgumentsPlusOffsettmp.size() + currentArgumentsPlusOffsettmp.get(e.id);
+                programWriter.addToOutput(currentBranch, new Command(Opcode.LDL, offset - 1)); //Loads value from add
 
                 //-1 to go over return address;
             }
-            else if (!leftsideVarDeclaration && GlobalVariablesPlusOffset.get(e.name) != null){
+            else if (!leftsideVarDeclaration && GlobalVariablesPlusOffset.contains(e.id)){
                 //loads register that points to first variable
-                programWriter.addToOutput(currentBranch, new Command("ldr", "R5")); //Loads value from address
-                programWriter.addToOutput(currentBranch, new Command("lda", Integer.toString(GlobalVariablesPlusOffset.get(e.name)))); //Loads value from address
+                programWriter.addToOutput(currentBranch, new Command(Opcode.LDR, Register.R5)); //Loads value from address
+                programWriter.addToOutput(currentBranch, new Command(Opcode.LDA, GlobalVariablesPlusOffset.get(e.id))); //Loads value from address
             }
 
         }
@@ -185,78 +218,74 @@ public class CodeGenerator implements Visitor {
 
     @Override
     public void visit(IntegerExpression e) {
-        programWriter.addToOutput(currentBranch, new Command("ldc", Integer.toString(e.name)));
+        programWriter.addToOutput(currentBranch, new Command(Opcode.LDC, e.name));
     }
 
     @Override
     public void visit(isEmptyExpression e) {
         this.visit(e.arg);
-        programWriter.addToOutput(currentBranch, new Command("ldc", "0"));
-        programWriter.addToOutput(currentBranch, new Command("eq"));
+        programWriter.addToOutput(currentBranch, new Command(Opcode.LDC, 0));
+        programWriter.addToOutput(currentBranch, new Command(Opcode.EQ));
     }
 
     @Override
     public void visit(ListExpression e) {
         //Empty list is null represented by 0
-        programWriter.addToOutput(currentBranch, new Command("ldc", "0"));
-        //programWriter.addToOutput(currentBranch, new Command("sth"));
+        programWriter.addToOutput(currentBranch, new Command(Opcode.LDC, 0));
+        //programWriter.addToOutput(currentBranch, new Command(Opcode.STH));
     }
 
     @Override
     public void visit(OperatorExpression e) {
+        if (e.operator == TokenType.TOK_AND || e.operator == TokenType.TOK_OR) {
+            shortCircuit(e);
+            return;
+        }
         this.visit(e.left);
         this.visit(e.right);
         switch (e.operator) {
             // arithmetic binary functions
             case TOK_PLUS:
-                programWriter.addToOutput(currentBranch, new Command("add"));
+                programWriter.addToOutput(currentBranch, new Command(Opcode.ADD));
                 break;
             case TOK_MULT:
-                programWriter.addToOutput(currentBranch, new Command("mul"));
+                programWriter.addToOutput(currentBranch, new Command(Opcode.MUL));
                 break;
             case TOK_MINUS:
-                programWriter.addToOutput(currentBranch, new Command("sub"));
+                programWriter.addToOutput(currentBranch, new Command(Opcode.SUB));
                 break;
             case TOK_MOD:
-                programWriter.addToOutput(currentBranch, new Command("mod"));
+                programWriter.addToOutput(currentBranch, new Command(Opcode.MOD));
                 break;
             case TOK_DIV:
-                programWriter.addToOutput(currentBranch, new Command("div"));
-                break;
-
-            // Boolean
-            case TOK_AND:
-                programWriter.addToOutput(currentBranch, new Command("and"));
-                break;
-            case TOK_OR:
-                programWriter.addToOutput(currentBranch, new Command("or"));
+                programWriter.addToOutput(currentBranch, new Command(Opcode.DIV));
                 break;
 
             // Comparison
             case TOK_EQ:
-                programWriter.addToOutput(currentBranch, new Command("eq"));
+                programWriter.addToOutput(currentBranch, new Command(Opcode.EQ));
                 break;
             case TOK_NEQ:
-                programWriter.addToOutput(currentBranch, new Command("ne"));
+                programWriter.addToOutput(currentBranch, new Command(Opcode.NE));
                 break;
             case TOK_LT:
-                programWriter.addToOutput(currentBranch, new Command("lt"));
+                programWriter.addToOutput(currentBranch, new Command(Opcode.LT));
                 break;
             case TOK_GT:
-                programWriter.addToOutput(currentBranch, new Command("gt"));
+                programWriter.addToOutput(currentBranch, new Command(Opcode.GT));
                 break;
             case TOK_LEQ:
-                programWriter.addToOutput(currentBranch, new Command("le"));
+                programWriter.addToOutput(currentBranch, new Command(Opcode.LE));
                 break;
             case TOK_GEQ:
-                programWriter.addToOutput(currentBranch, new Command("ge"));
+                programWriter.addToOutput(currentBranch, new Command(Opcode.GE));
                 break;
             case TOK_CONS:
                 // Store the last two elements on the stack and return the address of the last element
-                programWriter.addToOutput(currentBranch, new Command("stmh", "2"));
+                programWriter.addToOutput(currentBranch, new Command(Opcode.STMH, 2));
                 // We want the address of the first element, so subtract 1 from this address
-                programWriter.addToOutput(currentBranch, new Command("ldc", "1"));
-                programWriter.addToOutput(currentBranch, new Command("sub"));
+                programWriter.addToOutput(currentBranch, new Command(Opcode.LDC, 1));
+                programWriter.addToOutput(currentBranch, new Command(Opcode.SUB));
                 break;
 
             default:
@@ -264,6 +293,69 @@ public class CodeGenerator implements Visitor {
         }
     }
 
+    /**
+     * Computes the value of a && or || without evaluating the right operand when the left one decides the result:
+     *      a && b:     jump to false if a is False
+     *                  ....    |- b
+     *                  bra end
+     *      false:      ldc 0
+     *      end:        ....
+     * and the same for a || b, jumping to a branch that loads True.
+     */
+    private void shortCircuit(OperatorExpression e) {
+        boolean and = e.operator == TokenType.TOK_AND;
+        String branchDecided = label(and ? "false" : "true");
+        String branchEnd = label("end");
+
+        branchIf(e.left, !and, branchDecided);
+        this.visit(e.right);
+        programWriter.addToOutput(currentBranch, new Command(Opcode.BRA, branchEnd));
+
+        currentBranch = branchDecided;
+        programWriter.addToOutput(currentBranch, new Command(Opcode.LDC, and ? 0 : -1));
+
+        currentBranch = branchEnd;
+        // Ensure that the endBranch exists:
+        programWriter.addToOutput(currentBranch, new Command(Opcode.NOP));
+    }
+
+    /**
+     * Jumps to a branch if a condition has the given value, and falls through otherwise. The operands of && and ||
+     * are turned into jumps of their own, so the right operand is only evaluated when the left one does not decide
+     * the jump, and ! swaps the value that is jumped on.
+     *
+     * @param condition Bool expression
+     * @param value the value of the condition on which to jump
+     * @param target branch that is jumped to
+     */
+    private void branchIf(Expression condition, boolean value, String target) {
+        if (condition instanceof PrefixExpression && ((PrefixExpression) condition).operator == TokenType.TOK_NOT) {
+            branchIf(((PrefixExpression) condition).right, !value, target);
+            return;
+        }
+        if (condition instanceof OperatorExpression) {
+            OperatorExpression e = (OperatorExpression) condition;
+            if (e.operator == TokenType.TOK_AND || e.operator == TokenType.TOK_OR) {
+                // The left operand decides the jump on its own if it is False for && or True for ||
+                boolean decides = e.operator == TokenType.TOK_OR;
+                if (decides == value) {
+                    branchIf(e.left, value, target);
+                    branchIf(e.right, value, target);
+                } else {
+                    String branchSkip = label("skip");
+                    branchIf(e.left, decides, branchSkip);
+                    branchIf(e.right, value, target);
+                    currentBranch = branchSkip;
+                    // Ensure that the skip branch exists:
+                    programWriter.addToOutput(currentBranch, new Command(Opcode.NOP));
+                }
+                return;
+            }
+        }
+        this.visit(condition);
+        programWriter.addToOutput(currentBranch, new Command(value ? Opcode.BRT : Opcode.BRF, target));
+    }
+
     @Override
     public void visit(PostfixExpression e) {
 
@@ -271,34 +363,34 @@ public class CodeGenerator implements Visitor {
 
 
             if (e.operator == TokenType.TOK_FST) {
-                programWriter.addToOutput(currentBranch, new Command("ldh", "0"));
+                programWriter.addToOutput(currentBranch, new Command(Opcode.LDH, 0));
 
             } else if (e.operator == TokenType.TOK_SND) {
                 if(leftsideAssignment){
-                    programWriter.addToOutput(currentBranch, new Command("ldc", "1"));
-                    programWriter.addToOutput(currentBranch, new Command("add"));
-                    programWriter.addToOutput(currentBranch, new Command("ldh", "0"));
+                    programWriter.addToOutput(currentBranch, new Command(Opcode.LDC, 1));
+                    programWriter.addToOutput(currentBranch, new Command(Opcode.ADD));
+                    programWriter.addToOutput(currentBranch, new Command(Opcode.LDH, 0));
                 }
                 else
-                    programWriter.addToOutput(currentBranch, new Command("ldh", "1"));
-                //programWriter.addToOutput(currentBranch, new Command("ldh", "1"));
+                    programWriter.addToOutput(currentBranch, new Command(Opcode.LDH, 1));
+                //programWriter.addToOutput(currentBranch, new Command(Opcode.LDH, 1));
             }
             //The big question here is:
             //All the rest of the things work using reference
             //For head however, a copy is needed.
             else if (e.operator == TokenType.TOK_HD) {
 
-                programWriter.addToOutput(currentBranch, new Command("ldh", "0"));
+                programWriter.addToOutput(currentBranch, new Command(Opcode.LDH, 0));
                 //If type of list is also a list, we need to put the head on the heap pointing to null
-                //programWriter.addToOutput(currentBranch, new Command("not"));
+                //programWriter.addToOutput(currentBranch, new Command(Opcode.NOT));
             } else if (e.operator == TokenType.TOK_TL) {
                 if(leftsideAssignment){
-                    programWriter.addToOutput(currentBranch, new Command("ldc", "1"));
-                    programWriter.addToOutput(currentBranch, new Command("add"));
-                    programWriter.addToOutput(currentBranch, new Command("ldh", "0"));
+                    programWriter.addToOutput(currentBranch, new Command(Opcode.LDC, 1));
+                    programWriter.addToOutput(currentBranch, new Command(Opcode.ADD));
+                    programWriter.addToOutput(currentBranch, new Command(Opcode.LDH, 0));
                 }
                 else
-                    programWriter.addToOutput(currentBranch, new Command("ldh", "1"));
+                    programWriter.addToOutput(currentBranch, new Command(Opcode.LDH, 1));
 
             }
         }
@@ -311,9 +403,9 @@ public class CodeGenerator implements Visitor {
         this.visit(e.right);
 
         if(e.operator == TokenType.TOK_MINUS)
-            programWriter.addToOutput(currentBranch, new Command("neg"));
+            programWriter.addToOutput(currentBranch, new Command(Opcode.NEG));
         else if(e.operator == TokenType.TOK_NOT){
-            programWriter.addToOutput(currentBranch, new Command("not"));
+            programWriter.addToOutput(currentBranch, new Command(Opcode.NOT));
         }
         else
             throw new CompileException("Invalid operator", e);
@@ -321,17 +413,17 @@ public class CodeGenerator implements Visitor {
 
     @Override
     public void visit(ReadExpression e) {
-        String arg = e.arg.name == 0 ? "10": "11";
-        programWriter.addToOutput(currentBranch, new Command("trap", arg));
+        int arg = e.arg.name == 0 ? 10 : 11;
+        programWriter.addToOutput(currentBranch, new Command(Opcode.TRAP, arg));
     }
 
     @Override
     public void visit(TupleExpression e) {
         this.visit(e.left);
         this.visit(e.right);
-        programWriter.addToOutput(currentBranch, new Command("stmh","2"));
-        programWriter.addToOutput(currentBranch, new Command("ldc", "1"));
-        programWriter.addToOutput(currentBranch, new Command("sub"));
+        programWriter.addToOutput(currentBranch, new Command(Opcode.STMH, 2));
+        programWriter.addToOutput(currentBranch, new Command(Opcode.LDC, 1));
+        programWriter.addToOutput(currentBranch, new Command(Opcode.SUB));
 
     }
 
@@ -356,30 +448,30 @@ public class CodeGenerator implements Visitor {
         this.visit(s.right);
 
         if(s.name instanceof IdentifierExpression){
-            String name = ((IdentifierExpression) s.name).name;
-            if(GlobalVariablesPlusOffset.get(name)!= null){
-                //programWriter.addToOutput(currentBranch, new Command("ldr", "R5"));
+            int id = ((IdentifierExpression) s.name).id;
+            if(GlobalVariablesPlusOffset.contains(id)){
+                //programWriter.addToOutput(currentBranch, new Command(Opcode.LDR, Register.R5));
                 //After value to be store is put in the stack we store it
-                programWriter.addToOutput(currentBranch, new Command("ldr", "R5"));
-                programWriter.addToOutput(currentBranch, new Command("sta", Integer.toString(GlobalVariablesPlusOffset.get(name))));
+                programWriter.addToOutput(currentBranch, new Command(Opcode.LDR, Register.R5));
+                programWriter.addToOutput(currentBranch, new Command(Opcode.STA, GlobalVariablesPlusOffset.get(id)));
             }
-            else if(currentlocalVariablesPlusOffset.get(name)!= null) {
-                programWriter.addToOutput(currentBranch, new Command("stl", Integer.toString(currentlocalVariablesPlusOffset.get(name))));
+            else if(currentlocalVariablesPlusOffset.contains(id)) {
+                programWriter.addToOutput(currentBranch, new Command(Opcode.STL, currentlocalVariablesPlusOffset.get(id)));
             }
-            else if (currentArgumentsPlusOffsettmp.get(name) != null) {
+            else if (currentArgumentsPlusOffsettmp.contains(id)) {
                 //first arguments have higher offset;
                 //2                                   1
-                Integer offset = -currentArgumentsPlusOffsettmp.size() + currentArgumentsPlusOffsettmp.get(name);
+                int offset = -currentArgumentsPlusOffsettmp.size() + currentArgumentsPlusOffsettmp.get(id);
 
-                programWriter.addToOutput(currentBranch, new Command("stl", (Integer.toString(offset - 1)))); //Loads value from add
+                programWriter.addToOutput(currentBranch, new Command(Opcode.STL, offset - 1)); //Loads value from add
 
                 //-1 to go over return address;
             }
         }
         if(s.name instanceof PostfixExpression){
 //            this.visit(s.right);
-            programWriter.addToOutput(currentBranch, new Command("swp"));
-            programWriter.addToOutput(currentBranch, new Command("sta", "0"));
+            programWriter.addToOutput(currentBranch, new Command(Opcode.SWP));
+            programWriter.addToOutput(currentBranch, new Command(Opcode.STA, 0));
         }
 
 
@@ -390,24 +482,24 @@ public class CodeGenerator implements Visitor {
     public void visit(CallStatement s) {
         //SAVES previous MP
         //saves MP before putting arguments on stack
-        HashMap<String, Integer> previous = currentArgumentsPlusOffsettmp;
-        programWriter.addToOutput(currentBranch, new Command("ldr", "MP"));
+        OffsetTable previous = currentArgumentsPlusOffsettmp;
+        programWriter.addToOutput(currentBranch, new Command(Opcode.LDR, Register.MP));
 
         for(Expression arg : s.args){
             this.visit(arg);
         }
-        currentArgumentsPlusOffsettmp = functionsArgsEnvironment.get(s.function_name.name);
-        programWriter.addToOutput(currentBranch, new Command("bsr", s.function_name.name));
+        currentArgumentsPlusOffsettmp = functionArguments(s.function_name.id);
+        programWriter.addToOutput(currentBranch, new Command(Opcode.BSR, s.function_name.name));
         //REASON: restore old MP
-        programWriter.addToOutput(currentBranch, new Command("ajs", Integer.toString(-currentArgumentsPlusOffsettmp.size())));
+        programWriter.addToOutput(currentBranch, new Command(Opcode.AJS, -currentArgumentsPlusOffsettmp.size()));
 
-        //programWriter.addToOutput(currentBranch, new Command("str", "SP"));
+        //programWriter.addToOutput(currentBranch, new Command(Opcode.STR, Register.SP));
         //stores old MP in MP
-        programWriter.addToOutput(currentBranch, new Command("str", "MP"));
+        programWriter.addToOutput(currentBranch, new Command(Opcode.STR, Register.MP));
         //adjust SP
-        //programWriter.addToOutput(currentBranch, new Command("ajs", Integer.toString(-e.args.size())));
-        if(!(functionTypes.get(s.function_name.name) instanceof VoidType))
-            programWriter.addToOutput(currentBranch, new Command("ldr", "RR"));
+        //programWriter.addToOutput(currentBranch, new Command(Opcode.AJS, -e.args.size()));
+        if(!(functionType(s.function_name.id) instanceof VoidType))
+            programWriter.addToOutput(currentBranch, new Command(Opcode.LDR, Register.RR));
 
         currentArgumentsPlusOffsettmp = previous;
     }
@@ -415,7 +507,7 @@ public class CodeGenerator implements Visitor {
     /**
      * For the if statement:
      * - visit the condition
-     * - branch based on condition
+     * - branch based on condition, && and || only evaluate their right operand when needed (see branchIf)
      * - create the branch for the then statement {branch}_then
      * - create the branch for the else statement inside the original branch (i.e. directly underneath the brt check)
      * - create the branch for what comes after the conditional statement {branch}_end
@@ -445,26 +537,19 @@ public class CodeGenerator implements Visitor {
     @Override
     public void visit(ConditionalStatement conditionalStatement) {
         //Bookkeeping: create branch names and adjust counters
-        String branchThen = currentBranch + "_then" + thenBranches;
-        branchThen = Hashing.getMD5Hash(branchThen);
-        String branchEnd = currentBranch + "_end" + endBranches;
-        branchEnd = Hashing.getMD5Hash(branchEnd);
-
-        this.thenBranches++;
-        this.endBranches++;
+        String branchThen = label("then");
+        String branchEnd = label("end");
 
         //Begin code generation for conditional statements
-        // Check condition
-        this.visit(conditionalStatement.condition);
-        // Branch based on condition
-        programWriter.addToOutput(currentBranch, new Command("brt", branchThen));
+        // Check condition and branch based on it
+        branchIf(conditionalStatement.condition, true, branchThen);
 
         // Here you visit your else statements
         for(Statement s : conditionalStatement.else_expression){
             this.visit(s);
         }
         // You don't want to end up in the then statements, so skip ahead
-        programWriter.addToOutput(currentBranch, new Command("bra", branchEnd));
+        programWriter.addToOutput(currentBranch, new Command(Opcode.BRA, branchEnd));
 
         // Generate code for the then branch
         currentBranch = branchThen;
@@ -476,13 +561,13 @@ public class CodeGenerator implements Visitor {
         currentBranch = branchEnd;
 
         // Ensure that the endBranch exists:
-        programWriter.addToOutput(currentBranch, new Command("nop"));
+        programWriter.addToOutput(currentBranch, new Command(Opcode.NOP));
     }
 
     /**
      * For the loop statement:
      * - visit the condition
-     * - branch based on the condition
+     * - branch based on the condition, && and || only evaluate their right operand when needed (see branchIf)
      * - create the new branch loop
      *
      * The program layout should be as such:
@@ -511,23 +596,15 @@ public class CodeGenerator implements Visitor {
     @Override
     public void visit(LoopStatement loopStatement) {
         //Bookkeeping: create branch names and adjust counters
-        String branchLoop = currentBranch + "_loop" + thenBranches;
-        branchLoop = Hashing.getMD5Hash(branchLoop);
-        String branchEnd = currentBranch + "_end" + endBranches;
-        branchEnd = Hashing.getMD5Hash(branchEnd);
-
-        this.loopBranches++;
-        this.endBranches++;
+        String branchLoop = label("loop");
+        String branchEnd = label("end");
 
-        programWriter.addToOutput(currentBranch, new Command("bra", branchLoop));
+        programWriter.addToOutput(currentBranch, new Command(Opcode.BRA, branchLoop));
 
         //Beginning of while
-        // Change branchname and visit the condition
+        // Change branchname, visit the condition and branch based on it
         currentBranch = branchLoop;
-        this.visit(loopStatement.condition);
-
-        // Branch based on the condition
-        programWriter.addToOutput(currentBranch, new Command("brf", branchEnd));
+        branchIf(loopStatement.condition, false, branchEnd);
 
         // Create the Loop Body
         for(Statement s : loopStatement.body){
@@ -535,24 +612,24 @@ public class CodeGenerator implements Visitor {
         }
 
         // We are out of the loop, now branch back to the beginning to check the condition again
-        programWriter.addToOutput(currentBranch, new Command("bra", branchLoop));
+        programWriter.addToOutput(currentBranch, new Command(Opcode.BRA, branchLoop));
 
         // Create the end branch and continue building it
         currentBranch = branchEnd;
 
         // Ensure that the endBranch exists:
-        programWriter.addToOutput(currentBranch, new Command("nop"));
+        programWriter.addToOutput(currentBranch, new Command(Opcode.NOP));
     }
 
     @Override
     public void visit(PrintStatement s) {
         if(s.arg.getType() instanceof CharType){
             this.visit(s.arg);
-            programWriter.addToOutput(currentBranch, new Command("trap", "1"));
+            programWriter.addToOutput(currentBranch, new Command(Opcode.TRAP, 1));
         }
         else if(s.arg.getType() instanceof IntType || s.arg.getType() instanceof BoolType) {
             this.visit(s.arg);
-            programWriter.addToOutput(currentBranch, new Command("trap", "0"));
+            programWriter.addToOutput(currentBranch, new Command(Opcode.TRAP, 0));
         }
         else if(s.arg.getType() instanceof TupleType){
             printTuple(s.arg, (TupleType) s.arg.getType(), new ArrayList<>());
@@ -565,7 +642,7 @@ public class CodeGenerator implements Visitor {
         printCharacter('(');
 
         // Printing the first element
-        preamble.add(new Command("ldh", "0"));
+        preamble.add(new Command(Opcode.LDH, 0));
         printElement(e, t.left, preamble);
         preamble.remove(preamble.size()-1);
 
@@ -574,7 +651,7 @@ public class CodeGenerator implements Visitor {
 
         // Printing the second element
         this.visit(e);
-        preamble.add(new Command("ldh", "1"));
+        preamble.add(new Command(Opcode.LDH, 1));
         printElement(e, t.right, preamble);
         preamble.remove(preamble.size()-1);
 
@@ -588,10 +665,10 @@ public class CodeGenerator implements Visitor {
             }
         }
         if(t instanceof IntType)
-            programWriter.addToOutput(currentBranch, new Command("trap", "0"));
+            programWriter.addToOutput(currentBranch, new Command(Opcode.TRAP, 0));
         else if(t instanceof CharType){
             printCharacter('\'');
-            programWriter.addToOutput(currentBranch, new Command("trap", "1"));
+            programWriter.addToOutput(currentBranch, new Command(Opcode.TRAP, 1));
             printCharacter('\'');
         } else if(t instanceof TupleType){
             printTuple(e, (TupleType) t, preamble);
@@ -602,28 +679,28 @@ public class CodeGenerator implements Visitor {
     private void printCharacter(Character c){
         switch (c){
             case '(':
-                programWriter.addToOutput(currentBranch, new Command("ldc", "40"));
+                programWriter.addToOutput(currentBranch, new Command(Opcode.LDC, 40));
                 break;
             case ')':
-                programWriter.addToOutput(currentBranch, new Command("ldc", "41"));
+                programWriter.addToOutput(currentBranch, new Command(Opcode.LDC, 41));
                 break;
             case '[':
-                programWriter.addToOutput(currentBranch, new Command("ldc", "91"));
+                programWriter.addToOutput(currentBranch, new Command(Opcode.LDC, 91));
                 break;
             case ']':
-                programWriter.addToOutput(currentBranch, new Command("ldc", "93"));
+                programWriter.addToOutput(currentBranch, new Command(Opcode.LDC, 93));
                 break;
             case ',':
-                programWriter.addToOutput(currentBranch, new Command("ldc", "44"));
+                programWriter.addToOutput(currentBranch, new Command(Opcode.LDC, 44));
                 break;
             case ' ':
-                programWriter.addToOutput(currentBranch, new Command("ldc", "32"));
+                programWriter.addToOutput(currentBranch, new Command(Opcode.LDC, 32));
                 break;
             case '\'':
-                programWriter.addToOutput(currentBranch, new Command("ldc", "39"));
+                programWriter.addToOutput(currentBranch, new Command(Opcode.LDC, 39));
                 break;
         }
-        programWriter.addToOutput(currentBranch, new Command("trap", "1"));
+        programWriter.addToOutput(currentBranch, new Command(Opcode.TRAP, 1));
     }
 
     @Override
@@ -632,12 +709,12 @@ public class CodeGenerator implements Visitor {
             this.visit(s.arg);
         if(!currentBranch.equals("main")){
             if(!(s.arg instanceof CallExpression))
-                programWriter.addToOutput(currentBranch, new Command("str", "RR"));
-            programWriter.addToOutput(currentBranch, new Command("unlink"));
-            programWriter.addToOutput(currentBranch, new Command("ret"));
+                programWriter.addToOutput(currentBranch, new Command(Opcode.STR, Register.RR));
+            programWriter.addToOutput(currentBranch, new Command(Opcode.UNLINK));
+            programWriter.addToOutput(currentBranch, new Command(Opcode.RET));
         }
         else{
-            programWriter.addToOutput(currentBranch, new Command("halt"));
+            programWriter.addToOutput(currentBranch, new Command(Opcode.HALT));
         }
     }
 
@@ -648,30 +725,19 @@ public class CodeGenerator implements Visitor {
 
     @Override
     public void visit(FunctionDeclaration d) {
-        // Reset the number of branches in this function
-
-        this.thenBranches = 0;
-        this.loopBranches = 0;
-        this.endBranches = 0;
-        int argOffset = 0;
-        currentArgumentsPlusOffsettmp = new HashMap<>();
-        for(IdentifierExpression arg: d.args){
-            currentArgumentsPlusOffsettmp.put(arg.name, argOffset);
-            argOffset++;
-        }
-        currentlocalVariablesPlusOffset = new HashMap<>();
+        enterFunction(d);
+        currentlocalVariablesPlusOffset = OffsetTable.local();
         int i = 0;
-        currentBranch = d.funName.name;
 //        if(d.funName.name != "main")
-//            programWriter.addToOutput(currentBranch, new Command("str", "RR"));
+//            programWriter.addToOutput(currentBranch, new Command(Opcode.STR, Register.RR));
 
         if(d.decls.size() != 0)
-            programWriter.addToOutput(currentBranch, new Command("link", Integer.toString((d.decls.size()-1))));
+            programWriter.addToOutput(currentBranch, new Command(Opcode.LINK, d.decls.size()-1));
         else{
-            programWriter.addToOutput(currentBranch, new Command("link", "0"));
-//            programWriter.addToOutput(currentBranch, new Command("ldc", "1"));
-//            programWriter.addToOutput(currentBranch, new Command("add"));
-            //programWriter.addToOutput(currentBranch, new Command("str", "MP"));
+            programWriter.addToOutput(currentBranch, new Command(Opcode.LINK, 0));
+//            programWriter.addToOutput(currentBranch, new Command(Opcode.LDC, 1));
+//            programWriter.addToOutput(currentBranch, new Command(Opcode.ADD));
+            //programWriter.addToOutput(currentBranch, new Command(Opcode.STR, Register.MP));
         }
 
 
@@ -681,8 +747,8 @@ public class CodeGenerator implements Visitor {
             i++;
         }
 
-        functionsLocalsEnvironment.put(d.funName.name, currentlocalVariablesPlusOffset);
-        functionsArgsEnvironment.put(d.funName.name, currentArgumentsPlusOffsettmp);
+        functionsArgsEnvironment = ensureCapacity(functionsArgsEnvironment, d.funName.id);
+        functionsArgsEnvironment[d.funName.id] = currentArgumentsPlusOffsettmp;
 
         for(Statement funStmt : d.stats){
             this.visit(funStmt);
@@ -690,9 +756,9 @@ public class CodeGenerator implements Visitor {
 
         if(!d.funName.name.equals("main")) {
             //Fixed recursion
-            programWriter.addToOutput(currentBranch, new Command("unlink"));
-            //programWriter.addToOutput(currentBranch, new Command("ajs", "-1"));
-            programWriter.addToOutput(currentBranch, new Command("ret"));
+            programWriter.addToOutput(currentBranch, new Command(Opcode.UNLINK));
+            //programWriter.addToOutput(currentBranch, new Command(Opcode.AJS, -1));
+            programWriter.addToOutput(currentBranch, new Command(Opcode.RET));
 
             //currentlocalVariablesPlusOffset.ge currentlocalVariablesPlusOffset.size()
         }
@@ -705,9 +771,9 @@ public class CodeGenerator implements Visitor {
     public void visit(VariableDeclaration d) {
 
         if(isFirstGlobalVariable){
-            programWriter.addToOutput(currentBranch, new Command("link", Integer.toString(numberOfGlobals-1)));
-            programWriter.addToOutput(currentBranch, new Command("ldr", "MP"));
-            programWriter.addToOutput(currentBranch, new Command("str", "R5"));
+            programWriter.addToOutput(currentBranch, new Command(Opcode.LINK, numberOfGlobals-1));
+            programWriter.addToOutput(currentBranch, new Command(Opcode.LDR, Register.MP));
+            programWriter.addToOutput(currentBranch, new Command(Opcode.STR, Register.R5));
             isFirstGlobalVariable = false;
         }
 
@@ -718,15 +784,50 @@ public class CodeGenerator implements Visitor {
         if(d.isGlobal){
 
 
-            programWriter.addToOutput(currentBranch, new Command("stl", Integer.toString(globalVariableDeclarationOffset)));
-            GlobalVariablesPlusOffset.put(d.left.name, globalVariableDeclarationOffset);
+            programWriter.addToOutput(currentBranch, new Command(Opcode.STL, globalVariableDeclarationOffset));
+            GlobalVariablesPlusOffset.put(d.left.id, globalVariableDeclarationOffset);
             globalVariableDeclarationOffset++;
 
         }
         else{
-            programWriter.addToOutput(currentBranch, new Command("stl", Integer.toString(localVariableDeclarationOffset)));
-            currentlocalVariablesPlusOffset.put(d.left.name, localVariableDeclarationOffset);
+            programWriter.addToOutput(currentBranch, new Command(Opcode.STL, localVariableDeclarationOffset));
+            currentlocalVariablesPlusOffset.put(d.left.id, localVariableDeclarationOffset);
         }
     }
 
-}
\ No newline at end of file
+    private void enterFunction(FunctionDeclaration d) {
+        // Reset the number of labels in this function
+        this.labels = 0;
+        int argOffset = 0;
+        currentArgumentsPlusOffsettmp = OffsetTable.local();
+        for(IdentifierExpression arg: d.args){
+            currentArgumentsPlusOffsettmp.put(arg.id, argOffset);
+            argOffset++;
+        }
+        currentBranch = d.funName.name;
+        currentFunction = d.funName.name;
+    }
+
+    /**
+     * Creates a new label in the current function, like 3_main_then. Labels start with a number so they can not be
+     * the name of a function, and the number is different for every label in the function. The labels of a function
+     * do not depend on the rest of the program, so its code can be reused by the CompilationCache.
+     * @param kind what the label is for
+     * @return the label
+     */
+    private String label(String kind) {
+        return labels++ + "_" + currentFunction + "_" + kind;
+    }
+
+    private OffsetTable functionArguments(int id) {
+        return id < functionsArgsEnvironment.length ? functionsArgsEnvironment[id] : null;
+    }
+
+    private Type functionType(int id) {
+        return id < functionTypes.length ? functionTypes[id] : null;
+    }
+
+    private static <T> T[] ensureCapacity(T[] array, int id) {
+        return id < array.length ? array : Arrays.copyOf(array, Math.max(id + 1, array.length * 2));
+    }
+}
@@ -1,36 +1,59 @@
 package codeGeneration.ssm;
 
-import java.util.ArrayList;
-import java.util.List;
-
+/**
+ * A single SSM instruction. The operand is an int for numbers, the number of the register for registers, and
+ * unused for labels, which are kept by name until the ProgramWriter gives them a number.
+ */
 public class Command {
 
-    public final String command;
-    public final List<String> args;
+    public final Opcode opcode;
+    public final int operand;
+    public final String label;
+
+    private Command(Opcode opcode, int operand, String label, Opcode.Operand kind) {
+        if (opcode.operand != kind) {
+            throw new IllegalArgumentException(String.format("%s takes an operand of kind %s, not %s",
+                    opcode.mnemonic, opcode.operand, kind));
+        }
+        this.opcode = opcode;
+        this.operand = operand;
+        this.label = label;
+    }
 
-    public Command(String command, List<String> args){
-        this.command = command;
-        this.args = args;
+    public Command(Opcode opcode, int operand) {
+        this(opcode, operand, null, Opcode.Operand.INT);
     }
 
-    public Command(String command, String arg){
-        this(command, new ArrayList<String>() {{
-            add(arg);
-        }});
+    public Command(Opcode opcode, Register register) {
+        this(opcode, register.ordinal(), null, Opcode.Operand.REGISTER);
     }
 
-    public Command(String command){
-        this(command, new ArrayList<>());
+    public Command(Opcode opcode, String label) {
+        this(opcode, 0, label, Opcode.Operand.LABEL);
+    }
+
+    public Command(Opcode opcode) {
+        this(opcode, 0, null, Opcode.Operand.NONE);
     }
 
     @Override
     public String toString() {
-        StringBuilder sb = new StringBuilder();
-        String format = "%-" + ProgramWriter.LENGTH_COMMAND + "s";
-        sb.append(String.format(format, command));
-        for(String arg : args){
-            sb.append(" ");
-            sb.append(arg);
+        StringBuilder sb = new StringBuilder(opcode.mnemonic);
+        for (int i = opcode.mnemonic.length(); i < ProgramWriter.LENGTH_COMMAND; i++) {
+            sb.append(' ');
+        }
+        switch (opcode.operand) {
+            case INT:
+                sb.append(' ').append(operand);
+                break;
+            case REGISTER:
+                sb.append(' ').append(Register.of(operand));
+                break;
+            case LABEL:
+                sb.append(' ').append(label);
+                break;
+            default:
+                break;
         }
         return sb.toString();
     }
@@ -0,0 +1,365 @@
+package codeGeneration.ssm;
+
+import java.io.BufferedReader;
+import java.io.EOFException;
+import java.io.Flushable;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.List;
+
+/**
+ * Runs SSM code in the current JVM, instead of starting ssm.jar for every run.
+ * <p>
+ * The machine works like ssm.jar started with "--cli". The program is assembled into a memory of 5000 words, with
+ * the instruction codes of ssm.jar, a halt after the last instruction, and jumps as offsets from the next instruction.
+ * The stack starts 16 words above the code and the heap at address 2000, so registers and addresses have the same
+ * values as in ssm.jar, and the machine executes what is in memory, even when the heap runs into a large program.
+ * An access outside of the memory or an unknown instruction prints the message of ssm.jar and execution goes on the
+ * way it does in ssm.jar. The output is that of ssm.jar, including "machine halted".
+ * <p>
+ * Only the instructions in {@link Opcode} are known, which are the ones the code generator emits.
+ */
+public class Machine {
+
+    public static final int MEMORY_SIZE = 5000;
+    public static final int HEAP_START = 2000;
+
+    // Number of words between the last word of the code and the bottom of the stack
+    private static final int STACK_OFFSET = 16;
+
+    private final int[] memory = new int[MEMORY_SIZE];
+    // Number of words used by the code, including the halt at the end
+    private final int codeSize;
+
+    // Registers by their number, only up to date while the machine is not running
+    private final int[] registers = new int[Register.values().length];
+
+    private long steps = 0;
+
+    /**
+     * @param lines the lines of an SSM program, as written by the ProgramWriter
+     * @throws IllegalArgumentException if the program holds an unknown instruction or label, or does not fit in memory
+     */
+    public Machine(List<String> lines) {
+        this(ObjectFile.assemble(lines));
+    }
+
+    /**
+     * @param program an assembled SSM program
+     * @throws IllegalArgumentException if the program does not fit in memory
+     */
+    public Machine(ObjectFile program) {
+        codeSize = program.size() + 1;
+        if (codeSize > MEMORY_SIZE) {
+            throw new IllegalArgumentException("The program does not fit in the memory of the SSM");
+        }
+        System.arraycopy(program.code, 0, memory, 0, program.size());
+        int address = program.size();
+        memory[address] = Opcode.HALT.code;
+
+        registers[Register.SP.ordinal()] = address + STACK_OFFSET;
+        registers[Register.MP.ordinal()] = address + STACK_OFFSET;
+        registers[Register.HP.ordinal()] = HEAP_START;
+    }
+
+    /**
+     * @param filepath file holding an SSM program in the text or the binary format
+     * @return a machine that runs the program
+     * @throws IOException if the file could not be read
+     */
+    public static Machine load(String filepath) throws IOException {
+        if (ObjectFile.isObjectFile(filepath)) {
+            return new Machine(ObjectFile.read(filepath));
+        }
+        return new Machine(Files.readAllLines(Paths.get(filepath), StandardCharsets.UTF_8));
+    }
+
+    /**
+     * @return the number of instructions executed so far
+     */
+    public long getSteps() {
+        return steps;
+    }
+
+    /**
+     * Runs the program until it halts.
+     * @param input lines that are read by trap 10 and 11
+     * @param output where the program prints to
+     * @throws IOException if the input could not be read, ends before a read, or the output could not be written
+     * @throws ArithmeticException on a division by zero, which stops ssm.jar as well
+     */
+    public void run(BufferedReader input, Appendable output) throws IOException {
+        run(input, output, Long.MAX_VALUE);
+    }
+
+    /**
+     * Runs the program until it halts or has executed the given number of instructions in total.
+     * @param input lines that are read by trap 10 and 11
+     * @param output where the program prints to
+     * @param maxSteps number of instructions after which the machine stops
+     * @return whether the machine halted
+     * @throws IOException if the input could not be read, ends before a read, or the output could not be written
+     * @throws ArithmeticException on a division by zero, which stops ssm.jar as well
+     */
+    public boolean run(BufferedReader input, Appendable output, long maxSteps) throws IOException {
+        int pc = registers[Register.PC.ordinal()];
+        int sp = registers[Register.SP.ordinal()];
+        int mp = registers[Register.MP.ordinal()];
+        int hp = registers[Register.HP.ordinal()];
+        long step = steps;
+        Opcode opcode = Opcode.HALT;
+        int operand = 0;
+        try {
+            while (step < maxSteps) {
+                step++;
+                int code = get(output, pc++);
+                Opcode next = Opcode.fromCode(code);
+                int a;
+                int b;
+                if (next == null) {
+                    // ssm.jar reports an unknown code and executes it as a halt, but in the category of the previous
+                    // instruction: after an operator (codes below 100) the operator with the code of halt is run,
+                    // which keeps the left operand
+                    output.append("illegal instruction code ").append(hex(code)).append('\n');
+                    if (opcode == Opcode.NEG || opcode == Opcode.NOT) {
+                        push(output, sp, pop(output, sp));
+                        continue;
+                    } else if (opcode.code < 100) {
+                        pop(output, sp--);
+                        push(output, sp, pop(output, sp));
+                        continue;
+                    }
+                    opcode = Opcode.HALT;
+                } else {
+                    opcode = next;
+                    operand = opcode.operand == Opcode.Operand.NONE ? 0 : get(output, pc++);
+                }
+                switch (opcode) {
+                    case LDC:
+                        push(output, ++sp, operand);
+                        break;
+                    case LDL:
+                        a = get(output, mp + operand);
+                        push(output, ++sp, a);
+                        break;
+                    case LDA:
+                    case LDH:
+                        a = pop(output, sp);
+                        push(output, sp, get(output, a + operand));
+                        break;
+                    case LDR:
+                        switch (operand) {
+                            case 0: a = pc; break;
+                            case 1: a = sp; break;
+                            case 2: a = mp; break;
+                            case 3: a = hp; break;
+                            default: a = registers[operand]; break;
+                        }
+                        push(output, ++sp, a);
+                        break;
+                    case LDAA:
+                        push(output, sp, pop(output, sp) + operand);
+                        break;
+                    case STL:
+                        set(output, mp + operand, pop(output, sp--));
+                        break;
+                    case STA:
+                        a = pop(output, sp--);
+                        set(output, a + operand, pop(output, sp--));
+                        break;
+                    case STH:
+                        set(output, hp, pop(output, sp));
+                        push(output, sp, hp++);
+                        break;
+                    case STMH:
+                        sp -= operand;
+                        for (int i = 1; i <= operand; i++) {
+                            set(output, hp++, get(output, sp + i));
+                        }
+                        push(output, ++sp, hp - 1);
+                        break;
+                    case STR:
+                        a = pop(output, sp--);
+                        switch (operand) {
+                            case 0: pc = a; break;
+                            case 1: sp = a; break;
+                            case 2: mp = a; break;
+                            case 3: hp = a; break;
+                            default: registers[operand] = a; break;
+                        }
+                        break;
+                    case AJS:
+                        sp += operand;
+                        break;
+                    case SWP:
+                        a = pop(output, sp);
+                        b = pop(output, sp - 1);
+                        push(output, sp - 1, a);
+                        push(output, sp, b);
+                        break;
+                    case BRA:
+                        pc += operand;
+                        break;
+                    case BRF:
+                        if (pop(output, sp--) == 0) {
+                            pc += operand;
+                        }
+                        break;
+                    case BRT:
+                        if (pop(output, sp--) != 0) {
+                            pc += operand;
+                        }
+                        break;
+                    case BSR:
+                        push(output, ++sp, pc);
+                        pc += operand;
+                        break;
+                    case RET:
+                        pc = pop(output, sp--);
+                        break;
+                    case LINK:
+                        push(output, ++sp, mp);
+                        mp = sp;
+                        sp += operand;
+                        break;
+                    case UNLINK:
+                        sp = mp;
+                        mp = pop(output, sp--);
+                        break;
+                    case HALT:
+                        output.append("machine halted\n");
+                        return true;
+                    case NOP:
+                        break;
+                    case TRAP:
+                        sp = trap(input, output, operand, sp, pc - 2);
+                        break;
+                    case NEG:
+                        push(output, sp, -pop(output, sp));
+                        break;
+                    case NOT:
+                        push(output, sp, ~pop(output, sp));
+                        break;
+                    default:
+                        b = pop(output, sp--);
+                        a = pop(output, sp);
+                        push(output, sp, binary(opcode, a, b));
+                        break;
+                }
+            }
+            return false;
+        } finally {
+            steps = step;
+            registers[Register.PC.ordinal()] = pc;
+            registers[Register.SP.ordinal()] = sp;
+            registers[Register.MP.ordinal()] = mp;
+            registers[Register.HP.ordinal()] = hp;
+        }
+    }
+
+    /**
+     * @return the stack pointer after the trap
+     */
+    private int trap(BufferedReader input, Appendable output, int call, int sp, int address) throws IOException {
+        switch (call) {
+            case 0:
+                output.append(Integer.toString(pop(output, sp))).append('\n');
+                return sp - 1;
+            case 1:
+                output.append(new String(Character.toChars(pop(output, sp))));
+                return sp - 1;
+            case 10:
+                push(output, sp + 1, Integer.parseInt(readLine(input, output, "Please enter an integer: ")));
+                return sp + 1;
+            case 11:
+                push(output, sp + 1, readLine(input, output, "Please enter a character: ").charAt(0));
+                return sp + 1;
+            default:
+                output.append("trap at ").append(hex(address)).append(" not (yet) implemented\n");
+                return sp;
+        }
+    }
+
+    private static String readLine(BufferedReader input, Appendable output, String prompt) throws IOException {
+        output.append(prompt);
+        if (output instanceof Flushable) {
+            ((Flushable) output).flush();
+        }
+        String line = input.readLine();
+        if (line == null) {
+            throw new EOFException("The program reads past the end of the input");
+        }
+        return line;
+    }
+
+    // ssm.jar checks the address of a push or pop twice, for the value and for its annotation, so it reports twice
+
+    private void push(Appendable output, int address, int value) throws IOException {
+        if (address >= 0 && address < MEMORY_SIZE) {
+            memory[address] = value;
+        } else {
+            outsideMemory(output, address);
+            outsideMemory(output, address);
+        }
+    }
+
+    private int pop(Appendable output, int address) throws IOException {
+        if (address >= 0 && address < MEMORY_SIZE) {
+            return memory[address];
+        }
+        outsideMemory(output, address);
+        outsideMemory(output, address);
+        return 0;
+    }
+
+    private int get(Appendable output, int address) throws IOException {
+        if (address >= 0 && address < MEMORY_SIZE) {
+            return memory[address];
+        }
+        outsideMemory(output, address);
+        return 0;
+    }
+
+    private void set(Appendable output, int address, int value) throws IOException {
+        if (address >= 0 && address < MEMORY_SIZE) {
+            memory[address] = value;
+        } else {
+            outsideMemory(output, address);
+        }
+    }
+
+    private void outsideMemory(Appendable output, int address) throws IOException {
+        output.append("attempt to access location ").append(hex(address)).append(" outside memory [0(")
+                .append(shortHex(codeSize)).append(")..").append(shortHex(MEMORY_SIZE - 1)).append("]\n");
+    }
+
+    private static String hex(int value) {
+        String digits = Integer.toHexString(value);
+        return "00000000".substring(digits.length()) + digits;
+    }
+
+    private static String shortHex(int value) {
+        return (value < 10 ? "" : "0x") + Integer.toHexString(value);
+    }
+
+    private static int binary(Opcode opcode, int a, int b) {
+        switch (opcode) {
+            case ADD: return a + b;
+            case SUB: return a - b;
+            case MUL: return a * b;
+            case DIV: return a / b;
+            case MOD: return a % b;
+            case AND: return a & b;
+            case OR: return a | b;
+            case EQ: return a == b ? -1 : 0;
+            case NE: return a != b ? -1 : 0;
+            case LT: return a < b ? -1 : 0;
+            case GT: return a > b ? -1 : 0;
+            case LE: return a <= b ? -1 : 0;
+            case GE: return a >= b ? -1 : 0;
+            default: throw new IllegalStateException("Unknown instruction " + opcode.mnemonic);
+        }
+    }
+}
@@ -0,0 +1,417 @@
+package codeGeneration.ssm;
+
+import codeGeneration.CompileException;
+
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * An assembled SSM program: the code as it is laid out in the memory of the SSM, with the instruction codes of
+ * ssm.jar and jumps as offsets from the next instruction, and the labels with their addresses.
+ * <p>
+ * Next to the text format, a program can be stored in a compact binary format, which is written by the ProgramWriter
+ * for files ending in {@link #EXTENSION} and loaded by the {@link Machine} without parsing any text:
+ * <pre>
+ *     "SSMO", version          5 bytes
+ *     number of labels         then for every label its name and address, in the order of their addresses
+ *     number of words of code  then for every instruction the byte with its code and its operand
+ * </pre>
+ * Numbers are unsigned varints of 7 bits per byte, and operands that can be negative are zigzag encoded first. A
+ * register is a single byte and a name is its length followed by its UTF-8 bytes. The labels are only needed to
+ * disassemble the program back to text.
+ */
+public class ObjectFile {
+
+    public static final String EXTENSION = ".sso";
+
+    private static final byte[] MAGIC = {'S', 'S', 'M', 'O'};
+    private static final int VERSION = 1;
+
+    // Instruction codes and operands, one word each
+    final int[] code;
+    // Names of the labels and their addresses, in the order of their addresses
+    private final List<String> labels;
+    private final int[] addresses;
+
+    private ObjectFile(int[] code, List<String> labels, int[] addresses) {
+        this.code = code;
+        this.labels = labels;
+        this.addresses = addresses;
+    }
+
+    /**
+     * @return the number of words of the code
+     */
+    public int size() {
+        return code.length;
+    }
+
+    static int size(Opcode opcode) {
+        return opcode.operand == Opcode.Operand.NONE ? 1 : 2;
+    }
+
+    /**
+     * Assembles SSM code in the text format.
+     * @param lines the lines of an SSM program, as written by the ProgramWriter
+     * @throws IllegalArgumentException if the program holds an unknown instruction or label
+     */
+    public static ObjectFile assemble(List<String> lines) {
+        // Find the address of every label, then assemble the instructions
+        Map<String, Integer> labels = new HashMap<>();
+        List<String> names = new ArrayList<>();
+        List<Integer> addresses = new ArrayList<>();
+        List<Opcode> opcodes = new ArrayList<>();
+        List<String> operands = new ArrayList<>();
+        int address = 0;
+        for (String line : lines) {
+            int comment = line.indexOf(';');
+            String[] words = (comment < 0 ? line : line.substring(0, comment)).trim().split("\\s+");
+            int word = 0;
+            while (word < words.length && words[word].endsWith(":")) {
+                String name = words[word].substring(0, words[word].length() - 1);
+                labels.put(name, address);
+                names.add(name);
+                addresses.add(address);
+                word++;
+            }
+            if (word == words.length || words[word].isEmpty()) {
+                continue;
+            }
+            Opcode opcode = Opcode.fromMnemonic(words[word]);
+            if (opcode == null) {
+                throw new IllegalArgumentException("Unknown instruction: " + line.trim());
+            }
+            opcodes.add(opcode);
+            operands.add(word + 1 < words.length ? words[word + 1] : null);
+            address += size(opcode);
+        }
+
+        int[] code = new int[address];
+        address = 0;
+        for (int i = 0; i < opcodes.size(); i++) {
+            Opcode opcode = opcodes.get(i);
+            code[address] = opcode.code;
+            if (opcode.operand != Opcode.Operand.NONE) {
+                code[address + 1] = operand(opcode, operands.get(i), address, labels);
+            }
+            address += size(opcode);
+        }
+        return new ObjectFile(code, names, addresses.stream().mapToInt(Integer::intValue).toArray());
+    }
+
+    private static int operand(Opcode opcode, String operand, int address, Map<String, Integer> labels) {
+        if (operand == null) {
+            throw new IllegalArgumentException("Missing operand of " + opcode.mnemonic);
+        }
+        switch (opcode.operand) {
+            case REGISTER:
+                return Register.valueOf(operand).ordinal();
+            case LABEL:
+                Integer target = labels.get(operand);
+                if (target == null) {
+                    throw new IllegalArgumentException("Unknown label: " + operand);
+                }
+                return target - (address + 2);
+            default:
+                return Integer.parseInt(operand);
+        }
+    }
+
+    /**
+     * Assembles the branches of the ProgramWriter in the order they are written, the same way as their text.
+     * @param labelNames names of the labels by their number
+     */
+    static ObjectFile of(List<ProgramWriter.Branch> layout, List<String> labelNames) {
+        int[] labelAddresses = new int[labelNames.size()];
+        Arrays.fill(labelAddresses, -1);
+        List<String> names = new ArrayList<>();
+        List<Integer> addresses = new ArrayList<>();
+        int address = 0;
+        for (int i = 0; i < layout.size(); i++) {
+            ProgramWriter.Branch branch = layout.get(i);
+            if (!branch.name.equals("root")) {
+                labelAddresses[branch.label] = address;
+                names.add(branch.name);
+                addresses.add(address);
+                if (branch.size == 0 && i == layout.size() - 1) {
+                    // Like in the text, a label at the end needs an instruction after it
+                    address++;
+                }
+            }
+            for (int j = 0; j < branch.size; j++) {
+                address += size(Opcode.of(branch.code[2 * j]));
+            }
+        }
+
+        int[] code = new int[address];
+        Arrays.fill(code, Opcode.NOP.code);
+        address = 0;
+        for (ProgramWriter.Branch branch : layout) {
+            for (int j = 0; j < branch.size; j++) {
+                Opcode opcode = Opcode.of(branch.code[2 * j]);
+                int operand = branch.code[2 * j + 1];
+                code[address] = opcode.code;
+                if (opcode.operand == Opcode.Operand.LABEL) {
+                    int target = labelAddresses[operand];
+                    if (target < 0) {
+                        throw new CompileException(String.format("Jump to the label %s, which has no code",
+                                labelNames.get(operand)), null);
+                    }
+                    code[address + 1] = target - (address + 2);
+                } else if (opcode.operand != Opcode.Operand.NONE) {
+                    code[address + 1] = operand;
+                }
+                address += size(opcode);
+            }
+        }
+        return new ObjectFile(code, names, addresses.stream().mapToInt(Integer::intValue).toArray());
+    }
+
+    /**
+     * Writes the program in the binary format.
+     * @throws IOException if the file could not be written
+     */
+    public void write(String filepath) throws IOException {
+        Output out = new Output(16 + 3 * code.length);
+        out.bytes(MAGIC);
+        out.put(VERSION);
+        out.varint(labels.size());
+        for (int i = 0; i < labels.size(); i++) {
+            byte[] name = labels.get(i).getBytes(StandardCharsets.UTF_8);
+            out.varint(name.length);
+            out.bytes(name);
+            out.varint(addresses[i]);
+        }
+        out.varint(code.length);
+        int address = 0;
+        while (address < code.length) {
+            Opcode opcode = Opcode.fromCode(code[address]);
+            out.put(opcode.code);
+            switch (opcode.operand) {
+                case INT:
+                case LABEL:
+                    out.signed(code[address + 1]);
+                    break;
+                case REGISTER:
+                    out.put(code[address + 1]);
+                    break;
+                default:
+                    break;
+            }
+            address += size(opcode);
+        }
+
+        try (FileChannel channel = FileChannel.open(Paths.get(filepath), StandardOpenOption.WRITE,
+                StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            ByteBuffer buffer = ByteBuffer.wrap(out.bytes, 0, out.length);
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+        }
+    }
+
+    /**
+     * @return whether the file starts like a program in the binary format
+     * @throws IOException if the file could not be read
+     */
+    public static boolean isObjectFile(String filepath) throws IOException {
+        try (FileChannel channel = FileChannel.open(Paths.get(filepath), StandardOpenOption.READ)) {
+            ByteBuffer magic = ByteBuffer.allocate(MAGIC.length);
+            while (magic.hasRemaining() && channel.read(magic) >= 0) {
+                // Read until the magic is complete or the file ends
+            }
+            return !magic.hasRemaining() && Arrays.equals(magic.array(), MAGIC);
+        }
+    }
+
+    /**
+     * Reads a program in the binary format.
+     * @throws IOException if the file could not be read
+     * @throws IllegalArgumentException if the file does not hold a program in the binary format
+     */
+    public static ObjectFile read(String filepath) throws IOException {
+        ByteBuffer in;
+        try (FileChannel channel = FileChannel.open(Paths.get(filepath), StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size > Integer.MAX_VALUE) {
+                throw new IllegalArgumentException("The object file is too large: " + filepath);
+            }
+            in = ByteBuffer.allocate((int) size);
+            while (in.hasRemaining() && channel.read(in) >= 0) {
+                // Read the whole file
+            }
+            in.flip();
+        }
+
+        try {
+            byte[] magic = new byte[MAGIC.length];
+            in.get(magic);
+            if (!Arrays.equals(magic, MAGIC)) {
+                throw new IllegalArgumentException("Not an SSM object file: " + filepath);
+            }
+            int version = in.get();
+            if (version != VERSION) {
+                throw new IllegalArgumentException(String.format("Unsupported version %d of the object file: %s",
+                        version, filepath));
+            }
+
+            int labelCount = varint(in);
+            List<String> labels = new ArrayList<>(labelCount);
+            int[] addresses = new int[labelCount];
+            for (int i = 0; i < labelCount; i++) {
+                byte[] name = new byte[varint(in)];
+                in.get(name);
+                labels.add(new String(name, StandardCharsets.UTF_8));
+                addresses[i] = varint(in);
+            }
+
+            int[] code = new int[varint(in)];
+            int address = 0;
+            while (address < code.length) {
+                int instruction = in.get() & 0xff;
+                Opcode opcode = Opcode.fromCode(instruction);
+                if (opcode == null) {
+                    throw new IllegalArgumentException(String.format("Unknown instruction code %d at address %d",
+                            instruction, address));
+                }
+                code[address] = instruction;
+                switch (opcode.operand) {
+                    case INT:
+                    case LABEL:
+                        int value = varint(in);
+                        code[address + 1] = (value >>> 1) ^ -(value & 1);
+                        break;
+                    case REGISTER:
+                        code[address + 1] = in.get();
+                        break;
+                    default:
+                        break;
+                }
+                address += size(opcode);
+            }
+            return new ObjectFile(code, labels, addresses);
+        } catch (BufferUnderflowException | ArrayIndexOutOfBoundsException | NegativeArraySizeException e) {
+            throw new IllegalArgumentException("The object file is truncated or damaged: " + filepath);
+        }
+    }
+
+    private static int varint(ByteBuffer in) {
+        int value = 0;
+        for (int shift = 0; shift < 35; shift += 7) {
+            int b = in.get();
+            value |= (b & 0x7f) << shift;
+            if (b >= 0) {
+                return value;
+            }
+        }
+        throw new IllegalArgumentException("Malformed number in the object file");
+    }
+
+    /**
+     * @return the program in the text format, as the ProgramWriter writes it, except that a jump to an address with
+     * more than one label names the first of them
+     */
+    public List<String> disassemble() {
+        // Jumps refer to the first label at their target
+        Map<Integer, String> names = new HashMap<>();
+        for (int i = labels.size() - 1; i >= 0; i--) {
+            names.put(addresses[i], labels.get(i));
+        }
+
+        List<String> lines = new ArrayList<>();
+        StringBuilder line = new StringBuilder();
+        int label = 0;
+        int address = 0;
+        while (address < code.length) {
+            line.setLength(0);
+            while (label < labels.size() && addresses[label] <= address) {
+                if (label + 1 < labels.size() && addresses[label + 1] <= address) {
+                    lines.add(labels.get(label) + ":");
+                } else {
+                    line.append(labels.get(label)).append(':');
+                }
+                label++;
+            }
+            pad(line, ProgramWriter.LENGTH_BRANCH);
+            line.append(' ');
+
+            Opcode opcode = Opcode.fromCode(code[address]);
+            line.append(opcode.mnemonic);
+            switch (opcode.operand) {
+                case INT:
+                    pad(line, line.length() + ProgramWriter.LENGTH_COMMAND - opcode.mnemonic.length());
+                    line.append(' ').append(code[address + 1]);
+                    break;
+                case REGISTER:
+                    pad(line, line.length() + ProgramWriter.LENGTH_COMMAND - opcode.mnemonic.length());
+                    line.append(' ').append(Register.of(code[address + 1]).name());
+                    break;
+                case LABEL:
+                    int target = address + 2 + code[address + 1];
+                    String name = names.get(target);
+                    pad(line, line.length() + ProgramWriter.LENGTH_COMMAND - opcode.mnemonic.length());
+                    line.append(' ').append(name != null ? name : "address_" + target);
+                    break;
+                default:
+                    pad(line, line.length() + ProgramWriter.LENGTH_COMMAND - opcode.mnemonic.length());
+                    break;
+            }
+            lines.add(line.toString());
+            address += size(opcode);
+        }
+        return lines;
+    }
+
+    private static void pad(StringBuilder line, int length) {
+        while (line.length() < length) {
+            line.append(' ');
+        }
+    }
+
+    /**
+     * A growable byte array, so the whole file is written with a single buffer.
+     */
+    private static final class Output {
+        byte[] bytes;
+        int length = 0;
+
+        Output(int capacity) {
+            bytes = new byte[capacity];
+        }
+
+        void put(int b) {
+            if (length == bytes.length) {
+                bytes = Arrays.copyOf(bytes, bytes.length * 2);
+            }
+            bytes[length++] = (byte) b;
+        }
+
+        void bytes(byte[] b) {
+            for (byte value : b) {
+                put(value);
+            }
+        }
+
+        void varint(int value) {
+            while ((value & ~0x7f) != 0) {
+                put((value & 0x7f) | 0x80);
+                value >>>= 7;
+            }
+            put(value);
+        }
+
+        void signed(int value) {
+            varint((value << 1) ^ (value >> 31));
+        }
+    }
+}
@@ -0,0 +1,92 @@
+package codeGeneration.ssm;
+
+import java.util.Arrays;
+
+/**
+ * Offsets of the variables in one scope, keyed by the SymbolTable id of their name.
+ * The scope of a function is small, so its ids are searched linearly. The global scope can be large and is indexed
+ * directly by id.
+ */
+class OffsetTable {
+    private static final int ABSENT = -1;
+
+    private final boolean dense;
+    private int[] ids;
+    private int[] offsets;
+    private int size = 0;
+
+    private OffsetTable(boolean dense, int capacity) {
+        this.dense = dense;
+        this.ids = new int[dense ? 0 : capacity];
+        this.offsets = new int[capacity];
+        if (dense) {
+            Arrays.fill(offsets, ABSENT);
+        }
+    }
+
+    static OffsetTable local() {
+        return new OffsetTable(false, 8);
+    }
+
+    static OffsetTable global(int symbols) {
+        return new OffsetTable(true, Math.max(symbols, 16));
+    }
+
+    void put(int id, int offset) {
+        if (dense) {
+            if (id >= offsets.length) {
+                int capacity = offsets.length;
+                offsets = Arrays.copyOf(offsets, Math.max(id + 1, capacity * 2));
+                Arrays.fill(offsets, capacity, offsets.length, ABSENT);
+            }
+            if (offsets[id] == ABSENT) {
+                size++;
+            }
+            offsets[id] = offset;
+            return;
+        }
+        int index = indexOf(id);
+        if (index != ABSENT) {
+            offsets[index] = offset;
+            return;
+        }
+        if (size == ids.length) {
+            ids = Arrays.copyOf(ids, size * 2);
+            offsets = Arrays.copyOf(offsets, size * 2);
+        }
+        ids[size] = id;
+        offsets[size] = offset;
+        size++;
+    }
+
+    boolean contains(int id) {
+        if (dense) {
+            return id < offsets.length && offsets[id] != ABSENT;
+        }
+        return indexOf(id) != ABSENT;
+    }
+
+    /**
+     * @param id SymbolTable id of the variable
+     * @return offset of the variable, which must be in this table
+     */
+    int get(int id) {
+        return dense ? offsets[id] : offsets[indexOf(id)];
+    }
+
+    /**
+     * @return number of variables in the table
+     */
+    int size() {
+        return size;
+    }
+
+    private int indexOf(int id) {
+        for (int i = 0; i < size; i++) {
+            if (ids[i] == id) {
+                return i;
+            }
+        }
+        return ABSENT;
+    }
+}
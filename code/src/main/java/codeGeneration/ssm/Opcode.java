@@ -0,0 +1,102 @@
+package codeGeneration.ssm;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * The SSM instructions the code generator emits. Every instruction has at most one operand, of the kind given here,
+ * and the number ssm.jar encodes it with in memory.
+ */
+public enum Opcode {
+    // Loading and storing
+    LDC("ldc", Operand.INT, 132),
+    LDL("ldl", Operand.INT, 136),
+    LDA("lda", Operand.INT, 124),
+    LDH("ldh", Operand.INT, 208),
+    LDR("ldr", Operand.REGISTER, 144),
+    LDAA("ldaa", Operand.INT, 128),
+    STL("stl", Operand.INT, 176),
+    STA("sta", Operand.INT, 172),
+    STH("sth", Operand.NONE, 214),
+    STMH("stmh", Operand.INT, 216),
+    STR("str", Operand.REGISTER, 180),
+    AJS("ajs", Operand.INT, 100),
+    SWP("swp", Operand.NONE, 188),
+    // Control flow
+    BRA("bra", Operand.LABEL, 104),
+    BRF("brf", Operand.LABEL, 108),
+    BRT("brt", Operand.LABEL, 109),
+    BSR("bsr", Operand.LABEL, 112),
+    RET("ret", Operand.NONE, 168),
+    LINK("link", Operand.INT, 160),
+    UNLINK("unlink", Operand.NONE, 204),
+    HALT("halt", Operand.NONE, 116),
+    NOP("nop", Operand.NONE, 164),
+    TRAP("trap", Operand.INT, 200),
+    // Arithmetic and logic
+    ADD("add", Operand.NONE, 1),
+    SUB("sub", Operand.NONE, 12),
+    MUL("mul", Operand.NONE, 8),
+    DIV("div", Operand.NONE, 4),
+    MOD("mod", Operand.NONE, 7),
+    NEG("neg", Operand.NONE, 32),
+    NOT("not", Operand.NONE, 33),
+    AND("and", Operand.NONE, 2),
+    OR("or", Operand.NONE, 9),
+    EQ("eq", Operand.NONE, 14),
+    NE("ne", Operand.NONE, 15),
+    LT("lt", Operand.NONE, 16),
+    GT("gt", Operand.NONE, 17),
+    LE("le", Operand.NONE, 18),
+    GE("ge", Operand.NONE, 19);
+
+    public enum Operand {
+        NONE, INT, REGISTER, LABEL
+    }
+
+    private static final Opcode[] VALUES = values();
+    private static final Map<String, Opcode> BY_MNEMONIC = new HashMap<>();
+    private static final Opcode[] BY_CODE = new Opcode[256];
+
+    static {
+        for (Opcode opcode : VALUES) {
+            BY_MNEMONIC.put(opcode.mnemonic, opcode);
+            BY_CODE[opcode.code] = opcode;
+        }
+    }
+
+    public final String mnemonic;
+    public final Operand operand;
+    // Instruction code in the memory of the SSM
+    public final int code;
+
+    Opcode(String mnemonic, Operand operand, int code) {
+        this.mnemonic = mnemonic;
+        this.operand = operand;
+        this.code = code;
+    }
+
+    /**
+     * @param ordinal ordinal of an opcode
+     * @return the opcode, without copying the array of values
+     */
+    public static Opcode of(int ordinal) {
+        return VALUES[ordinal];
+    }
+
+    /**
+     * @param mnemonic name of the instruction in SSM code
+     * @return the opcode, or null if the code generator does not know the instruction
+     */
+    public static Opcode fromMnemonic(String mnemonic) {
+        return BY_MNEMONIC.get(mnemonic);
+    }
+
+    /**
+     * @param code instruction code in the memory of the SSM
+     * @return the opcode, or null if the code generator does not know the instruction
+     */
+    public static Opcode fromCode(int code) {
+        return code >= 0 && code < BY_CODE.length ? BY_CODE[code] : null;
+    }
+}
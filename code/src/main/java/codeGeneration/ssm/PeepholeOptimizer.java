@@ -0,0 +1,406 @@
+package codeGeneration.ssm;
+
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+
+/**
+ * Rewrites the SSM code of a program into shorter code that does the same, just before it is written.
+ * <p>
+ * Most rules look at the last few instructions of a branch: every instruction is appended to the rewritten code and
+ * the rules are then applied to its end until none matches, so a rewrite can enable the next one. A label only ever
+ * starts a branch, so no jump can land inside such a window. The rules for jumps and unreachable branches look at the
+ * whole program, in the order the branches are written, because a branch without a jump at its end continues into the
+ * next one. All rules are applied again until the code does not change anymore.
+ * <p>
+ * The optimizer only works on the code of the whole program, so the fragments in the CompilationCache are not
+ * optimized and a program compiles to the same code with or without the cache.
+ */
+public class PeepholeOptimizer {
+
+    /**
+     * The groups of rules the optimizer can apply.
+     */
+    public enum Rule {
+        /** Removes nop and ajs 0, and merges adjacent ajs */
+        NOPS,
+        /** Folds operators on constants, and turns adding a constant into ldaa */
+        CONSTANTS,
+        /** Merges comparisons into the branch or not that follows them, and removes branches on constants */
+        CONDITIONS,
+        /** Removes loads that are stored right back, and values that are pushed and then dropped */
+        LOADS_STORES,
+        /** Threads jumps to jumps, and removes jumps to the branch that follows anyway */
+        JUMPS,
+        /** Removes code after bra, ret and halt, and branches that can not be reached */
+        DEAD_CODE,
+        /** Simplifies the program with the AstOptimizer before code is generated, not a rule of this optimizer */
+        AST;
+
+        /**
+         * Parses a list of rules like "jumps,constants", with "all" for every rule.
+         * @param names names of the rules separated by commas, or null for all rules
+         * @return the rules
+         * @throws IllegalArgumentException if a name is not a rule
+         */
+        public static Set<Rule> parse(String names) {
+            if (names == null || names.trim().equalsIgnoreCase("all")) {
+                return EnumSet.allOf(Rule.class);
+            }
+            Set<Rule> rules = EnumSet.noneOf(Rule.class);
+            for (String name : names.split(",")) {
+                rules.add(Rule.valueOf(name.trim().toUpperCase(Locale.ROOT)));
+            }
+            return rules;
+        }
+    }
+
+    private final Set<Rule> rules;
+
+    public PeepholeOptimizer() {
+        this(EnumSet.allOf(Rule.class));
+    }
+
+    public PeepholeOptimizer(Set<Rule> rules) {
+        this.rules = rules.isEmpty() ? EnumSet.noneOf(Rule.class) : EnumSet.copyOf(rules);
+    }
+
+    /**
+     * Optimizes the branches of a program.
+     * @param layout branches in the order they are written, the first one is where the program starts
+     * @param branchMap branches by the number of their label, null for labels without a branch
+     * @return the branches that are left, in the same order
+     */
+    List<ProgramWriter.Branch> optimize(List<ProgramWriter.Branch> layout, ProgramWriter.Branch[] branchMap) {
+        List<ProgramWriter.Branch> branches = new ArrayList<>(layout);
+        boolean changed = true;
+        while (changed) {
+            changed = false;
+            for (ProgramWriter.Branch branch : branches) {
+                changed |= rewrite(branch);
+            }
+            if (rules.contains(Rule.JUMPS)) {
+                changed |= threadJumps(branches, branchMap);
+            }
+            if (rules.contains(Rule.DEAD_CODE)) {
+                changed |= removeUnreachable(branches, branchMap);
+            }
+        }
+        return branches;
+    }
+
+    /**
+     * Applies the rules on the end of the code to every instruction of the branch in turn.
+     * @return whether the code of the branch changed
+     */
+    private boolean rewrite(ProgramWriter.Branch branch) {
+        int[] code = branch.code;
+        int size = 0;
+        for (int i = 0; i < branch.size; i++) {
+            // The rewritten code never grows, so it can be written over the code that was already read
+            code[2 * size] = code[2 * i];
+            code[2 * size + 1] = code[2 * i + 1];
+            size++;
+            int reduced;
+            while (size > 0 && (reduced = reduce(code, size)) != size) {
+                size = reduced;
+            }
+        }
+        boolean changed = size != branch.size;
+        branch.size = size;
+        return changed;
+    }
+
+    /**
+     * Applies the first rule that matches the end of the code.
+     * @param code code of a branch, two ints per instruction
+     * @param size number of instructions
+     * @return the number of instructions after the rewrite, or size if no rule matched
+     */
+    private int reduce(int[] code, int size) {
+        Opcode last = opcode(code, size - 1);
+        int lastOperand = operand(code, size - 1);
+        Opcode previous = size >= 2 ? opcode(code, size - 2) : null;
+        int previousOperand = size >= 2 ? operand(code, size - 2) : 0;
+        Opcode third = size >= 3 ? opcode(code, size - 3) : null;
+
+        if (rules.contains(Rule.DEAD_CODE) && previous != null && endsBlock(previous)) {
+            // No label can follow inside a branch, so nothing jumps here
+            return size - 1;
+        }
+
+        if (rules.contains(Rule.NOPS)) {
+            if (last == Opcode.NOP || (last == Opcode.AJS && lastOperand == 0)) {
+                return size - 1;
+            }
+            if (last == Opcode.AJS && previous == Opcode.AJS) {
+                set(code, size - 2, Opcode.AJS, previousOperand + lastOperand);
+                return size - 1;
+            }
+        }
+
+        if (rules.contains(Rule.LOADS_STORES)) {
+            if (last == Opcode.AJS && lastOperand < 0 && previous != null && pushesOnly(previous, previousOperand)) {
+                // The pushed value is dropped right away
+                if (lastOperand == -1) {
+                    return size - 2;
+                }
+                set(code, size - 2, Opcode.AJS, lastOperand + 1);
+                return size - 1;
+            }
+            if ((last == Opcode.STL && previous == Opcode.LDL
+                    || last == Opcode.STR && previous == Opcode.LDR && lastOperand != Register.PC.ordinal())
+                    && lastOperand == previousOperand) {
+                return size - 2;
+            }
+            if (size >= 4 && last == Opcode.STA && previous == Opcode.LDR && third == Opcode.LDA
+                    && opcode(code, size - 4) == Opcode.LDR && operand(code, size - 4) == previousOperand
+                    && operand(code, size - 3) == lastOperand && previousOperand != Register.PC.ordinal()) {
+                // A global that is stored right back, as in ldr R5; lda 1; ldr R5; sta 1
+                return size - 4;
+            }
+        }
+
+        if (rules.contains(Rule.CONSTANTS)) {
+            if (third == Opcode.LDC && previous == Opcode.LDC && isBinary(last)) {
+                Integer folded = fold(last, operand(code, size - 3), previousOperand);
+                if (folded != null) {
+                    set(code, size - 3, Opcode.LDC, folded);
+                    return size - 2;
+                }
+            }
+            if (previous == Opcode.LDC && (last == Opcode.NEG || last == Opcode.NOT)) {
+                set(code, size - 2, Opcode.LDC, last == Opcode.NEG ? -previousOperand : ~previousOperand);
+                return size - 1;
+            }
+            if (previous == Opcode.LDC && previousOperand == 1 && (last == Opcode.MUL || last == Opcode.DIV)) {
+                return size - 2;
+            }
+            if (previous == Opcode.LDC && (last == Opcode.ADD
+                    || last == Opcode.SUB && previousOperand != Integer.MIN_VALUE)) {
+                // Adding a constant, like the ldc 1; sub after every stmh 2
+                set(code, size - 2, Opcode.LDAA, last == Opcode.ADD ? previousOperand : -previousOperand);
+                return size - 1;
+            }
+            if (last == Opcode.LDAA && lastOperand == 0) {
+                return size - 1;
+            }
+            if (previous == Opcode.LDAA && (last == Opcode.LDAA || last == Opcode.LDA || last == Opcode.LDH
+                    || last == Opcode.STA)) {
+                // These add their operand to the address on top of the stack already
+                set(code, size - 2, last, previousOperand + lastOperand);
+                return size - 1;
+            }
+        }
+
+        if (rules.contains(Rule.CONDITIONS)) {
+            if ((last == Opcode.BRT || last == Opcode.BRF) && (previous == Opcode.EQ || previous == Opcode.NE)
+                    && third == Opcode.LDC && operand(code, size - 3) == 0) {
+                // Comparing with 0 before a branch, like isEmpty in a condition
+                boolean jumpIfZero = (previous == Opcode.EQ) == (last == Opcode.BRT);
+                set(code, size - 3, jumpIfZero ? Opcode.BRF : Opcode.BRT, lastOperand);
+                return size - 2;
+            }
+            if ((last == Opcode.BRT || last == Opcode.BRF) && previous == Opcode.LDC) {
+                if ((previousOperand != 0) == (last == Opcode.BRT)) {
+                    set(code, size - 2, Opcode.BRA, lastOperand);
+                    return size - 1;
+                }
+                return size - 2;
+            }
+            if (last == Opcode.NOT && previous != null && negation(previous) != null) {
+                // Comparisons push -1 or 0, so not gives the result of the opposite comparison
+                set(code, size - 2, negation(previous), 0);
+                return size - 1;
+            }
+            if (last == Opcode.NOT && previous == Opcode.NOT) {
+                return size - 2;
+            }
+        }
+
+        return size;
+    }
+
+    /**
+     * Makes jumps to a branch that starts with bra, or that is empty, go to where that branch goes, and removes jumps
+     * at the end of a branch to the branch that follows it.
+     * @return whether any code changed
+     */
+    private boolean threadJumps(List<ProgramWriter.Branch> branches, ProgramWriter.Branch[] branchMap) {
+        for (int i = 0; i < branches.size(); i++) {
+            branches.get(i).position = i;
+        }
+        boolean changed = false;
+        for (int i = 0; i < branches.size(); i++) {
+            ProgramWriter.Branch branch = branches.get(i);
+            for (int j = 0; j < branch.size; j++) {
+                Opcode opcode = opcode(branch.code, j);
+                if (opcode != Opcode.BRA && opcode != Opcode.BRT && opcode != Opcode.BRF) {
+                    continue;
+                }
+                int target = operand(branch.code, j);
+                int threaded = destination(target, branches, branchMap);
+                if (threaded != target) {
+                    branch.code[2 * j + 1] = threaded;
+                    changed = true;
+                }
+            }
+            if (branch.size > 0 && opcode(branch.code, branch.size - 1) == Opcode.BRA) {
+                ProgramWriter.Branch target = branch(operand(branch.code, branch.size - 1), branchMap);
+                if (target != null && target.position > i && nonEmpty(branches, i + 1) == nonEmpty(branches, target.position)) {
+                    // Only empty branches are in between, so the code continues at the target anyway
+                    branch.size--;
+                    changed = true;
+                }
+            }
+        }
+        return changed;
+    }
+
+    /**
+     * @return the label a jump to the given label ends up at, following empty branches and branches that start with
+     * bra. Gives up on loops of such branches.
+     */
+    private int destination(int label, List<ProgramWriter.Branch> branches, ProgramWriter.Branch[] branchMap) {
+        for (int hops = 0; hops < branches.size(); hops++) {
+            ProgramWriter.Branch branch = branch(label, branchMap);
+            if (branch == null) {
+                return label;
+            }
+            int next = nonEmpty(branches, branch.position);
+            if (next == branches.size()) {
+                // Nothing follows the empty branch
+                return label;
+            }
+            ProgramWriter.Branch target = branches.get(next);
+            if (opcode(target.code, 0) != Opcode.BRA) {
+                return target.label;
+            }
+            label = operand(target.code, 0);
+        }
+        return label;
+    }
+
+    /**
+     * Removes the branches that no jump goes to and that the branch before them does not continue into.
+     * @return whether any branch was removed
+     */
+    private boolean removeUnreachable(List<ProgramWriter.Branch> branches, ProgramWriter.Branch[] branchMap) {
+        boolean[] referenced = new boolean[branchMap.length];
+        for (ProgramWriter.Branch branch : branches) {
+            for (int j = 0; j < branch.size; j++) {
+                int label = operand(branch.code, j);
+                if (opcode(branch.code, j).operand == Opcode.Operand.LABEL && label < referenced.length) {
+                    referenced[label] = true;
+                }
+            }
+        }
+        boolean changed = false;
+        // Whether the code before the current branch continues into it, the first branch is where the program starts
+        boolean reached = true;
+        List<ProgramWriter.Branch> kept = new ArrayList<>(branches.size());
+        for (ProgramWriter.Branch branch : branches) {
+            reached |= referenced[branch.label];
+            if (!reached) {
+                branchMap[branch.label] = null;
+                changed = true;
+                continue;
+            }
+            kept.add(branch);
+            if (branch.size > 0) {
+                reached = !endsBlock(opcode(branch.code, branch.size - 1));
+            }
+        }
+        branches.retainAll(kept);
+        return changed;
+    }
+
+    /**
+     * @return the position of the first branch from the given position on that is not empty, or the number of
+     * branches if there is none
+     */
+    private static int nonEmpty(List<ProgramWriter.Branch> branches, int from) {
+        while (from < branches.size() && branches.get(from).size == 0) {
+            from++;
+        }
+        return from;
+    }
+
+    private static ProgramWriter.Branch branch(int label, ProgramWriter.Branch[] branchMap) {
+        return label < branchMap.length ? branchMap[label] : null;
+    }
+
+    private static boolean endsBlock(Opcode opcode) {
+        return opcode == Opcode.BRA || opcode == Opcode.RET || opcode == Opcode.HALT;
+    }
+
+    /**
+     * @return whether the instruction only pushes a value, so dropping that value undoes it
+     */
+    private static boolean pushesOnly(Opcode opcode, int operand) {
+        return opcode == Opcode.LDC || opcode == Opcode.LDL || opcode == Opcode.LDR && operand != Register.PC.ordinal();
+    }
+
+    private static boolean isBinary(Opcode opcode) {
+        switch (opcode) {
+            case ADD: case SUB: case MUL: case DIV: case MOD:
+            case AND: case OR:
+            case EQ: case NE: case LT: case GT: case LE: case GE:
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    /**
+     * @return the result of the operator on the constants, or null if it is only known when the program runs
+     */
+    private static Integer fold(Opcode opcode, int left, int right) {
+        switch (opcode) {
+            case ADD: return left + right;
+            case SUB: return left - right;
+            case MUL: return left * right;
+            case DIV: return right == 0 ? null : left / right;
+            case MOD: return right == 0 ? null : left % right;
+            case AND: return left & right;
+            case OR: return left | right;
+            case EQ: return left == right ? -1 : 0;
+            case NE: return left != right ? -1 : 0;
+            case LT: return left < right ? -1 : 0;
+            case GT: return left > right ? -1 : 0;
+            case LE: return left <= right ? -1 : 0;
+            case GE: return left >= right ? -1 : 0;
+            default: return null;
+        }
+    }
+
+    /**
+     * @return the comparison that gives the opposite result, or null if the opcode is not a comparison
+     */
+    private static Opcode negation(Opcode opcode) {
+        switch (opcode) {
+            case EQ: return Opcode.NE;
+            case NE: return Opcode.EQ;
+            case LT: return Opcode.GE;
+            case GE: return Opcode.LT;
+            case GT: return Opcode.LE;
+            case LE: return Opcode.GT;
+            default: return null;
+        }
+    }
+
+    private static Opcode opcode(int[] code, int instruction) {
+        return Opcode.of(code[2 * instruction]);
+    }
+
+    private static int operand(int[] code, int instruction) {
+        return code[2 * instruction + 1];
+    }
+
+    private static void set(int[] code, int instruction, Opcode opcode, int operand) {
+        code[2 * instruction] = opcode.ordinal();
+        code[2 * instruction + 1] = operand;
+    }
+}
@@ -3,100 +3,325 @@ package codeGeneration.ssm;
 import codeGeneration.CompileException;
 import parser.expressions.IdentifierExpression;
 
-import java.io.FileNotFoundException;
-import java.io.PrintWriter;
+import java.io.*;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
+/**
+ * Collects the SSM code of every branch and writes the branches to a file.
+ * <p>
+ * The code of a branch is kept as a packed int array with two ints per instruction: the ordinal of its Opcode and its
+ * operand. Registers are stored by number and labels by the number the writer gives them, so the code holds no
+ * strings. The text of the program is only made when it is written to the file.
+ */
 public class ProgramWriter {
 
     // Number of characters that should be written in each column of the output
     public final static int LENGTH_BRANCH = 35;
     public final static int LENGTH_COMMAND = 10;
 
+    // Size of the buffer between the program text and the file
+    private static final int OUTPUT_BUFFER = 1 << 16;
+
+    private static final String LINE_SEPARATOR = System.lineSeparator();
+
     private final String filepath;
 
-    private final List<String> branchNames;
+    // Names of the labels by their number, and the other way around. Every branch name is a label.
+    private final List<String> labelNames = new ArrayList<>();
+    private final Map<String, Integer> labelNumbers = new HashMap<>();
+
+    // Branches in the order they are created
+    private final List<Branch> branches;
 
-    private final Map<String, List<Command>> branchMap;
+    // Branches by the number of their label, null for labels that are only jumped to so far
+    private Branch[] branchMap = new Branch[16];
+
+    // Branch that was written to last, most commands go to the same branch as the one before
+    private Branch lastBranch = null;
 
     public static boolean testProgram;
 
+    // Optimizer the code is run through before it is written, or null
+    private PeepholeOptimizer optimizer = null;
+
+    /**
+     * Code of a branch, two ints per instruction.
+     */
+    static final class Branch {
+        final String name;
+        // Number of the label of the branch
+        final int label;
+        int[] code = new int[32];
+        // Number of instructions
+        int size = 0;
+        // Position of the branch in the file, only kept up to date by the PeepholeOptimizer
+        int position = 0;
+
+        Branch(String name, int label) {
+            this.name = name;
+            this.label = label;
+        }
+
+        void add(int opcode, int operand) {
+            if (2 * size == code.length) {
+                code = Arrays.copyOf(code, code.length * 2);
+            }
+            code[2 * size] = opcode;
+            code[2 * size + 1] = operand;
+            size++;
+        }
+    }
+
     public ProgramWriter(String filepath){
         this.filepath = filepath;
-        this.branchMap = new HashMap<>();
-        this.branchNames = new ArrayList<>();
+        this.branches = new ArrayList<>();
         testProgram = false;
     }
 
-    public void addToOutput(String branchName, Command command){
-        List<Command> branchCommands = branchMap.get(branchName);
-        if(branchCommands == null){ //This branch did not exist yet
-            branchCommands = new ArrayList<>();
-            branchNames.add(branchName);
+    private int label(String name){
+        Integer number = labelNumbers.get(name);
+        if(number == null){
+            number = labelNames.size();
+            labelNames.add(name);
+            labelNumbers.put(name, number);
+        }
+        return number;
+    }
+
+    private Branch branch(String branchName){
+        if(lastBranch != null && lastBranch.name.equals(branchName)){
+            return lastBranch;
+        }
+        int label = label(branchName);
+        if(label >= branchMap.length){
+            branchMap = Arrays.copyOf(branchMap, Math.max(label + 1, branchMap.length * 2));
+        }
+        Branch branch = branchMap[label];
+        if(branch == null){ //This branch did not exist yet
+            branch = new Branch(branchName, label);
+            branchMap[label] = branch;
+            branches.add(branch);
         }
-        branchCommands.add(command);
-        branchMap.put(branchName, branchCommands);
+        lastBranch = branch;
+        return branch;
+    }
+
+    /**
+     * @param optimizer optimizer the code is run through before it is written, or null to write it as generated
+     */
+    public void setOptimizer(PeepholeOptimizer optimizer){
+        this.optimizer = optimizer;
+    }
+
+    private Branch existingBranch(String branchName){
+        Integer label = labelNumbers.get(branchName);
+        return label == null || label >= branchMap.length ? null : branchMap[label];
+    }
+
+    public void addToOutput(String branchName, Command command){
+        int operand = command.opcode.operand == Opcode.Operand.LABEL ? label(command.label) : command.operand;
+        branch(branchName).add(command.opcode.ordinal(), operand);
     }
 
     public void removeLastCommand(String branchName){
-        List<Command> branchCommands = branchMap.get(branchName);
-        if(branchCommands == null){ //This branch did not exist yet
+        Branch branch = existingBranch(branchName);
+        if(branch == null || branch.size == 0){ //This branch did not exist yet
             throw new CompileException("This branch did not exist yet", null);
         }
-        branchCommands.remove(branchCommands.size()-1);
-        branchMap.put(branchName, branchCommands);
+        branch.size--;
+    }
+
+    /**
+     * @return the number of branches that were written to so far
+     */
+    public int branchCount(){
+        return branches.size();
     }
 
-    private String writeCommand(String branchName, Command command){
-        if(!branchName.equals("")){
-            branchName = branchName + ":";
+    /**
+     * Lists the code of the branches created since the given number of branches, so it can be written again by
+     * {@link #addFragment(List)}. A branch starts with a line holding its name followed by ':', every instruction
+     * follows on a line of its own as its mnemonic and operand separated by a space.
+     * @param from number of branches before the first branch in the fragment
+     * @return lines of the fragment
+     */
+    public List<String> fragment(int from){
+        List<String> lines = new ArrayList<>();
+        StringBuilder line = new StringBuilder();
+        for(Branch branch : branches.subList(from, branches.size())){
+            lines.add(branch.name + ":");
+            for(int i = 0; i < branch.size; i++){
+                line.setLength(0);
+                appendInstruction(line, branch.code[2 * i], branch.code[2 * i + 1], false);
+                lines.add(line.toString());
+            }
         }
-        String format = "%-" + LENGTH_BRANCH + "s %s";
-        return String.format(format, branchName, command);
+        return lines;
     }
 
     /**
-     * Gathers all commands with the same name and write them to the file.
-     * They are printed in the order that they are created.
+     * Writes the branches of a fragment made by {@link #fragment(int)}.
+     * @param lines lines of the fragment
+     * @return name of the last branch in the fragment
+     */
+    public String addFragment(List<String> lines){
+        Branch branch = null;
+        for(String line : lines){
+            if(line.endsWith(":")){
+                branch = branch(line.substring(0, line.length() - 1));
+                continue;
+            }
+            int space = line.indexOf(' ');
+            Opcode opcode = Opcode.fromMnemonic(space < 0 ? line : line.substring(0, space));
+            String operand = space < 0 ? null : line.substring(space + 1);
+            switch (opcode.operand) {
+                case INT:
+                    branch.add(opcode.ordinal(), Integer.parseInt(operand));
+                    break;
+                case REGISTER:
+                    branch.add(opcode.ordinal(), Register.valueOf(operand).ordinal());
+                    break;
+                case LABEL:
+                    branch.add(opcode.ordinal(), label(operand));
+                    break;
+                default:
+                    branch.add(opcode.ordinal(), 0);
+                    break;
+            }
+        }
+        return branch == null ? null : branch.name;
+    }
+
+    /**
+     * Appends an instruction as text, with its mnemonic padded to LENGTH_COMMAND if the columns are aligned.
+     */
+    private void appendInstruction(StringBuilder out, int opcodeOrdinal, int operand, boolean aligned){
+        Opcode opcode = Opcode.of(opcodeOrdinal);
+        out.append(opcode.mnemonic);
+        if(aligned){
+            pad(out, LENGTH_COMMAND - opcode.mnemonic.length());
+        }
+        switch (opcode.operand) {
+            case INT:
+                out.append(' ').append(operand);
+                break;
+            case REGISTER:
+                out.append(' ').append(Register.of(operand).name());
+                break;
+            case LABEL:
+                out.append(' ').append(labelNames.get(operand));
+                break;
+            default:
+                break;
+        }
+    }
+
+    private static void pad(StringBuilder out, int spaces){
+        for(int i = 0; i < spaces; i++){
+            out.append(' ');
+        }
+    }
+
+    private void writeBranch(PrintWriter out, Branch branch, boolean last, StringBuilder text, char[] chunk){
+        if(branch.size == 0 && !branch.name.equals("root")){
+            // The optimizer emptied the branch, but something still jumps to it. A label needs an instruction after it.
+            text.append(branch.name).append(':');
+            if(last){
+                pad(text, LENGTH_BRANCH - branch.name.length() - 1);
+                text.append(' ');
+                appendInstruction(text, Opcode.NOP.ordinal(), 0, true);
+            }
+            text.append(LINE_SEPARATOR);
+        }
+        for(int i = 0; i < branch.size; i++){
+            // Only the first line of a branch is labelled, and never the one of 'root'
+            if(i == 0 && !branch.name.equals("root")){
+                text.append(branch.name).append(':');
+                pad(text, LENGTH_BRANCH - branch.name.length() - 1);
+            } else {
+                pad(text, LENGTH_BRANCH);
+            }
+            text.append(' ');
+            appendInstruction(text, branch.code[2 * i], branch.code[2 * i + 1], true);
+            text.append(LINE_SEPARATOR);
+
+            if(text.length() >= chunk.length / 2){
+                flush(out, text, chunk);
+            }
+        }
+    }
+
+    /**
+     * Moves the text to the output through a reused char array, so no String is made of it.
+     */
+    private static void flush(PrintWriter out, StringBuilder text, char[] chunk){
+        while(text.length() > 0){
+            int length = Math.min(text.length(), chunk.length);
+            text.getChars(0, length, chunk, 0);
+            out.write(chunk, 0, length);
+            text.delete(0, length);
+        }
+    }
+
+    /**
+     * Writes all branches to the file, in the order that they are created. A file ending in
+     * {@link ObjectFile#EXTENSION} gets the binary format instead of text.
      * @throws FileNotFoundException
      */
     public void writeToFile() throws FileNotFoundException {
-        PrintWriter out = new PrintWriter(filepath);
-
         // Check if there is a main function
-        if(!branchNames.contains("main") && !testProgram){
+        if(existingBranch("main") == null && !testProgram){
             throw new CompileException("An SPL program requires a main function.", new IdentifierExpression("The whole program"));
         }
 
         // You should always go to the main function after globals have been declared
-        addToOutput("root", new Command("bra", "main"));
-
-        // 'root' should always go first
-        if(branchNames.indexOf("root") != 0){
-            branchNames.remove("root");
-            branchNames.add(0, "root");
-        }
+        addToOutput("root", new Command(Opcode.BRA, "main"));
 
         // The main function should always end with the 'halt' instruction
-        addToOutput("main", new Command("halt"));
-
-        for(String branchName : branchNames){
-            List<Command> commands = branchMap.remove(branchName);
+        addToOutput("main", new Command(Opcode.HALT));
 
-            // We don't want the label 'root' to be printed
-            branchName = branchName.equals("root")? "" : branchName;
+        // 'root' should always go first
+        Branch root = existingBranch("root");
+        List<Branch> layout = new ArrayList<>(branches.size());
+        layout.add(root);
+        for(Branch branch : branches){
+            if(branch != root){
+                layout.add(branch);
+            }
+        }
+        if(optimizer != null){
+            layout = optimizer.optimize(layout, branchMap);
+        }
 
-            // Write the first command of a branch with the corresponding label
-            out.println(writeCommand(branchName, commands.get(0)));
+        if(filepath.endsWith(ObjectFile.EXTENSION)){
+            writeObjectFile(ObjectFile.of(layout, labelNames));
+            return;
+        }
 
-            for(int i = 1; i < commands.size(); i ++){
-                out.println(writeCommand("", commands.get(i)));
-            }
+        PrintWriter out = new PrintWriter(new BufferedWriter(
+                new OutputStreamWriter(new FileOutputStream(filepath)), OUTPUT_BUFFER));
+        StringBuilder text = new StringBuilder(8192);
+        char[] chunk = new char[8192];
+        for(int i = 0; i < layout.size(); i++){
+            writeBranch(out, layout.get(i), i == layout.size() - 1, text, chunk);
         }
+        flush(out, text, chunk);
 
         out.close();
     }
+
+    private void writeObjectFile(ObjectFile program) throws FileNotFoundException {
+        try {
+            program.write(filepath);
+        } catch (IOException e) {
+            // Reported like the text format reports a file that cannot be created
+            FileNotFoundException notWritten = new FileNotFoundException(filepath + ": " + e.getMessage());
+            notWritten.initCause(e);
+            throw notWritten;
+        }
+    }
 }
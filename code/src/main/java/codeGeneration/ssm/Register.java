@@ -0,0 +1,18 @@
+package codeGeneration.ssm;
+
+/**
+ * The registers of the SSM, in the order of their numbers R0 to R7.
+ */
+public enum Register {
+    PC, SP, MP, HP, RR, R5, R6, R7;
+
+    private static final Register[] VALUES = values();
+
+    /**
+     * @param number number of the register
+     * @return the register
+     */
+    public static Register of(int number) {
+        return VALUES[number];
+    }
+}
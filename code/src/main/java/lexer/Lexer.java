@@ -1,61 +1,81 @@
 package lexer;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
 
 public class Lexer {
-    private String input;
+    // Keyword tokens indexed by the id of the keyword in the SymbolTable
+    private static final Token[] keywords = setupKeywords();
+
+    private final CharSequence input;
+    private final int length;
     private int currentPosition = 0;
-    private final Map<String, Token> keywordMap;
     private final List<TokenException> exceptions;
 
-    public Lexer(String inp) {
+    // Position bookkeeping, updated while skipping whitespace and comments
+    private int line = 1;
+    private int lineStart = 0;
+    private int tokenStart = 0;
+    private int tokenLine = 1;
+    private int tokenColumn = 1;
+
+    // Payload of the last token, the SymbolTable id for identifiers
+    private int value;
+
+    public Lexer(CharSequence inp) {
         this.input = inp;
-        this.keywordMap = setupKeywordMap();
+        this.length = inp.length();
         this.exceptions = new ArrayList<>();
-        removeComments();
     }
 
-    private Map<String, Token> setupKeywordMap(){
+    private static Token[] setupKeywords(){
         Map<String, Token> keywordMap = new HashMap<>();
 
         // Statement Keywords
-        keywordMap.put("if", new TokenOther(TokenType.TOK_KW_IF));
-        keywordMap.put("else", new TokenOther(TokenType.TOK_KW_ELSE));
-        keywordMap.put("while", new TokenOther(TokenType.TOK_KW_WHILE));
-        keywordMap.put("return", new TokenOther(TokenType.TOK_KW_RETURN));
+        keywordMap.put("if", TokenOther.of(TokenType.TOK_KW_IF));
+        keywordMap.put("else", TokenOther.of(TokenType.TOK_KW_ELSE));
+        keywordMap.put("while", TokenOther.of(TokenType.TOK_KW_WHILE));
+        keywordMap.put("return", TokenOther.of(TokenType.TOK_KW_RETURN));
 
         // Type Keywords
-        keywordMap.put("Int", new TokenOther(TokenType.TOK_KW_INT));
-        keywordMap.put("Bool", new TokenOther(TokenType.TOK_KW_BOOL));
-        keywordMap.put("Char", new TokenOther(TokenType.TOK_KW_CHAR));
-        keywordMap.put("var", new TokenOther(TokenType.TOK_KW_VAR));
-        keywordMap.put("Void", new TokenOther(TokenType.TOK_KW_VOID));
+        keywordMap.put("Int", TokenOther.of(TokenType.TOK_KW_INT));
+        keywordMap.put("Bool", TokenOther.of(TokenType.TOK_KW_BOOL));
+        keywordMap.put("Char", TokenOther.of(TokenType.TOK_KW_CHAR));
+        keywordMap.put("var", TokenOther.of(TokenType.TOK_KW_VAR));
+        keywordMap.put("Void", TokenOther.of(TokenType.TOK_KW_VOID));
 
-        keywordMap.put("True", new TokenBool(true));
-        keywordMap.put("False", new TokenBool(false));
+        keywordMap.put("True", TokenBool.TRUE);
+        keywordMap.put("False", TokenBool.FALSE);
 
         // Expression Keywords
-        keywordMap.put("print", new TokenOther(TokenType.TOK_KW_PRINT));
-        keywordMap.put("read", new TokenOther(TokenType.TOK_KW_READ));
-        keywordMap.put("isEmpty", new TokenOther(TokenType.TOK_KW_IS_EMPTY));
+        keywordMap.put("print", TokenOther.of(TokenType.TOK_KW_PRINT));
+        keywordMap.put("read", TokenOther.of(TokenType.TOK_KW_READ));
+        keywordMap.put("isEmpty", TokenOther.of(TokenType.TOK_KW_IS_EMPTY));
 
         // Field Keywords
-        keywordMap.put(".hd", new TokenOther(TokenType.TOK_HD));
-        keywordMap.put(".tl", new TokenOther(TokenType.TOK_TL));
-        keywordMap.put(".fst", new TokenOther(TokenType.TOK_FST));
-        keywordMap.put(".snd", new TokenOther(TokenType.TOK_SND));
-
-        return keywordMap;
+        keywordMap.put(".hd", TokenOther.of(TokenType.TOK_HD));
+        keywordMap.put(".tl", TokenOther.of(TokenType.TOK_TL));
+        keywordMap.put(".fst", TokenOther.of(TokenType.TOK_FST));
+        keywordMap.put(".snd", TokenOther.of(TokenType.TOK_SND));
+
+        Token[] keywords = new Token[0];
+        for (Map.Entry<String, Token> keyword : keywordMap.entrySet()) {
+            int id = SymbolTable.global().intern(keyword.getKey());
+            if (id >= keywords.length) {
+                keywords = Arrays.copyOf(keywords, id + 1);
+            }
+            keywords[id] = keyword.getValue();
+        }
+        return keywords;
     }
 
     public List<Token> tokenize(){
-        List<Token> tokenizedInput = new ArrayList<>();
-        Token tok = new TokenOther(null);
+        // Rough guess of one token per four characters, saves most of the regrowing
+        List<Token> tokenizedInput = new ArrayList<>(length / 4 + 16);
+        Token tok = null;
         do{
             try {
                 tok = nextToken();
@@ -63,264 +83,315 @@ public class Lexer {
             } catch (TokenException tokenException){
                 this.exceptions.add(tokenException);
             }
-        } while(tok.getType() != TokenType.TOK_EOF);
+        } while(tok == null || tok.getType() != TokenType.TOK_EOF);
 
-        if(this.exceptions.size() > 0){
-            for(TokenException e : this.exceptions){
-                e.printStackTrace();
-            }
-        }
+        printErrors();
         return tokenizedInput;
     }
 
     /**
-     * Removes comments from the input using regex
+     * Tokenizes the input into a compact TokenStream, without creating a Token object per token.
+     * @return the tokens of the whole input, ending with EOF
      */
-    private void removeComments(){
-        Matcher m;
-
-        Pattern inlineComment = Pattern.compile("//[^\\n]*\\n");
-        Pattern blockComment = Pattern.compile("/\\*[\\S\\s]*?\\*/");
-
-        //Remove Inline Comments
-        m = inlineComment.matcher(input);
-        this.input = m.replaceAll("");
-
-        //Remove Block Comments
-        m = blockComment.matcher(input);
-        this.input = m.replaceAll("");
+    public TokenStream tokenizeStream(){
+        TokenStream stream = new TokenStream(length / 4 + 16);
+        stream.setSource(input);
+        TokenType type = null;
+        do{
+            try {
+                type = lexToken();
+                stream.add(type, value, tokenStart);
+            } catch (TokenException tokenException){
+                this.exceptions.add(tokenException);
+            }
+        } while(type != TokenType.TOK_EOF);
 
+        printErrors();
+        stream.trimToSize();
+        return stream;
     }
 
-    private void skipWhitespace() {
-        while (currentPosition < input.length()
-                && Character.isWhitespace(input.charAt(currentPosition))) {
-            currentPosition++;
+    private void printErrors(){
+        if(this.exceptions.size() > 0){
+            for(TokenException e : this.exceptions){
+                e.printStackTrace();
+            }
         }
     }
 
-    private boolean match(char c) {
-        return currentPosition < input.length()
-                && input.charAt(currentPosition) == c;
-    }
-
-    public Token nextToken() {
-        skipWhitespace();
-        if (currentPosition >= input.length()) {
-            return new TokenOther(TokenType.TOK_EOF);
-        }
-
-        if (Character.isDigit(input.charAt(currentPosition))) {
-            return lexInteger();
-        }
-
-        if (match('\'')) {
-            currentPosition++;
+    /**
+     * Skips whitespace, inline comments and block comments in a single pass over the input,
+     * keeping track of the line numbers on the way.
+     */
+    private void skipWhitespaceAndComments() {
+        while (currentPosition < length) {
             char c = input.charAt(currentPosition);
-            if(Character.isLetterOrDigit(c)){
+            if (c == '\n') {
                 currentPosition++;
-                if(match('\'')){
+                line++;
+                lineStart = currentPosition;
+            } else if (c == ' ' || c == '\t' || c == '\r' || Character.isWhitespace(c)) {
+                currentPosition++;
+            } else if (c == '/' && currentPosition + 1 < length && input.charAt(currentPosition + 1) == '/') {
+                // Inline comment, runs up to the end of the line
+                currentPosition += 2;
+                while (currentPosition < length && input.charAt(currentPosition) != '\n') {
                     currentPosition++;
-                    return new TokenChar(c);
                 }
-                throw new TokenException(String.format("Unfinished Char expression, you probably forgot an apostrophe in \"'%s\".", c));
+            } else if (c == '/' && currentPosition + 1 < length && input.charAt(currentPosition + 1) == '*') {
+                skipBlockComment();
+            } else {
+                return;
             }
-            // Clean-up
-            currentPosition++;
-            if(match('\'')){
-                currentPosition++;
-            }
-            throw new TokenException(String.format("Expected to find a Character, found input \"'%s\"", c));
-        }
-
-        if (match('+')) {
-            currentPosition++;
-            return new TokenOther(TokenType.TOK_PLUS);
         }
+    }
 
-        if (match('-')) {
-            currentPosition++;
-            if (match('>')) {
-                currentPosition++;
-                return new TokenOther(TokenType.TOK_KW_ARROW);
+    private void skipBlockComment() {
+        int startLine = line;
+        int startColumn = currentPosition - lineStart + 1;
+        currentPosition += 2;
+        while (currentPosition < length) {
+            char c = input.charAt(currentPosition);
+            if (c == '*' && currentPosition + 1 < length && input.charAt(currentPosition + 1) == '/') {
+                currentPosition += 2;
+                return;
             }
-            return new TokenOther(TokenType.TOK_MINUS);
-        }
-
-        if (match('*')) {
             currentPosition++;
-            return new TokenOther(TokenType.TOK_MULT);
+            if (c == '\n') {
+                line++;
+                lineStart = currentPosition;
+            }
         }
+        throw new TokenException(String.format("Unterminated block comment starting at line %d, column %d.",
+                startLine, startColumn));
+    }
 
-        if (match('/')) {
-            currentPosition++;
-            return new TokenOther(TokenType.TOK_DIV);
-        }
+    private boolean match(char c) {
+        return currentPosition < length
+                && input.charAt(currentPosition) == c;
+    }
 
-        if (match('%')) {
-            currentPosition++;
-            return new TokenOther(TokenType.TOK_MOD);
-        }
+    private TokenException error(String message) {
+        return new TokenException(String.format("%s (line %d, column %d)", message, tokenLine, tokenColumn));
+    }
 
-        if (match('=')) {
-            currentPosition++;
-            if (match('=')) {
-                currentPosition++;
-                return new TokenOther(TokenType.TOK_EQ);
-            }
-            return new TokenOther(TokenType.TOK_ASSIGN);
+    public Token nextToken() {
+        TokenType type = lexToken();
+        switch (type) {
+            case TOK_INT:
+                return new TokenInteger(value);
+            case TOK_CHAR:
+                return new TokenChar((char) value);
+            case TOK_BOOL:
+                return value != 0 ? TokenBool.TRUE : TokenBool.FALSE;
+            case TOK_IDENTIFIER:
+                return new TokenIdentifier(SymbolTable.global().name(value));
+            default:
+                return TokenOther.of(type);
         }
+    }
 
-        if (match('>')) {
-            currentPosition++;
-            if (match('=')) {
-                currentPosition++;
-                return new TokenOther(TokenType.TOK_GEQ);
-            }
-            return new TokenOther(TokenType.TOK_GT);
+    /**
+     * Lexes the next token. The payload of integers, characters, booleans and identifiers is left in value.
+     * @return type of the token
+     */
+    private TokenType lexToken() {
+        skipWhitespaceAndComments();
+        tokenStart = currentPosition;
+        tokenLine = line;
+        tokenColumn = currentPosition - lineStart + 1;
+        if (currentPosition >= length) {
+            return TokenType.TOK_EOF;
         }
 
-        if (match('<')) {
-            currentPosition++;
-            if (match('=')) {
-                currentPosition++;
-                return new TokenOther(TokenType.TOK_LEQ);
-            }
-            return new TokenOther(TokenType.TOK_LT);
+        char c = input.charAt(currentPosition);
+        if (c >= '0' && c <= '9') {
+            return lexInteger();
         }
 
-        if (match('!')) {
-            currentPosition++;
-            if (match('=')) {
-                currentPosition++;
-                return new TokenOther(TokenType.TOK_NEQ);
-            }
-            return new TokenOther(TokenType.TOK_NOT);
+        currentPosition++;
+        switch (c) {
+            case '\'':
+                return lexChar();
+            case '+':
+                return TokenType.TOK_PLUS;
+            case '-':
+                if (match('>')) {
+                    currentPosition++;
+                    return TokenType.TOK_KW_ARROW;
+                }
+                return TokenType.TOK_MINUS;
+            case '*':
+                return TokenType.TOK_MULT;
+            case '/':
+                return TokenType.TOK_DIV;
+            case '%':
+                return TokenType.TOK_MOD;
+            case '=':
+                if (match('=')) {
+                    currentPosition++;
+                    return TokenType.TOK_EQ;
+                }
+                return TokenType.TOK_ASSIGN;
+            case '>':
+                if (match('=')) {
+                    currentPosition++;
+                    return TokenType.TOK_GEQ;
+                }
+                return TokenType.TOK_GT;
+            case '<':
+                if (match('=')) {
+                    currentPosition++;
+                    return TokenType.TOK_LEQ;
+                }
+                return TokenType.TOK_LT;
+            case '!':
+                if (match('=')) {
+                    currentPosition++;
+                    return TokenType.TOK_NEQ;
+                }
+                return TokenType.TOK_NOT;
+            case '&':
+                if (match('&')) {
+                    currentPosition++;
+                    return TokenType.TOK_AND;
+                }
+                throw error("Expected to find two '&' characters, only one was found.");
+            case ':':
+                if (match(':')) {
+                    currentPosition++;
+                    return TokenType.TOK_FUNC_TYPE_DEF;
+                }
+                return TokenType.TOK_CONS;
+            case '|':
+                if (match('|')) {
+                    currentPosition++;
+                    return TokenType.TOK_OR;
+                }
+                throw error("Expected to find two '|' characters, only one was found.");
+            case '{':
+                return TokenType.TOK_OPEN_CURLY;
+            case '}':
+                return TokenType.TOK_CLOSE_CURLY;
+            case '[':
+                return TokenType.TOK_OPEN_BRACKETS;
+            case ']':
+                return TokenType.TOK_CLOSE_BRACKETS;
+            case '(':
+                return TokenType.TOK_OPEN_PARENTHESIS;
+            case ')':
+                return TokenType.TOK_CLOSE_PARENTHESIS;
+            case ',':
+                return TokenType.TOK_COMMA;
+            case ';':
+                return TokenType.TOK_EOL;
+            default:
+                break;
         }
 
-        if (match('&')) {
-            currentPosition++;
-            if (match('&')) {
-                currentPosition++;
-                return new TokenOther(TokenType.TOK_AND);
-            }
-            throw new TokenException("Expected to find two '&' characters, only one was found.");
+        if (Character.isAlphabetic(c) || c == '.') {
+            currentPosition--;
+            return lexIdentifier();
         }
+        throw error(String.format("Found unknown character in input: '%s'", c));
+    }
 
-        if (match(':')) {
-            currentPosition++;
-            if (match(':')) {
-                currentPosition++;
-                return new TokenOther(TokenType.TOK_FUNC_TYPE_DEF);
-            }
-            return new TokenOther(TokenType.TOK_CONS);
+    private TokenType lexChar() {
+        if (currentPosition >= length) {
+            throw error("Expected to find a Character, found the end of the input.");
         }
-
-        if (match('|')) {
+        char c = input.charAt(currentPosition);
+        if(Character.isLetterOrDigit(c)){
             currentPosition++;
-            if (match('|')) {
+            if(match('\'')){
                 currentPosition++;
-                return new TokenOther(TokenType.TOK_OR);
+                value = c;
+                return TokenType.TOK_CHAR;
             }
-            throw new TokenException("Expected to find two '|' characters, only one was found.");
+            throw error(String.format("Unfinished Char expression, you probably forgot an apostrophe in \"'%s\".", c));
         }
-
-        if (match('{')) {
-            currentPosition++;
-            return new TokenOther(TokenType.TOK_OPEN_CURLY);
-        }
-
-        if (match('}')) {
+        // Clean-up
+        currentPosition++;
+        if(match('\'')){
             currentPosition++;
-
-            return new TokenOther(TokenType.TOK_CLOSE_CURLY);
         }
+        throw error(String.format("Expected to find a Character, found input \"'%s\"", c));
+    }
 
-        if (match('[')) {
+    private TokenType lexInteger() {
+        int currentValue = 0;
+        char c;
+        while (currentPosition < length
+                && (c = input.charAt(currentPosition)) >= '0' && c <= '9') {
+            currentValue = currentValue * 10 + (c - '0');
             currentPosition++;
-
-            return new TokenOther(TokenType.TOK_OPEN_BRACKETS);
         }
 
-        if (match(']')) {
-            currentPosition++;
-
-            return new TokenOther(TokenType.TOK_CLOSE_BRACKETS);
-        }
+        value = currentValue;
+        return TokenType.TOK_INT;
+    }
 
-        if (match('(')) {
+    private TokenType lexIdentifier() {
+        int start = currentPosition;
+        if(match('.')){
             currentPosition++;
-
-            return new TokenOther(TokenType.TOK_OPEN_PARENTHESIS);
         }
-
-        if (match(')')) {
+        char c;
+        while (currentPosition < length
+                && (isIdentifierChar(c = input.charAt(currentPosition)))) {
             currentPosition++;
-
-            return new TokenOther(TokenType.TOK_CLOSE_PARENTHESIS);
         }
 
-        if (match(',')) {
-            currentPosition++;
+        // Field keywords are looked up only, so misspelled fields do not end up in the SymbolTable
+        int id = input.charAt(start) == '.'
+                ? SymbolTable.global().lookup(input, start, currentPosition)
+                : SymbolTable.global().intern(input, start, currentPosition);
 
-            return new TokenOther(TokenType.TOK_COMMA);
+        if (id >= 0 && id < keywords.length && keywords[id] != null) { // The string is a keyword
+            Token tok = keywords[id];
+            if (tok.getType() == TokenType.TOK_BOOL) {
+                value = tok == TokenBool.TRUE ? 1 : 0;
+            }
+            return tok.getType();
         }
 
-        if (match(';')) {
-            currentPosition++;
-
-            return new TokenOther(TokenType.TOK_EOL);
+        if (input.charAt(start) == '.'){
+            throw error(String.format(
+                    "Invalid field keyword in '%s'.\n\t Did you put a space between field keywords?"
+                    , input.subSequence(start, currentPosition)));
         }
 
-        if (Character.isAlphabetic(input.charAt(currentPosition)) || match('.')) {
-            return lexIdentifier();
-        }
-        currentPosition++;
-        throw new TokenException(String.format("Found unknown character in input: '%s'", input.charAt(currentPosition)));
+        // Identifier is not a keyword, so we treat it as an identifier
+        value = id;
+        return TokenType.TOK_IDENTIFIER;
     }
 
-    private Token lexInteger() {
-        int currentValue = 0;
-        while (currentPosition < input.length()
-                && Character.isDigit(input.charAt(currentPosition))) {
-
-            currentValue *= 10;
-            currentValue += Character.getNumericValue(input
-                    .charAt(currentPosition));
-            currentPosition++;
+    private static boolean isIdentifierChar(char c) {
+        if (c < 128) {
+            return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9') || c == '_';
         }
-
-        return new TokenInteger(currentValue);
+        return Character.isAlphabetic(c) || Character.isDigit(c);
     }
 
-    private Token lexIdentifier() {
-        StringBuilder resultBuilder = new StringBuilder();
-        if(match('.')){
-            resultBuilder.append('.');
-            currentPosition++;
-        }
-        while (currentPosition < input.length()
-                && (Character.isAlphabetic(input.charAt(currentPosition)) || Character
-                .isDigit(input.charAt(currentPosition)) || match('_'))) {
-            resultBuilder.append(input.charAt(currentPosition));
-            currentPosition++;
-        }
-
-        String result = resultBuilder.toString();
-
-        Token tok = keywordMap.get(result);
-        if(tok != null) { // The string is a keyword
-            return tok;
-        }
+    /**
+     * @return offset in the input of the first character of the last token
+     */
+    public int getTokenOffset() {
+        return tokenStart;
+    }
 
-        if (result.contains(".")){
-            throw new TokenException(String.format(
-                    "Invalid field keyword in '%s'.\n\t Did you put a space between field keywords?"
-                    , result));
-        }
+    /**
+     * @return line (starting at 1) of the last token
+     */
+    public int getTokenLine() {
+        return tokenLine;
+    }
 
-        // Identifier is not a keyword, so we treat it as an identifier
-        return new TokenIdentifier(result);
+    /**
+     * @return column (starting at 1) of the last token
+     */
+    public int getTokenColumn() {
+        return tokenColumn;
     }
 
     public List<TokenException> getErrors(){
@@ -0,0 +1,58 @@
+package lexer;
+
+import java.util.Arrays;
+
+/**
+ * Offsets of the start of every line in a source, to turn an offset into a line and column.
+ */
+public class LineIndex {
+    private final CharSequence source;
+    private final int[] lineStarts;
+    private final int lines;
+
+    public LineIndex(CharSequence source) {
+        this.source = source;
+        int[] starts = new int[64];
+        int count = 1;
+        for (int i = 0; i < source.length(); i++) {
+            if (source.charAt(i) == '\n') {
+                if (count == starts.length) {
+                    starts = Arrays.copyOf(starts, count * 2);
+                }
+                starts[count++] = i + 1;
+            }
+        }
+        this.lineStarts = starts;
+        this.lines = count;
+    }
+
+    /**
+     * @param offset offset in the source
+     * @return line of the offset, starting at 1
+     */
+    public int line(int offset) {
+        int index = Arrays.binarySearch(lineStarts, 0, lines, offset);
+        return index >= 0 ? index + 1 : -index - 1;
+    }
+
+    /**
+     * @param offset offset in the source
+     * @return column of the offset, starting at 1
+     */
+    public int column(int offset) {
+        return offset - lineStarts[line(offset) - 1] + 1;
+    }
+
+    /**
+     * @param line line number, starting at 1
+     * @return text of the line, without the line break
+     */
+    public String text(int line) {
+        int start = lineStarts[line - 1];
+        int end = line < lines ? lineStarts[line] - 1 : source.length();
+        if (end > start && source.charAt(end - 1) == '\r') {
+            end--;
+        }
+        return source.subSequence(start, end).toString();
+    }
+}
@@ -0,0 +1,136 @@
+package lexer;
+
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Maps every distinct identifier to a dense integer id, starting at 0.
+ * There is one table for the whole compiler, so an id means the same identifier in every phase and the later phases can
+ * use the ids to index arrays instead of hashing names. The table is shared by all threads: looking up a name that is
+ * already known by String, or the name of an id, does not take the lock.
+ */
+public class SymbolTable {
+    private static final SymbolTable GLOBAL = new SymbolTable();
+
+    // Open addressing table of (id + 1), 0 means the slot is empty
+    private int[] slots = new int[1024];
+    // Written under the lock, a new array is published whenever it grows
+    private volatile String[] names = new String[512];
+    private volatile int size = 0;
+    // Lock-free view of the known names for intern(String)
+    private final ConcurrentHashMap<String, Integer> ids = new ConcurrentHashMap<>();
+
+    private SymbolTable() {
+    }
+
+    public static SymbolTable global() {
+        return GLOBAL;
+    }
+
+    /**
+     * @param name identifier
+     * @return id of the identifier, a new id is handed out the first time an identifier is seen
+     */
+    public int intern(String name) {
+        Integer id = ids.get(name);
+        if (id != null) {
+            return id;
+        }
+        return intern(name, 0, name.length());
+    }
+
+    /**
+     * Interns the identifier source[start, end) without creating a String when the identifier is already known.
+     * @param source text containing the identifier
+     * @param start offset of the first character
+     * @param end offset after the last character
+     * @return id of the identifier
+     */
+    public synchronized int intern(CharSequence source, int start, int end) {
+        int hash = hash(source, start, end);
+        int slot = find(source, start, end, hash);
+        if (slots[slot] != 0) {
+            return slots[slot] - 1;
+        }
+
+        String[] names = this.names;
+        if (size == names.length) {
+            names = Arrays.copyOf(names, size * 2);
+        }
+        String name = source.subSequence(start, end).toString();
+        names[size] = name;
+        this.names = names;
+        ids.put(name, size);
+        slots[slot] = ++size;
+        if (size * 2 > slots.length) {
+            rehash();
+        }
+        return size - 1;
+    }
+
+    /**
+     * @param source text containing the identifier
+     * @param start offset of the first character
+     * @param end offset after the last character
+     * @return id of the identifier source[start, end), or -1 if it has not been interned
+     */
+    public synchronized int lookup(CharSequence source, int start, int end) {
+        return slots[find(source, start, end, hash(source, start, end))] - 1;
+    }
+
+    /**
+     * @param id id handed out by {@link #intern(String)}
+     * @return the identifier belonging to the id
+     */
+    public String name(int id) {
+        if (id < 0 || id >= size) {
+            throw new IndexOutOfBoundsException(String.format("Unknown symbol id %d", id));
+        }
+        return names[id];
+    }
+
+    /**
+     * @return number of interned identifiers, all ids are smaller than this
+     */
+    public int size() {
+        return size;
+    }
+
+    private static int hash(CharSequence source, int start, int end) {
+        int hash = 0;
+        for (int i = start; i < end; i++) {
+            hash = 31 * hash + source.charAt(i);
+        }
+        // Spread the bits, the table size is a power of two
+        return hash ^ (hash >>> 16);
+    }
+
+    private int find(CharSequence source, int start, int end, int hash) {
+        int mask = slots.length - 1;
+        int slot = hash & mask;
+        while (slots[slot] != 0 && !matches(names[slots[slot] - 1], source, start, end)) {
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+    private static boolean matches(String name, CharSequence source, int start, int end) {
+        if (name.length() != end - start) {
+            return false;
+        }
+        for (int i = 0; i < name.length(); i++) {
+            if (name.charAt(i) != source.charAt(start + i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void rehash() {
+        slots = new int[slots.length * 2];
+        for (int id = 0; id < size; id++) {
+            String name = names[id];
+            slots[find(name, 0, name.length(), hash(name, 0, name.length()))] = id + 1;
+        }
+    }
+}
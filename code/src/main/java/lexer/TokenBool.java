@@ -2,6 +2,9 @@ package lexer;
 
 public class TokenBool extends Token<Boolean> {
 
+    public static final TokenBool TRUE = new TokenBool(true);
+    public static final TokenBool FALSE = new TokenBool(false);
+
     public TokenBool(boolean value) {
         super(TokenType.TOK_BOOL, value);
     }
@@ -2,8 +2,25 @@ package lexer;
 
 public class TokenOther extends Token<String> {
 
+    private static final TokenOther[] INSTANCES = new TokenOther[TokenType.values().length];
+
+    static {
+        for (TokenType type : TokenType.values()) {
+            INSTANCES[type.ordinal()] = new TokenOther(type);
+        }
+    }
+
     public TokenOther(TokenType tokenType) {
         super(tokenType);
     }
 
+    /**
+     * Tokens without a value are immutable, so the lexer shares one instance per TokenType.
+     * @param tokenType type of the token
+     * @return the shared token of this type
+     */
+    public static TokenOther of(TokenType tokenType) {
+        return INSTANCES[tokenType.ordinal()];
+    }
+
 }
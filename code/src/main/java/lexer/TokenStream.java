@@ -0,0 +1,153 @@
+package lexer;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Compact list of tokens, stored as parallel primitive arrays instead of one Token object per token.
+ * The payload of a token depends on its type: the value of an integer, the character of a char, 1 or 0 for a bool
+ * and the id in the {@link SymbolTable} for an identifier. Other tokens have no payload.
+ * The stream always ends with an EOF token, reading past the end keeps returning EOF.
+ */
+public class TokenStream {
+    private static final TokenType[] TYPES = TokenType.values();
+
+    private byte[] types;
+    private int[] values;
+    private int[] offsets;
+    private int size;
+
+    // Source the tokens were lexed from, null if unknown
+    private CharSequence source;
+    private LineIndex lineIndex;
+
+    public TokenStream(int capacity) {
+        this.types = new byte[Math.max(capacity, 16)];
+        this.values = new int[types.length];
+        this.offsets = new int[types.length];
+    }
+
+    /**
+     * Converts a list of tokens, the offsets of these tokens in the source are unknown and set to -1.
+     * @param tokens tokens as created by {@link Lexer#tokenize()}
+     * @return TokenStream containing the same tokens
+     */
+    public static TokenStream of(List<Token> tokens) {
+        TokenStream stream = new TokenStream(tokens.size() + 1);
+        for (Token token : tokens) {
+            switch (token.getType()) {
+                case TOK_INT:
+                    stream.add(TokenType.TOK_INT, ((TokenInteger) token).getValue(), -1);
+                    break;
+                case TOK_CHAR:
+                    stream.add(TokenType.TOK_CHAR, ((TokenChar) token).getValue(), -1);
+                    break;
+                case TOK_BOOL:
+                    stream.add(TokenType.TOK_BOOL, ((TokenBool) token).getValue() ? 1 : 0, -1);
+                    break;
+                case TOK_IDENTIFIER:
+                    stream.add(TokenType.TOK_IDENTIFIER, SymbolTable.global().intern(((TokenIdentifier) token).getValue()), -1);
+                    break;
+                default:
+                    stream.add(token.getType(), 0, -1);
+            }
+        }
+        if (stream.size == 0 || stream.getType(stream.size - 1) != TokenType.TOK_EOF) {
+            stream.add(TokenType.TOK_EOF, 0, -1);
+        }
+        return stream;
+    }
+
+    void add(TokenType type, int value, int offset) {
+        if (size == types.length) {
+            int capacity = size + (size >> 1) + 1;
+            types = Arrays.copyOf(types, capacity);
+            values = Arrays.copyOf(values, capacity);
+            offsets = Arrays.copyOf(offsets, capacity);
+        }
+        types[size] = (byte) type.ordinal();
+        values[size] = value;
+        offsets[size] = offset;
+        size++;
+    }
+
+    /**
+     * Shrinks the arrays to the number of tokens, once no more tokens will be added.
+     */
+    void trimToSize() {
+        if (size < types.length) {
+            types = Arrays.copyOf(types, size);
+            values = Arrays.copyOf(values, size);
+            offsets = Arrays.copyOf(offsets, size);
+        }
+    }
+
+    void setSource(CharSequence source) {
+        this.source = source;
+    }
+
+    /**
+     * The line index is only built the first time it is needed, which is when an error message is rendered.
+     * @return index of the lines of the source, or null if the source is unknown
+     */
+    public synchronized LineIndex getLineIndex() {
+        if (lineIndex == null && source != null) {
+            lineIndex = new LineIndex(source);
+        }
+        return lineIndex;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public TokenType getType(int index) {
+        return TYPES[types[Math.min(index, size - 1)]];
+    }
+
+    public int getValue(int index) {
+        return values[Math.min(index, size - 1)];
+    }
+
+    /**
+     * @param index index of the token
+     * @return offset of the first character of the token in the source, or -1 if unknown
+     */
+    public int getOffset(int index) {
+        return offsets[Math.min(index, size - 1)];
+    }
+
+    public String getIdentifier(int index) {
+        return SymbolTable.global().name(getValue(index));
+    }
+
+    /**
+     * Creates the Token object for a single token, tokens without a payload are shared.
+     * @param index index of the token
+     * @return Token at the index
+     */
+    public Token get(int index) {
+        TokenType type = getType(index);
+        switch (type) {
+            case TOK_INT:
+                return new TokenInteger(getValue(index));
+            case TOK_CHAR:
+                return new TokenChar((char) getValue(index));
+            case TOK_BOOL:
+                return getValue(index) != 0 ? TokenBool.TRUE : TokenBool.FALSE;
+            case TOK_IDENTIFIER:
+                return new TokenIdentifier(getIdentifier(index));
+            default:
+                return TokenOther.of(type);
+        }
+    }
+
+    public List<Token> toList() {
+        List<Token> tokens = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            tokens.add(get(i));
+        }
+        return tokens;
+    }
+}
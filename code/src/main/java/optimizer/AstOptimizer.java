@@ -0,0 +1,424 @@
+package optimizer;
+
+import lexer.TokenType;
+import parser.declarations.Declaration;
+import parser.declarations.FunctionDeclaration;
+import parser.declarations.VariableDeclaration;
+import parser.expressions.*;
+import parser.statements.*;
+import parser.types.Types;
+import util.Visitor;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Simplifies a typechecked program before code is generated for it, for both code generators.
+ * <p>
+ * Operators on constants are folded, operations that do not change their operand like x * 1 and !!b are removed,
+ * conditionals and loops with a constant condition are replaced by the statements that would run, and statements after
+ * a return are dropped. An expression is only ever dropped when evaluating it can not print, read or fail, and
+ * && and || are simplified as if they only evaluate their right operand when it is needed.
+ * <p>
+ * Integers are only folded when the SSM and Python give the same result, so overflowing arithmetic and division of
+ * negative numbers are left for the program to compute.
+ * <p>
+ * Expressions are rebuilt with the type the typechecker gave the original. The lists of functions are changed in place,
+ * so a function is the same object before and after, as the CompilationCache finds its functions by identity.
+ */
+public class AstOptimizer implements Visitor {
+
+    // Result of visiting an expression
+    private Expression expression;
+    // Result of visiting a statement, which can be replaced by any number of statements
+    private List<Statement> statements;
+    // Result of visiting a variable declaration
+    private VariableDeclaration declaration;
+
+    /**
+     * Simplifies the declarations of a program.
+     * @param nodes the declarations, global variables in it are replaced
+     */
+    public void optimize(List<Declaration> nodes) {
+        for (int i = 0; i < nodes.size(); i++) {
+            Declaration d = nodes.get(i);
+            if (d instanceof VariableDeclaration) {
+                d.accept(this);
+                nodes.set(i, declaration);
+            } else {
+                d.accept(this);
+            }
+        }
+    }
+
+    /**
+     * @param e a typechecked expression
+     * @return the simplified expression
+     */
+    public Expression optimize(Expression e) {
+        e.accept(this);
+        return expression;
+    }
+
+    private List<Statement> optimizeStatements(List<Statement> ss) {
+        List<Statement> result = new ArrayList<>(ss.size());
+        for (Statement s : ss) {
+            s.accept(this);
+            for (Statement simplified : statements) {
+                result.add(simplified);
+                if (simplified instanceof ReturnStatement) {
+                    // Nothing after a return is run
+                    return result;
+                }
+            }
+        }
+        return result;
+    }
+
+    private static <T> void replace(List<T> list, List<T> contents) {
+        list.clear();
+        list.addAll(contents);
+    }
+
+    private static <T extends Expression> T typed(T e, Expression original) {
+        e.setType(original.getType());
+        return e;
+    }
+
+    private static IntegerExpression integer(int value) {
+        IntegerExpression e = new IntegerExpression(value);
+        e.setType(Types.intType);
+        return e;
+    }
+
+    private static BooleanExpression bool(boolean value) {
+        BooleanExpression e = new BooleanExpression(value);
+        e.setType(Types.boolType);
+        return e;
+    }
+
+    private static boolean isInteger(Expression e, int value) {
+        return e instanceof IntegerExpression && ((IntegerExpression) e).name == value;
+    }
+
+    private static boolean isBoolean(Expression e, boolean value) {
+        return e instanceof BooleanExpression && ((BooleanExpression) e).name == value;
+    }
+
+    /**
+     * @return whether evaluating the expression can not print, read or fail, so leaving it out changes nothing
+     */
+    static boolean isPure(Expression e) {
+        if (e instanceof CallExpression || e instanceof ReadExpression) {
+            return false;
+        } else if (e instanceof OperatorExpression) {
+            OperatorExpression o = (OperatorExpression) e;
+            if ((o.operator == TokenType.TOK_DIV || o.operator == TokenType.TOK_MOD)
+                    && (!(o.right instanceof IntegerExpression) || isInteger(o.right, 0))) {
+                // Dividing by zero fails
+                return false;
+            }
+            return isPure(o.left) && isPure(o.right);
+        } else if (e instanceof PostfixExpression) {
+            PostfixExpression p = (PostfixExpression) e;
+            // Taking the head or tail of an empty list fails
+            return (p.operator == TokenType.TOK_FST || p.operator == TokenType.TOK_SND) && isPure(p.left);
+        } else if (e instanceof PrefixExpression) {
+            return isPure(((PrefixExpression) e).right);
+        } else if (e instanceof TupleExpression) {
+            return isPure(((TupleExpression) e).left) && isPure(((TupleExpression) e).right);
+        } else if (e instanceof isEmptyExpression) {
+            return isPure(((isEmptyExpression) e).arg);
+        }
+        return true;
+    }
+
+    /**
+     * @return the folded operator on two integers, or null if the backends could give different results
+     */
+    private static Expression fold(TokenType operator, int left, int right) {
+        try {
+            switch (operator) {
+                case TOK_PLUS: return integer(Math.addExact(left, right));
+                case TOK_MINUS: return integer(Math.subtractExact(left, right));
+                case TOK_MULT: return integer(Math.multiplyExact(left, right));
+                // The SSM rounds towards zero and Python down, which only agree for positive numbers
+                case TOK_DIV: return left >= 0 && right > 0 ? integer(left / right) : null;
+                case TOK_MOD: return left >= 0 && right > 0 ? integer(left % right) : null;
+                default: return compare(operator, Integer.compare(left, right));
+            }
+        } catch (ArithmeticException e) {
+            return null;
+        }
+    }
+
+    /**
+     * @param comparison negative, zero or positive if the left operand is smaller, equal or larger than the right
+     * @return the result of the comparison operator, or null if the operator is not a comparison
+     */
+    private static Expression compare(TokenType operator, int comparison) {
+        switch (operator) {
+            case TOK_EQ: return bool(comparison == 0);
+            case TOK_NEQ: return bool(comparison != 0);
+            case TOK_LT: return bool(comparison < 0);
+            case TOK_GT: return bool(comparison > 0);
+            case TOK_LEQ: return bool(comparison <= 0);
+            case TOK_GEQ: return bool(comparison >= 0);
+            default: return null;
+        }
+    }
+
+    /**
+     * @return the simplified operator expression, or null if it can not be simplified
+     */
+    private static Expression simplify(TokenType operator, Expression left, Expression right) {
+        if (left instanceof IntegerExpression && right instanceof IntegerExpression) {
+            return fold(operator, ((IntegerExpression) left).name, ((IntegerExpression) right).name);
+        }
+        if (left instanceof CharacterExpression && right instanceof CharacterExpression) {
+            // Adding characters makes a string in Python, so only comparisons are folded
+            return compare(operator, Character.compare(((CharacterExpression) left).name,
+                    ((CharacterExpression) right).name));
+        }
+        if (left instanceof BooleanExpression && right instanceof BooleanExpression) {
+            boolean l = ((BooleanExpression) left).name;
+            boolean r = ((BooleanExpression) right).name;
+            switch (operator) {
+                case TOK_AND: return bool(l && r);
+                case TOK_OR: return bool(l || r);
+                case TOK_EQ: return bool(l == r);
+                case TOK_NEQ: return bool(l != r);
+                default: return null;
+            }
+        }
+        switch (operator) {
+            case TOK_PLUS:
+                return isInteger(left, 0) ? right : isInteger(right, 0) ? left : null;
+            case TOK_MINUS:
+                return isInteger(right, 0) ? left : null;
+            case TOK_MULT:
+                if (isInteger(left, 1) || isInteger(right, 1)) {
+                    return isInteger(left, 1) ? right : left;
+                }
+                if (isInteger(left, 0) && isPure(right) || isInteger(right, 0) && isPure(left)) {
+                    return integer(0);
+                }
+                return null;
+            case TOK_DIV:
+                return isInteger(right, 1) ? left : null;
+            case TOK_AND:
+                if (isBoolean(left, true) || isBoolean(left, false)) {
+                    return isBoolean(left, true) ? right : left;
+                }
+                if (isBoolean(right, true) || isBoolean(right, false) && isPure(left)) {
+                    return isBoolean(right, true) ? left : right;
+                }
+                return null;
+            case TOK_OR:
+                if (isBoolean(left, true) || isBoolean(left, false)) {
+                    return isBoolean(left, false) ? right : left;
+                }
+                if (isBoolean(right, false) || isBoolean(right, true) && isPure(left)) {
+                    return isBoolean(right, false) ? left : right;
+                }
+                return null;
+            default:
+                return null;
+        }
+    }
+
+    @Override
+    public void visit(Expression e) {
+        Expression.visitExpression(this, e);
+    }
+
+    @Override
+    public void visit(BooleanExpression e) {
+        expression = e;
+    }
+
+    @Override
+    public void visit(CallExpression e) {
+        List<Expression> args = new ArrayList<>(e.args.size());
+        for (Expression arg : e.args) {
+            args.add(optimize(arg));
+        }
+        expression = typed(new CallExpression(e.function_name, args), e);
+    }
+
+    @Override
+    public void visit(CharacterExpression e) {
+        expression = e;
+    }
+
+    @Override
+    public void visit(IdentifierExpression e) {
+        expression = e;
+    }
+
+    @Override
+    public void visit(IntegerExpression e) {
+        expression = e;
+    }
+
+    @Override
+    public void visit(isEmptyExpression e) {
+        Expression arg = optimize(e.arg);
+        if (arg instanceof ListExpression) {
+            expression = bool(true);
+        } else if (arg instanceof OperatorExpression && ((OperatorExpression) arg).operator == TokenType.TOK_CONS
+                && isPure(arg)) {
+            expression = bool(false);
+        } else {
+            expression = typed(new isEmptyExpression(arg), e);
+        }
+    }
+
+    @Override
+    public void visit(ListExpression e) {
+        expression = e;
+    }
+
+    @Override
+    public void visit(OperatorExpression e) {
+        Expression left = optimize(e.left);
+        Expression right = optimize(e.right);
+        Expression simplified = e.operator == TokenType.TOK_CONS ? null : simplify(e.operator, left, right);
+        expression = simplified != null ? simplified : typed(new OperatorExpression(left, e.operator, right), e);
+    }
+
+    @Override
+    public void visit(PostfixExpression e) {
+        Expression left = optimize(e.left);
+        if (left instanceof TupleExpression && isPure(left)) {
+            TupleExpression tuple = (TupleExpression) left;
+            if (e.operator == TokenType.TOK_FST || e.operator == TokenType.TOK_SND) {
+                expression = e.operator == TokenType.TOK_FST ? tuple.left : tuple.right;
+                return;
+            }
+        }
+        expression = typed(new PostfixExpression(left, e.operator), e);
+    }
+
+    @Override
+    public void visit(PrefixExpression e) {
+        Expression right = optimize(e.right);
+        if (e.operator == TokenType.TOK_NOT && right instanceof BooleanExpression) {
+            expression = bool(!((BooleanExpression) right).name);
+        } else if (e.operator == TokenType.TOK_MINUS && right instanceof IntegerExpression
+                && ((IntegerExpression) right).name != Integer.MIN_VALUE) {
+            expression = integer(-((IntegerExpression) right).name);
+        } else if (right instanceof PrefixExpression && ((PrefixExpression) right).operator == e.operator) {
+            // !!b and --x
+            expression = ((PrefixExpression) right).right;
+        } else {
+            expression = typed(new PrefixExpression(e.operator, right), e);
+        }
+    }
+
+    @Override
+    public void visit(ReadExpression e) {
+        expression = e;
+    }
+
+    @Override
+    public void visit(TupleExpression e) {
+        expression = typed(new TupleExpression(optimize(e.left), optimize(e.right)), e);
+    }
+
+    @Override
+    public void visit(Statement s) {
+        Statement.visitStatement(this, s);
+    }
+
+    @Override
+    public void visit(AssignStatement s) {
+        // The left side is a place to store to, it is not evaluated
+        Expression right = optimize(s.right);
+        if (s.name instanceof IdentifierExpression && right instanceof IdentifierExpression
+                && ((IdentifierExpression) s.name).id == ((IdentifierExpression) right).id) {
+            // x = x
+            statements = new ArrayList<>();
+        } else {
+            statements = single(new AssignStatement(s.name, right));
+        }
+    }
+
+    @Override
+    public void visit(CallStatement s) {
+        List<Expression> args = new ArrayList<>(s.args.size());
+        for (Expression arg : s.args) {
+            args.add(optimize(arg));
+        }
+        statements = single(new CallStatement(new CallExpression(s.function_name, args)));
+    }
+
+    @Override
+    public void visit(ConditionalStatement s) {
+        Expression condition = optimize(s.condition);
+        List<Statement> then = optimizeStatements(s.then_expression);
+        List<Statement> otherwise = optimizeStatements(s.else_expression);
+        if (condition instanceof BooleanExpression) {
+            statements = ((BooleanExpression) condition).name ? then : otherwise;
+        } else if (then.isEmpty() && otherwise.isEmpty() && isPure(condition)) {
+            statements = new ArrayList<>();
+        } else if (then.isEmpty() && !otherwise.isEmpty()) {
+            // The SSM code generator only makes a branch for the then part if it has code
+            Expression negated = typed(new PrefixExpression(TokenType.TOK_NOT, condition), s.condition);
+            statements = single(new ConditionalStatement(negated, otherwise, then));
+        } else {
+            statements = single(new ConditionalStatement(condition, then, otherwise));
+        }
+    }
+
+    @Override
+    public void visit(LoopStatement s) {
+        Expression condition = optimize(s.condition);
+        if (isBoolean(condition, false)) {
+            statements = new ArrayList<>();
+        } else {
+            statements = single(new LoopStatement(condition, optimizeStatements(s.body)));
+        }
+    }
+
+    @Override
+    public void visit(PrintStatement s) {
+        Expression arg = optimize(s.arg);
+        PrintStatement print = new PrintStatement(arg);
+        print.setType(s.getType());
+        statements = single(print);
+    }
+
+    @Override
+    public void visit(ReturnStatement s) {
+        ReturnStatement ret = new ReturnStatement(s.arg == null ? null : optimize(s.arg));
+        ret.setType(s.getType());
+        statements = single(ret);
+    }
+
+    private static List<Statement> single(Statement s) {
+        List<Statement> result = new ArrayList<>(1);
+        result.add(s);
+        return result;
+    }
+
+    @Override
+    public void visit(Declaration d) {
+        Declaration.visitDeclaration(this, d);
+    }
+
+    @Override
+    public void visit(FunctionDeclaration d) {
+        for (int i = 0; i < d.decls.size(); i++) {
+            d.decls.get(i).accept(this);
+            d.decls.set(i, declaration);
+        }
+        replace(d.stats, optimizeStatements(d.stats));
+    }
+
+    @Override
+    public void visit(VariableDeclaration d) {
+        declaration = new VariableDeclaration(d.varType, d.left, optimize(d.right), d.isGlobal);
+        declaration.setType(d.getType());
+    }
+}
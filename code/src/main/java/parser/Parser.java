@@ -1,11 +1,15 @@
 package parser;
 
+import lexer.LineIndex;
+import lexer.TokenException;
 import lexer.Token;
 import lexer.TokenOther;
+import lexer.TokenStream;
 import lexer.TokenType;
 import parser.declarations.Declaration;
 import parser.declarations.parselets.FunctionDeclarationParselet;
 import parser.declarations.parselets.VariableDeclarationParselet;
+import parser.exceptions.CallException;
 import parser.exceptions.ParseException;
 import parser.exceptions.SemicolonError;
 import parser.expressions.CallExpression;
@@ -18,40 +22,75 @@ import parser.statements.parselets.*;
 import util.PrettyPrinter;
 
 import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
 
 public class Parser {
 
-    private final List<Token> input;
-    private final Iterator<Token> mTokens;
-    private int currentToken = 0;
-    private final List<Token> mRead = new ArrayList<>();
-    private final Map<TokenType, PrefixParseletExpression> mPrefixParseletsExpression = new HashMap<>();
-    private final Map<TokenType, InfixParseletExpression> mInfixParseletsExpression = new HashMap<>();
-
-    private final Map<TokenType, InfixParseletStatement> mInfixParseletsStatement = new HashMap<>();
-    private final Map<TokenType, PrefixParseletStatement> mPrefixParseletsStatement = new HashMap<>();
+    // Size of the ring buffer of Token objects, must be a power of two
+    private static final int WINDOW = 8;
+
+    private final TokenStream tokens;
+    // Index of the next token to be consumed
+    private int currentToken;
+    // Index of the first token this parser may not read, it sees EOF from there on
+    private final int end;
+    // Whether syntax errors are collected instead of thrown, and the errors collected so far
+    private boolean recovering = false;
+    private final List<ParseException> errors = new ArrayList<>();
+    // The Token objects of the last few tokens that were looked at, slot i % WINDOW holds token i
+    private final Token[] window = new Token[WINDOW];
+    private final int[] windowIndex = new int[WINDOW];
+
+    // The parselets are stateless, so all parsers share them. The tables are indexed by the ordinal of the TokenType.
+    private static final int TOKEN_TYPES = TokenType.values().length;
+    private static final PrefixParseletExpression[] mPrefixParseletsExpression = new PrefixParseletExpression[TOKEN_TYPES];
+    private static final InfixParseletExpression[] mInfixParseletsExpression = new InfixParseletExpression[TOKEN_TYPES];
+
+    private static final InfixParseletStatement[] mInfixParseletsStatement = new InfixParseletStatement[TOKEN_TYPES];
+    private static final PrefixParseletStatement[] mPrefixParseletsStatement = new PrefixParseletStatement[TOKEN_TYPES];
+
+    private static final CallParselet callParselet = new CallParselet();
+    private static final VariableDeclarationParselet variableDeclarationParselet = new VariableDeclarationParselet();
+    private static final FunctionDeclarationParselet functionDeclarationParselet = new FunctionDeclarationParselet();
+
+    static {
+        setup_parser();
+    }
 
 
     public Parser(List<Token> tokens) {
-        this.input = tokens;
-        this.mTokens = tokens.iterator();
-        setup_parser();
+        this(TokenStream.of(tokens));
+    }
+
+    public Parser(TokenStream tokens) {
+        this(tokens, 0, tokens.size());
+    }
+
+    /**
+     * Creates a parser that only reads the tokens in [start, end) of the stream.
+     */
+    private Parser(TokenStream tokens, int start, int end) {
+        this.tokens = tokens;
+        this.currentToken = start;
+        this.end = end;
+        Arrays.fill(windowIndex, -1);
     }
 
-    private void registerPrefixExpression(TokenType token, PrefixParseletExpression parselet) {
-        mPrefixParseletsExpression.put(token, parselet);
+    private static void registerPrefixExpression(TokenType token, PrefixParseletExpression parselet) {
+        mPrefixParseletsExpression[token.ordinal()] = parselet;
     }
 
-    private void registerInfixExpression(TokenType type, InfixParseletExpression parselet) {
-        mInfixParseletsExpression.put(type, parselet);
+    private static void registerInfixExpression(TokenType type, InfixParseletExpression parselet) {
+        mInfixParseletsExpression[type.ordinal()] = parselet;
     }
 
-    private void registerInfixStatement(TokenType type, InfixParseletStatement parselet){
-        mInfixParseletsStatement.put(type, parselet);
+    private static void registerInfixStatement(TokenType type, InfixParseletStatement parselet){
+        mInfixParseletsStatement[type.ordinal()] = parselet;
     }
 
-    private void registerPrefixStatement(TokenType type, PrefixParseletStatement parselet){
-        mPrefixParseletsStatement.put(type, parselet);
+    private static void registerPrefixStatement(TokenType type, PrefixParseletStatement parselet){
+        mPrefixParseletsStatement[type.ordinal()] = parselet;
     }
 
     /**
@@ -59,7 +98,7 @@ public class Parser {
      * The precedences are taken from the official Java Documentation.
      * @see <a href="https://docs.oracle.com/javase/tutorial/java/nutsandbolts/operators.html">Java Operators</a>
      */
-    private void setup_parser(){
+    private static void setup_parser(){
         // Register Prefixes
 //        registerPrefixExpression(TokenType.TOK_PLUS, new PrefixOperatorParselet(prefix_precedence));
         registerPrefixExpression(TokenType.TOK_MINUS, new PrefixOperatorParselet(Precedence.UNARY));
@@ -97,7 +136,7 @@ public class Parser {
 
         // Register Other
         registerPrefixExpression(TokenType.TOK_OPEN_PARENTHESIS, new ParenthesisParselet());
-        registerInfixExpression(TokenType.TOK_OPEN_PARENTHESIS, new CallParselet());
+        registerInfixExpression(TokenType.TOK_OPEN_PARENTHESIS, callParselet);
 
         // Register Fields
         registerInfixExpression(TokenType.TOK_HD, new PostfixOperatorParselet(Precedence.POSTFIX));
@@ -120,17 +159,189 @@ public class Parser {
 
     public ArrayList<Declaration> parseSPL(){
         ArrayList<Declaration> declarations = new ArrayList<>();
-        while (lookAhead(0).getType() != TokenType.TOK_EOF) {
-            Declaration decl = parseDeclaration();
-            declarations.add(decl);
+        while (lookAheadType(0) != TokenType.TOK_EOF) {
+            if (!recovering) {
+                declarations.add(parseDeclaration());
+                continue;
+            }
+            int start = currentToken;
+            try {
+                declarations.add(parseDeclaration());
+            } catch (ParseException | CallException | TokenException e) {
+                report(e);
+                // Skip the rest of the declaration, or everything when its braces do not match
+                int declarationEnd = declarationEnd(start);
+                currentToken = declarationEnd < 0 ? end : Math.max(declarationEnd, currentToken);
+            }
         }
-        if(declarations.size()== 0){
+        if(declarations.size()== 0 && errors.isEmpty()){
             throw new ParseException(this, "An SPL program needs at least one declaration.");
         }
 
         return declarations;
     }
 
+    /**
+     * In recovery mode a syntax error does not abort the parsing. The error is added to {@link #getErrors()} and the
+     * parser skips ahead to the next statement or declaration: after the next ';' at the same nesting level, before
+     * the '}' that closes the enclosing block, or at the start of the next top-level declaration. This way one run
+     * reports all syntax errors instead of only the first. The declarations or statements that had an error are left
+     * out of the result.
+     * @param recovering whether to recover from syntax errors
+     */
+    public void setRecovering(boolean recovering) {
+        this.recovering = recovering;
+    }
+
+    /**
+     * @return the syntax errors found in recovery mode, in the order they were found
+     */
+    public List<ParseException> getErrors() {
+        return errors;
+    }
+
+    /**
+     * Records a syntax error. Only the errors of the parser and its parselets are caught for this, anything else is
+     * a bug in the parser and crashes as such.
+     */
+    private void report(RuntimeException e) {
+        if (e instanceof ParseException) {
+            errors.add((ParseException) e);
+        } else {
+            // Errors thrown outside of the parser itself, like a call on something that is not an identifier
+            errors.add(new ParseException(this, e));
+        }
+    }
+
+    /**
+     * Parses the SPL program like {@link #parseSPL()}, but parses the top-level declarations in parallel.
+     * The declarations are found by a scan over the tokens: a variable declaration ends at its ';' and a function
+     * declaration at the '}' matching its first '{'. Each declaration is then parsed by its own parser on the common
+     * ForkJoinPool. If the scan fails or any declaration has an error, the whole program is parsed sequentially again,
+     * so errors are reported exactly like {@link #parseSPL()} does.
+     * @return the declarations of the program, in order
+     */
+    public ArrayList<Declaration> parseSPLParallel(){
+        int[] boundaries = splitDeclarations();
+        if (boundaries == null || boundaries.length < 3) {
+            return parseSPL();
+        }
+
+        Declaration[] declarations = new Declaration[boundaries.length - 1];
+        try {
+            ForkJoinPool.commonPool().invoke(new DeclarationsTask(tokens, boundaries, declarations, 0, declarations.length));
+        } catch (ParseException | CallException | TokenException e) {
+            currentToken = boundaries[0];
+            return parseSPL();
+        }
+        currentToken = boundaries[boundaries.length - 1];
+        return new ArrayList<>(Arrays.asList(declarations));
+    }
+
+    /**
+     * @return the indices at which the top-level declarations start, followed by the index of EOF,
+     * or null if the declarations could not be separated
+     */
+    private int[] splitDeclarations() {
+        int[] boundaries = new int[16];
+        int count = 0;
+        int i = currentToken;
+        while (typeAt(i) != TokenType.TOK_EOF) {
+            if (count == boundaries.length) {
+                boundaries = Arrays.copyOf(boundaries, count * 2);
+            }
+            boundaries[count++] = i;
+            i = declarationEnd(i);
+            if (i < 0) {
+                return null;
+            }
+        }
+        boundaries = Arrays.copyOf(boundaries, count + 1);
+        boundaries[count] = i;
+        return boundaries;
+    }
+
+    /**
+     * Finds the end of the top-level declaration starting at the given token, without parsing it.
+     * A function declaration runs up to the '}' matching its first '{', any other declaration up to its ';'.
+     * @param start index of the first token of the declaration
+     * @return index of the token after the declaration, or -1 if EOF is found first
+     */
+    private int declarationEnd(int start) {
+        int i = start;
+        if (typeAt(i) == TokenType.TOK_IDENTIFIER) {
+            while (typeAt(i) != TokenType.TOK_OPEN_CURLY) {
+                if (typeAt(i) == TokenType.TOK_EOF) {
+                    return -1;
+                }
+                i++;
+            }
+            int depth = 0;
+            do {
+                TokenType type = typeAt(i);
+                if (type == TokenType.TOK_EOF) {
+                    return -1;
+                } else if (type == TokenType.TOK_OPEN_CURLY) {
+                    depth++;
+                } else if (type == TokenType.TOK_CLOSE_CURLY) {
+                    depth--;
+                }
+                i++;
+            } while (depth > 0);
+            return i;
+        }
+        while (typeAt(i) != TokenType.TOK_EOL) {
+            if (typeAt(i) == TokenType.TOK_EOF) {
+                return -1;
+            }
+            i++;
+        }
+        return i + 1;
+    }
+
+    private TokenType typeAt(int index) {
+        return index < end ? tokens.getType(index) : TokenType.TOK_EOF;
+    }
+
+    /**
+     * Parses the declarations [from, to), splitting the work in halves until it is small enough.
+     */
+    private static class DeclarationsTask extends RecursiveAction {
+        // Number of tokens below which the declarations are parsed in the current thread
+        private static final int THRESHOLD = 4096;
+
+        private final TokenStream tokens;
+        private final int[] boundaries;
+        private final Declaration[] declarations;
+        private final int from;
+        private final int to;
+
+        DeclarationsTask(TokenStream tokens, int[] boundaries, Declaration[] declarations, int from, int to) {
+            this.tokens = tokens;
+            this.boundaries = boundaries;
+            this.declarations = declarations;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from > 1 && boundaries[to] - boundaries[from] > THRESHOLD) {
+                int middle = (from + to) >>> 1;
+                invokeAll(new DeclarationsTask(tokens, boundaries, declarations, from, middle),
+                        new DeclarationsTask(tokens, boundaries, declarations, middle, to));
+                return;
+            }
+            for (int i = from; i < to; i++) {
+                Parser parser = new Parser(tokens, boundaries[i], boundaries[i + 1]);
+                declarations[i] = parser.parseDeclaration();
+                if (parser.currentToken != boundaries[i + 1]) {
+                    throw new ParseException(parser, "The declaration does not end where it was expected to.");
+                }
+            }
+        }
+    }
+
     private Declaration parseDeclaration() {
         Token token = consume();
 
@@ -143,12 +354,12 @@ public class Parser {
                 token.getType() == TokenType.TOK_OPEN_PARENTHESIS) {
 
             //Assuming this only works for global, isGlobal should be true;
-            return new VariableDeclarationParselet().parse(this, token, true);
+            return variableDeclarationParselet.parse(this, token, true);
         }
 
         // Function declaration
         if (token.getType() == TokenType.TOK_IDENTIFIER) {
-            return new FunctionDeclarationParselet(new IdentifierExpression(token.getStringValue())).parse(this, token);
+            return functionDeclarationParselet.parse(this, token);
         }
 
         throw new ParseException(this, "No valid declaration is found!.");
@@ -156,16 +367,84 @@ public class Parser {
 
     public ArrayList<Statement> parseBlock(){
         ArrayList<Statement> statements = new ArrayList<>();
-        while (lookAhead(0).getType() != TokenType.TOK_EOF && lookAhead(0).getType() != TokenType.TOK_CLOSE_CURLY) {
+        while (lookAheadType(0) != TokenType.TOK_EOF && lookAheadType(0) != TokenType.TOK_CLOSE_CURLY) {
             Statement expr = parseStatement();
-            statements.add(expr);
-            if (lookAhead(0).getType() == TokenType.TOK_EOF)
+            if (expr != null)
+                statements.add(expr);
+            if (lookAheadType(0) == TokenType.TOK_EOF)
                 break;
         }
         return statements;
     }
 
+    /**
+     * Parses one statement.
+     * @return the statement, or null if it had an error that was recovered from
+     */
     public Statement parseStatement() {
+        if (!recovering) {
+            return parseSingleStatement();
+        }
+        int start = currentToken;
+        try {
+            return parseSingleStatement();
+        } catch (ParseException | CallException | TokenException e) {
+            if (typeAt(start) == TokenType.TOK_EOF) {
+                // Nothing left to skip, the declaration this block is in did not end
+                throw e;
+            }
+            report(e);
+            // A missing ';' ends the statement right where it was expected, the next statement starts there
+            if (!(e instanceof SemicolonError)) {
+                synchronizeStatement(start);
+            }
+            return null;
+        }
+    }
+
+    /**
+     * Skips the tokens up to the end of the statement starting at the given token, which could not be parsed.
+     * @param start index of the first token of the statement
+     */
+    private void synchronizeStatement(int start) {
+        int depth = 0;
+        for (int i = start; i < currentToken; i++) {
+            if (tokens.getType(i) == TokenType.TOK_OPEN_CURLY) {
+                depth++;
+            } else if (tokens.getType(i) == TokenType.TOK_CLOSE_CURLY) {
+                depth--;
+            }
+        }
+        if (depth < 0) {
+            // The '}' of the enclosing block was taken as part of the statement
+            currentToken--;
+            return;
+        }
+        if (depth == 0 && currentToken > start && tokens.getType(currentToken - 1) == TokenType.TOK_EOL) {
+            return;
+        }
+
+        while (true) {
+            TokenType type = lookAheadType(0);
+            if (type == TokenType.TOK_EOF || (type == TokenType.TOK_CLOSE_CURLY && depth == 0)) {
+                return;
+            }
+            currentToken++;
+            if (type == TokenType.TOK_EOL && depth == 0) {
+                return;
+            } else if (type == TokenType.TOK_OPEN_CURLY) {
+                depth++;
+            } else if (type == TokenType.TOK_CLOSE_CURLY) {
+                depth--;
+                // The end of an if or while, unless an else follows
+                if (depth == 0 && lookAheadType(0) != TokenType.TOK_KW_ELSE) {
+                    return;
+                }
+            }
+        }
+    }
+
+    private Statement parseSingleStatement() {
         Token token = consume();
 
         // WHILE-IF-RETURN-PRINT
@@ -173,16 +452,16 @@ public class Parser {
                 token.getType() == TokenType.TOK_KW_IF ||
                 token.getType() == TokenType.TOK_KW_RETURN ||
                 token.getType() == TokenType.TOK_KW_PRINT) {
-            PrefixParseletStatement prefix = mPrefixParseletsStatement.get(token.getType());
+            PrefixParseletStatement prefix = mPrefixParseletsStatement[token.getType().ordinal()];
 
             return prefix.parse(this, token);
 
         } else if (token.getType() == TokenType.TOK_IDENTIFIER) {
-            Expression id = mPrefixParseletsExpression.get(token.getType()).parse(this, token);
+            Expression id = mPrefixParseletsExpression[token.getType().ordinal()].parse(this, token);
 
             // FUNCALL
             if (match(TokenType.TOK_OPEN_PARENTHESIS)) {
-                CallExpression funcall = (CallExpression) new CallParselet().parse(this, id, lookAhead(0));
+                CallExpression funcall = (CallExpression) callParselet.parse(this, id, lookAhead(0));
 
                 if (match(TokenType.TOK_EOL))
                     return new CallStatement(funcall);
@@ -198,12 +477,12 @@ public class Parser {
                 }
 
                 token = consume(TokenType.TOK_ASSIGN);
-                InfixParseletStatement parselet = mInfixParseletsStatement.get(token.getType());
+                InfixParseletStatement parselet = mInfixParseletsStatement[token.getType().ordinal()];
 
                 return parselet.parse(this, id, token);
             }
         }
-        throw new ParseException(this, String.format("No statement could be parsed in line %s", getLine()));
+        throw new ParseException(this, "No statement could be parsed.");
     }
 
     /**
@@ -222,7 +501,7 @@ public class Parser {
      */
     public Expression parseExpression(int precedence) {
         Token token = consume();
-        PrefixParseletExpression prefix = mPrefixParseletsExpression.get(token.getType());
+        PrefixParseletExpression prefix = mPrefixParseletsExpression[token.getType().ordinal()];
 
         if (prefix == null) throw new ParseException(this, token);
 
@@ -231,7 +510,7 @@ public class Parser {
         while (precedence < getPrecedence()) {
             token = consume();
 
-            InfixParseletExpression infix = mInfixParseletsExpression.get(token.getType());
+            InfixParseletExpression infix = mInfixParseletsExpression[token.getType().ordinal()];
             left = infix.parse(this, left, token);
         }
         return left;
@@ -247,12 +526,11 @@ public class Parser {
      * @return Bool if the Token was there.
      */
     public boolean match(TokenType expected) {
-        Token token = lookAhead(0);
-        if (token.getType() != expected) {
+        if (lookAheadType(0) != expected) {
             return false;
         }
 
-        consume();
+        currentToken++;
         return true;
     }
 
@@ -261,10 +539,11 @@ public class Parser {
      * @return Bool whether the next token is a field.
      */
     public boolean fieldAhead() {
-        return (lookAhead(0).getType() == TokenType.TOK_HD ||
-                lookAhead(0).getType() == TokenType.TOK_TL ||
-                lookAhead(0).getType() == TokenType.TOK_FST ||
-                lookAhead(0).getType() == TokenType.TOK_SND);
+        TokenType type = lookAheadType(0);
+        return (type == TokenType.TOK_HD ||
+                type == TokenType.TOK_TL ||
+                type == TokenType.TOK_FST ||
+                type == TokenType.TOK_SND);
     }
 
     /**
@@ -273,11 +552,11 @@ public class Parser {
      * @return Token
      */
     public Token consume(TokenType expected) {
-        Token token = lookAhead(0);
-        if (token.getType() != expected) {
+        TokenType type = lookAheadType(0);
+        if (type != expected) {
             throw new ParseException(this,
                     String.format("Expected token: \t %s\n\tFound token: \t %s",
-                            expected, token.getType())
+                            expected, type)
             );
         }
 
@@ -285,15 +564,14 @@ public class Parser {
     }
 
     /**
-     * Load in one token into the buffer
-     * @return First Token in the buffer.
+     * Consumes the next token
+     * @return the consumed Token.
      */
     public Token consume() {
-        // Make sure we've read the token.
-        lookAhead(0);
+        Token token = lookAhead(0);
         currentToken++;
 
-        return mRead.remove(0);
+        return token;
     }
 
     /**
@@ -302,13 +580,26 @@ public class Parser {
      * @return Token that is 'distance' tokens ahead
      */
     public Token lookAhead(int distance) {
-        // Read in as many as needed.
-        while (distance >= mRead.size()) {
-            mRead.add(mTokens.next());
+        int index = currentToken + distance;
+        if (index >= end) {
+            return TokenOther.of(TokenType.TOK_EOF);
         }
+        int slot = index & (WINDOW - 1);
+        if (windowIndex[slot] != index) {
+            window[slot] = tokens.get(index);
+            windowIndex[slot] = index;
+        }
+        return window[slot];
+    }
 
-        // Get the queued token.
-        return mRead.get(distance);
+    /**
+     * LookAhead to get the type of the specified Token, without creating the Token itself
+     * @param distance size of LookAhead
+     * @return type of the Token that is 'distance' tokens ahead
+     */
+    public TokenType lookAheadType(int distance) {
+        int index = currentToken + distance;
+        return index < end ? tokens.getType(index) : TokenType.TOK_EOF;
     }
 
 
@@ -317,7 +608,7 @@ public class Parser {
      * @return Precedence of next expression, else 0.
      */
     private int getPrecedence() {
-        InfixParseletExpression parser = mInfixParseletsExpression.get(lookAhead(0).getType());
+        InfixParseletExpression parser = mInfixParseletsExpression[lookAheadType(0).ordinal()];
         if (parser != null){
             return parser.getPrecedence();
         }
@@ -325,21 +616,48 @@ public class Parser {
         return 0;
     }
 
+    /**
+     * @return index of the next token to be consumed, used by the exceptions to refer to a position
+     */
+    public int getPosition() {
+        return currentToken;
+    }
+
     /**
      * Helper function to identify what the line is of the current token.
      * @return current line.
      */
     public String getLine() {
-        List<Token> currentList = new ArrayList<>(input);
-        int lastChar = currentList.indexOf(new TokenOther(TokenType.TOK_EOL));
-        while (currentToken > lastChar) {
-            if (lastChar == -1) {
-                lastChar = currentList.size();
-                break;
-            }
-            currentList = currentList.subList(lastChar + 1, currentList.size());
-            lastChar = currentList.indexOf(new TokenOther(TokenType.TOK_EOL));
+        return getLine(currentToken);
+    }
+
+    /**
+     * Describes the line of the given token. When the source is known this is the line number, column and the text of
+     * that line. Otherwise the tokens between the surrounding semicolons are printed.
+     * @param index index of the token
+     * @return description of the line
+     */
+    public String getLine(int index) {
+        index = Math.max(0, Math.min(index, tokens.size() - 1));
+        LineIndex lines = tokens.getLineIndex();
+        int offset = tokens.getOffset(index);
+        if (lines != null && offset >= 0) {
+            int line = lines.line(offset);
+            return String.format("%d, column %d: '%s'", line, lines.column(offset), lines.text(line).trim());
+        }
+
+        int start = index;
+        while (start > 0 && tokens.getType(start - 1) != TokenType.TOK_EOL) {
+            start--;
+        }
+        int end = index;
+        while (end < tokens.size() && tokens.getType(end) != TokenType.TOK_EOL && tokens.getType(end) != TokenType.TOK_EOF) {
+            end++;
+        }
+        List<Token> line = new ArrayList<>(end - start);
+        for (int i = start; i < end; i++) {
+            line.add(tokens.get(i));
         }
-        return PrettyPrinter.printLine(currentList.subList(0, lastChar));
+        return PrettyPrinter.printLine(line);
     }
 }
@@ -10,6 +10,8 @@ import parser.exceptions.ParseException;
 import java.util.List;
 
 public class FunTypeParselet {
+    private static final TypesParselet typesParselet = new TypesParselet();
+    private static final ReturnTypeParselet returnTypeParselet = new ReturnTypeParselet();
 
     public FunType parse(Parser parser, Token token) {
         List<Type> argsTypes;
@@ -19,7 +21,7 @@ public class FunTypeParselet {
             //argsTypes = new ArrayList<>();
 
         //else
-            argsTypes = new TypesParselet().parse(parser, token);
+            argsTypes = typesParselet.parse(parser, token);
 
         if(token.getType() != TokenType.TOK_KW_ARROW) {
             if (parser.match(TokenType.TOK_KW_ARROW)) {
@@ -28,7 +30,7 @@ public class FunTypeParselet {
                 throw new ParseException(parser, "Missing '->' after argument types");
         }
         next = parser.consume();
-        returnType = new ReturnTypeParselet().parse(parser, next);
+        returnType = returnTypeParselet.parse(parser, next);
 
 
         return new FunType(argsTypes, returnType);
@@ -15,23 +15,17 @@ import java.util.ArrayList;
 import java.util.List;
 
 public class FunctionDeclarationParselet {
-    public final IdentifierExpression name;
-    public final List<IdentifierExpression> args;
-    public final List<VariableDeclaration> funVarDecl;
-    public List<Statement> stats;
-    public FunType funtype;
-
-    public FunctionDeclarationParselet(IdentifierExpression name){
-        this.name = name;
-        this.args = new ArrayList<>();
-        this.funVarDecl = new ArrayList<>();
-        this.stats = new ArrayList<>();
-        this.funtype = null;
-    }
+    private static final FunTypeParselet funTypeParselet = new FunTypeParselet();
+    private static final VariableDeclarationParselet variableDeclarationParselet = new VariableDeclarationParselet();
 
     public FunctionDeclaration parse(Parser parser, Token token) {
+        List<IdentifierExpression> args = new ArrayList<>();
+        List<VariableDeclaration> funVarDecl = new ArrayList<>();
+        List<Statement> stats;
+        FunType funtype = null;
+
         if(token.getType() == TokenType.TOK_IDENTIFIER){
-//            name = new IdentifierExpression(token.getStringValue());
+            IdentifierExpression name = new IdentifierExpression(token.getStringValue());
             if(parser.match(TokenType.TOK_OPEN_PARENTHESIS)){
 
 
@@ -59,7 +53,7 @@ public class FunctionDeclarationParselet {
                                 (tokentype.getType() == TokenType.TOK_OPEN_PARENTHESIS)||
                                 (tokentype.getType() == TokenType.TOK_OPEN_BRACKETS)||
                                 (tokentype.getType() ==  TokenType.TOK_KW_ARROW)){
-                            funtype = new FunTypeParselet().parse(parser,tokentype);
+                            funtype = funTypeParselet.parse(parser,tokentype);
 
                         }
 
@@ -80,7 +74,7 @@ public class FunctionDeclarationParselet {
 
                     }
                     else{
-                        throw new ParseException(parser, "Missing '::' after arguments." + parser.getLine());
+                        throw new ParseException(parser, "Missing '::' after arguments.");
                     }
 
                     if(parser.match(TokenType.TOK_OPEN_CURLY)){
@@ -94,7 +88,7 @@ public class FunctionDeclarationParselet {
 
                             //if (prefix == null) throw new ParseException(this, token);
 
-                            funVarDecl.add(new VariableDeclarationParselet().parse(parser, parser.consume(), false));
+                            funVarDecl.add(variableDeclarationParselet.parse(parser, parser.consume(), false));
                         }
                         stats = parser.parseBlock();
                         if(stats.size() > 0){
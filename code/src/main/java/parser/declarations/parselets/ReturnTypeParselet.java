@@ -4,21 +4,15 @@ import lexer.Token;
 import lexer.TokenType;
 import parser.types.*;
 import parser.Parser;
-import parser.exceptions.ParseException;
 
 public class ReturnTypeParselet {
+    private static final TypeParselet typeParselet = new TypeParselet();
+
     public Type parse(Parser parser, Token token) {
-        Type type;
-        try{
-            type = new TypeParselet().parse(parser, token);
-        } catch (ParseException e){
-            if(token.getType() == TokenType.TOK_KW_VOID){
-                type = Types.voidType;
-            } else {
-                throw e;
-            }
+        if(token.getType() == TokenType.TOK_KW_VOID){
+            return Types.voidType;
         }
 
-        return type;
+        return typeParselet.parse(parser, token);
     }
 }
@@ -7,21 +7,23 @@ import parser.Parser;
 import parser.exceptions.ParseException;
 
 public class TupleTypeParselet {
+    private static final TypeParselet typeParselet = new TypeParselet();
+
     public TupleType parse(Parser parser, Token token) {
 
-        Type left = new TypeParselet().parse(parser, token);
+        Type left = typeParselet.parse(parser, token);
 
         if(!parser.match(TokenType.TOK_COMMA)) {
             throw new ParseException(parser, "Tuple listType with missing comma");
         }
 
-        Type right = new TypeParselet().parse(parser, parser.consume());
+        Type right = typeParselet.parse(parser, parser.consume());
 
         if(!parser.match(TokenType.TOK_CLOSE_PARENTHESIS)){
             throw new ParseException(parser, "Tuple listType with missing closing parenthesis.");
         }
 
-        return new TupleType(left, right);
+        return Types.tupleType(left, right);
     }
 
 }
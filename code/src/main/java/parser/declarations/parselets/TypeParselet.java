@@ -7,6 +7,7 @@ import parser.Parser;
 import parser.exceptions.ParseException;
 
 public class TypeParselet {
+    private static final TupleTypeParselet tupleTypeParselet = new TupleTypeParselet();
 
     public Type parse(Parser parser, Token token) {
         Token next;
@@ -21,11 +22,11 @@ public class TypeParselet {
                 return Types.varType();
             case TOK_OPEN_PARENTHESIS:
                 next = parser.consume();
-                return new TupleTypeParselet().parse(parser,next);
+                return tupleTypeParselet.parse(parser,next);
 
             case TOK_OPEN_BRACKETS:
                 next = parser.consume();
-                Type type = new TypeParselet().parse(parser, next);
+                Type type = parse(parser, next);
                 if(parser.match(TokenType.TOK_CLOSE_BRACKETS)){
                     return Types.listType(type);
                 }
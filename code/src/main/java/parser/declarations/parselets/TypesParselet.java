@@ -9,15 +9,10 @@ import java.util.ArrayList;
 import java.util.List;
 
 public class TypesParselet {
-    List<Type> types;
-
-    public TypesParselet(){
-        this.types = new ArrayList<>();
-
-    }
+    private static final TypeParselet typeparser = new TypeParselet();
 
     public List<Type> parse(Parser parser, Token token){
-        TypeParselet typeparser = new TypeParselet();
+        List<Type> types = new ArrayList<>();
         while( (token.getType() == TokenType.TOK_KW_BOOL||
                 token.getType() == TokenType.TOK_KW_INT||
                 token.getType() == TokenType.TOK_KW_CHAR||
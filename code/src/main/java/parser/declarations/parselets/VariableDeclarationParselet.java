@@ -10,9 +10,10 @@ import parser.exceptions.ParseException;
 import parser.declarations.VariableDeclaration;
 
 public class VariableDeclarationParselet {
+    private static final TypeParselet typeParselet = new TypeParselet();
 
     public VariableDeclaration parse(Parser parser,  Token token, boolean isGlobal) {
-        Type varType = new TypeParselet().parse(parser, token);
+        Type varType = typeParselet.parse(parser, token);
 
         if(parser.lookAhead(0).getType() != TokenType.TOK_IDENTIFIER)
             throw new ParseException(parser, "Identifier in variable declaration is missing");
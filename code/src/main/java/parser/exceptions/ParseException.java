@@ -3,13 +3,44 @@ package parser.exceptions;
 import lexer.Token;
 import parser.Parser;
 
+/**
+ * The line the error was found in is only rendered when the message is asked for, the exception itself just remembers
+ * the position of the parser.
+ */
 @SuppressWarnings("serial")
 public class ParseException extends RuntimeException {
+    private final transient Parser parser;
+    private final int position;
+    private String message;
+
     public ParseException(Parser p, String message) {
-        super(String.format("%s\n\tError found in line %s", message, p.getLine()));
+        this(p, p.getPosition(), message);
     }
 
     public ParseException(Parser p, Token t) {
-        super(String.format("There was an error parsing '%s'.\n\tError found in line \t '%s'", t, p.getLine()));
+        // The token has already been consumed
+        this(p, p.getPosition() - 1, String.format("There was an error parsing '%s'.", t));
+    }
+
+    /**
+     * Wraps an error that was thrown while parsing, but not by the parser itself.
+     */
+    public ParseException(Parser p, RuntimeException cause) {
+        this(p, p.getPosition() - 1, cause.getMessage());
+        initCause(cause);
+    }
+
+    private ParseException(Parser p, int position, String message) {
+        super(message);
+        this.parser = p;
+        this.position = position;
+    }
+
+    @Override
+    public String getMessage() {
+        if (message == null) {
+            message = String.format("%s\n\tError found in line %s", super.getMessage(), parser.getLine(position));
+        }
+        return message;
     }
-}
\ No newline at end of file
+}
@@ -2,9 +2,8 @@ package parser.exceptions;
 
 import parser.Parser;
 
-public class SemicolonError extends ClassCastException {
-
+public class SemicolonError extends ParseException {
     public SemicolonError(Parser p) {
-        super(String.format("There is probably an ';' missing.\n\tError found in line '%s'. \n\t", p.getLine()));
+        super(p, "There is probably an ';' missing.");
     }
-}
\ No newline at end of file
+}
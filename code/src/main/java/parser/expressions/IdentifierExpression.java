@@ -1,6 +1,7 @@
 package parser.expressions;
 
 import parser.expressions.parselets.PostfixOperatorParselet;
+import lexer.SymbolTable;
 import lexer.Token;
 import parser.Parser;
 import parser.Precedence;
@@ -12,17 +13,22 @@ import java.util.Objects;
  * Identifier Expression: abc
  */
 public class IdentifierExpression extends Expression {
+    private static final PostfixOperatorParselet fieldParselet = new PostfixOperatorParselet(Precedence.POSTFIX);
+
 
     public final String name;
+    // Id of the name in the SymbolTable
+    public final int id;
 
     public IdentifierExpression(String name) {
         this.name = name;
+        this.id = SymbolTable.global().intern(name);
     }
 
     public static Expression parseFields(Parser p, Expression expr) {
         do {
             Token field = p.consume();
-            expr = new PostfixOperatorParselet(Precedence.POSTFIX).parse(p, expr, field);
+            expr = fieldParselet.parse(p, expr, field);
         } while (p.fieldAhead());
         return expr;
     }
@@ -32,13 +38,13 @@ public class IdentifierExpression extends Expression {
         if (this == o) return true;
         if (o == null || getClass() != o.getClass()) return false;
         IdentifierExpression that = (IdentifierExpression) o;
-        return Objects.equals(name, that.name);
+        return id == that.id;
     }
 
     @Override
     public int hashCode() {
 
-        return Objects.hash(name);
+        return Objects.hash(id);
     }
 
     @Override
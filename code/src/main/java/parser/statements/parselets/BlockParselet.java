@@ -17,7 +17,8 @@ public class BlockParselet {
 
             // Stop when we hit the closing }.
             if (parser.match(TokenType.TOK_CLOSE_CURLY)) break;
-            expressions.add(parser.parseStatement());
+            Statement statement = parser.parseStatement();
+            if (statement != null) expressions.add(statement);
 
 
             //if (parser.match(TokenType.TOK_EOL)) break;
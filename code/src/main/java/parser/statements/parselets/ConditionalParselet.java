@@ -15,12 +15,13 @@ import java.util.List;
  * Parselet for the condition or "ternary" operator, like "a ? b : c".
  */
 public class ConditionalParselet implements PrefixParseletStatement {
+    private static final BlockParselet blockParselet = new BlockParselet();
 
     public Statement parse(Parser parser, Token token) {
         Expression condition = parser.parseExpression();
         List<Statement> thenArm = new ArrayList<>();
         if(parser.match(TokenType.TOK_OPEN_CURLY)){
-            thenArm = new BlockParselet().parse(parser, parser.lookAhead(0));
+            thenArm = blockParselet.parse(parser, parser.lookAhead(0));
         }
 
         List<Statement> elseArm = new ArrayList<>();
@@ -28,7 +29,7 @@ public class ConditionalParselet implements PrefixParseletStatement {
         if(parser.lookAhead(0).getType() == TokenType.TOK_KW_ELSE){
             parser.consume(TokenType.TOK_KW_ELSE);
             if(parser.match(TokenType.TOK_OPEN_CURLY)){
-                elseArm = new BlockParselet().parse(parser, parser.lookAhead(0));
+                elseArm = blockParselet.parse(parser, parser.lookAhead(0));
             }
         }
 
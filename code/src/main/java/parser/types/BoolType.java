@@ -4,16 +4,13 @@ import typechecker.Substitution;
 
 public class BoolType extends Type {
 
-    private static BoolType instance = null;
+    private static final BoolType instance = new BoolType();
 
     private BoolType(){
 
     }
 
     public static BoolType getInstance(){
-        if(instance == null){
-            instance = new BoolType();
-        }
         return instance;
     }
 
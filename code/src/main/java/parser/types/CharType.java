@@ -4,16 +4,13 @@ import typechecker.Substitution;
 
 public class CharType extends Type {
 
-    private static CharType instance = null;
+    private static final CharType instance = new CharType();
 
     private CharType(){
 
     }
 
     public static CharType getInstance(){
-        if(instance == null){
-            instance = new CharType();
-        }
         return instance;
     }
 
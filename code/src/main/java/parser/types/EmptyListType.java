@@ -4,16 +4,13 @@ import typechecker.Substitution;
 
 public class EmptyListType extends Type {
 
-    private static EmptyListType instance = null;
+    private static final EmptyListType instance = new EmptyListType();
 
     private EmptyListType(){
 
     }
 
     public static EmptyListType getInstance(){
-        if(instance == null){
-            instance = new EmptyListType();
-        }
         return instance;
     }
 
@@ -4,16 +4,13 @@ import typechecker.Substitution;
 
 public class IntType extends Type{
 
-    private static IntType instance;
+    private static final IntType instance = new IntType();
 
     private IntType(){
 
     }
 
     public static IntType getInstance(){
-        if(instance == null){
-            instance = new IntType();
-        }
         return instance;
     }
 
@@ -2,33 +2,21 @@ package parser.types;
 
 import typechecker.Substitution;
 
-import java.util.Objects;
-
+/**
+ * Created through {@link Types#listType(Type)} only, which hands out one instance per element type.
+ * Two list types are therefore equal exactly when they are the same object.
+ */
 public class ListType extends Type{
 
-    public Type listType;
+    public final Type listType;
 
-    public ListType(Type listType){
+    ListType(Type listType){
         this.listType = listType;
     }
 
-
-    @Override
-    public boolean equals(Object o) {
-        if (this == o) return true;
-        if (o == null || getClass() != o.getClass()) return false;
-        ListType listType = (ListType) o;
-        return Objects.equals(this.listType, listType.listType);
-    }
-
-    @Override
-    public int hashCode() {
-        return Objects.hash(listType);
-    }
-
     @Override
     public Type applySubstitution(Substitution substitution) {
-        throw new UnsupportedOperationException();
+        return Types.listType(listType.applySubstitution(substitution));
     }
 
     @Override
@@ -36,4 +24,3 @@ public class ListType extends Type{
         return String.format("List[%s]", listType);
     }
 }
-
@@ -2,35 +2,22 @@ package parser.types;
 
 import typechecker.Substitution;
 
-import java.util.Objects;
-
+/**
+ * Created through {@link Types#tupleType(Type, Type)} only, which hands out one instance per pair of types.
+ * Two tuple types are therefore equal exactly when they are the same object.
+ */
 public class TupleType extends Type{
-    public  Type left;
-    public Type right;
+    public final Type left;
+    public final Type right;
 
-    public TupleType(Type left, Type right){
+    TupleType(Type left, Type right){
         this.left = left;
         this.right = right;
     }
 
-    @Override
-    public boolean equals(Object o) {
-        if (this == o) return true;
-        if (o == null || getClass() != o.getClass()) return false;
-        TupleType tupleType = (TupleType) o;
-        return Objects.equals(left, tupleType.left) &&
-                Objects.equals(right, tupleType.right);
-    }
-
-    @Override
-    public int hashCode() {
-
-        return Objects.hash(left, right);
-    }
-
     @Override
     public Type applySubstitution(Substitution substitution) {
-        throw new UnsupportedOperationException();
+        return Types.tupleType(left.applySubstitution(substitution), right.applySubstitution(substitution));
     }
 
     @Override
@@ -1,5 +1,11 @@
 package parser.types;
 
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Factory for all types. The types are hash-consed: structurally equal types are the same object, so they can be
+ * compared with == (or equals, which is the same) and shared between threads.
+ */
 public class Types {
 
     public final static IntType intType = IntType.getInstance();
@@ -8,20 +14,36 @@ public class Types {
     public final static VoidType voidType = VoidType.getInstance();
     public final static EmptyListType emptyListType = EmptyListType.getInstance();
 
+    // The components of a type are unique already, so they are looked up by identity.
+    // A component can be null while it is still unknown, NONE stands in for it as the maps do not take null keys.
+    private static final Object NONE = new Object();
+    private static final VarType unknownVarType = new VarType(null);
+    private static final ConcurrentHashMap<Object, VarType> varTypes = new ConcurrentHashMap<>();
+    private static final ConcurrentHashMap<Object, ListType> listTypes = new ConcurrentHashMap<>();
+    private static final ConcurrentHashMap<Object, ConcurrentHashMap<Object, TupleType>> tupleTypes = new ConcurrentHashMap<>();
+
     public static VarType varType(){
-        return new VarType();
+        return unknownVarType;
     }
 
     public static VarType varType(Type type){
-        return new VarType(type);
+        if (type == null) {
+            return unknownVarType;
+        }
+        return varTypes.computeIfAbsent(type, t -> new VarType(type));
     }
 
     public static ListType listType(Type type){
-        return new ListType(type);
+        return listTypes.computeIfAbsent(key(type), t -> new ListType(type));
     }
 
     public static TupleType tupleType(Type left, Type right){
-        return new TupleType(left, right);
+        return tupleTypes.computeIfAbsent(key(left), l -> new ConcurrentHashMap<>())
+                .computeIfAbsent(key(right), r -> new TupleType(left, right));
+    }
+
+    private static Object key(Type type) {
+        return type == null ? NONE : type;
     }
 
 }
@@ -2,34 +2,19 @@ package parser.types;
 
 import typechecker.Substitution;
 
-import java.util.Objects;
-
+/**
+ * Created through {@link Types#varType(Type)} only, which hands out one instance per inferred type.
+ * Two var types are therefore equal exactly when they are the same object.
+ */
 public class VarType extends Type {
 
-    private static VarType instance = null;
-    public Type type = null;
+    // The inferred type, null when it is not known
+    public final Type type;
 
-    public VarType(Type type){
+    VarType(Type type){
         this.type = type;
     }
 
-    public VarType(){
-        this(null);
-    }
-
-    @Override
-    public boolean equals(Object o) {
-        if (this == o) return true;
-        if (o == null || getClass() != o.getClass()) return false;
-        VarType varType = (VarType) o;
-        return Objects.equals(type, varType.type);
-    }
-
-    @Override
-    public int hashCode() {
-        return Objects.hash(type);
-    }
-
     @Override
     public Type applySubstitution(Substitution substitution) {
         return this;
@@ -4,16 +4,13 @@ import typechecker.Substitution;
 
 public class VoidType extends Type{
 
-    private static VoidType instance;
+    private static final VoidType instance = new VoidType();
 
     private VoidType(){
 
     }
 
     public static VoidType getInstance(){
-        if(instance == null){
-            instance = new VoidType();
-        }
         return instance;
     }
 
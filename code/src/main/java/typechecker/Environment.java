@@ -1,44 +1,242 @@
 package typechecker;
 
-import parser.declarations.FunctionDeclaration;
-import parser.types.Type;
+import lexer.SymbolTable;
 
+import java.util.Arrays;
 import java.util.HashMap;
-import java.util.Map;
 
-public class Environment extends HashMap<String, EnvironmentType> {
+/**
+ * Types of the variables and functions in scope, indexed by the id of their name in the SymbolTable.
+ * Variables and functions live in separate arrays, so a variable and a function can share a name.
+ * <p>
+ * Scopes are kept as a stack on top of these arrays. Every put inside a scope remembers the entry it replaces, and
+ * leaving the scope puts those entries back. Entering and leaving a function therefore costs as much as the number of
+ * names the function binds, and not the size of the whole environment.
+ * <p>
+ * A {@link #view()} binds names in arrays of its own and falls back to the environment it was made from. Of that
+ * environment it only sees the names bound at or before its position, which is what a declaration at that position
+ * sees when the program is checked from top to bottom. Views never write to the environment they were made from, so
+ * several threads can each check functions in their own view of the same global environment.
+ */
+public class Environment {
+    private EnvironmentType[] variables;
+    private EnvironmentType[] functions;
 
-    public boolean isGlobalVariable(String varName){
-        EnvironmentType t = this.get(varName);
+    // Environment this one is a view of, or null
+    private final Environment outer;
+    // Position of the declaration that is being checked, see setPosition
+    private int position = 0;
+    // Position at which each name was bound, only kept when this is not a view
+    private int[] variablesSince;
+    private int[] functionsSince;
+    // Earlier bindings of the functions that were bound again, only kept when this is not a view
+    private final HashMap<Integer, Binding> reboundFunctions = new HashMap<>();
+
+    private static final class Binding {
+        final EnvironmentType type;
+        final int since;
+        final Binding previous;
+
+        Binding(EnvironmentType type, int since, Binding previous) {
+            this.type = type;
+            this.since = since;
+            this.previous = previous;
+        }
+    }
+
+    // Stands for a name a view binds to null, so it does not fall back to the outer environment
+    private static final EnvironmentType UNBOUND = new EnvironmentType(null, false, false, false);
+
+    // Entries replaced inside the open scopes. A function is stored as ~id, so it can not be mistaken for a variable.
+    private int[] replacedIds = new int[16];
+    private EnvironmentType[] replacedTypes = new EnvironmentType[16];
+    private int replacedCount = 0;
+    // Value of replacedCount when each of the open scopes was entered
+    private int[] scopeStarts = new int[4];
+    private int scopeCount = 0;
+
+    public Environment() {
+        int capacity = Math.max(SymbolTable.global().size(), 16);
+        this.variables = new EnvironmentType[capacity];
+        this.functions = new EnvironmentType[capacity];
+        this.outer = null;
+        this.variablesSince = new int[capacity];
+        this.functionsSince = new int[capacity];
+    }
+
+    private Environment(EnvironmentType[] variables, EnvironmentType[] functions,
+                        int[] variablesSince, int[] functionsSince) {
+        this.variables = variables;
+        this.functions = functions;
+        this.outer = null;
+        this.variablesSince = variablesSince;
+        this.functionsSince = functionsSince;
+    }
+
+    private Environment(Environment outer) {
+        this.variables = new EnvironmentType[outer.variables.length];
+        this.functions = new EnvironmentType[outer.functions.length];
+        this.outer = outer;
+    }
+
+    /**
+     * @return an empty environment that falls back to this one for the names bound at or before its position
+     */
+    public Environment view() {
+        if (outer != null) {
+            throw new IllegalStateException("A view can not be made of a view.");
+        }
+        return new Environment(this);
+    }
+
+    /**
+     * Sets the index of the top-level declaration that is being checked. Names bound from now on in an environment
+     * that is not a view are remembered to be bound at this position. A view only sees the names of its outer
+     * environment that were bound at or before this position.
+     * @param position index of the declaration in the program
+     */
+    public void setPosition(int position) {
+        this.position = position;
+    }
+
+    /**
+     * Opens a new scope, everything put into the environment from now on is undone by {@link #exitScope()}.
+     */
+    public void enterScope() {
+        if (scopeCount == scopeStarts.length) {
+            scopeStarts = Arrays.copyOf(scopeStarts, scopeCount * 2);
+        }
+        scopeStarts[scopeCount++] = replacedCount;
+    }
+
+    /**
+     * Closes the innermost scope and restores the environment to what it was when that scope was entered.
+     */
+    public void exitScope() {
+        if (scopeCount == 0) {
+            throw new IllegalStateException("There is no scope to exit.");
+        }
+        int start = scopeStarts[--scopeCount];
+        while (replacedCount > start) {
+            replacedCount--;
+            int id = replacedIds[replacedCount];
+            if (id >= 0) {
+                variables[id] = replacedTypes[replacedCount];
+            } else {
+                functions[~id] = replacedTypes[replacedCount];
+            }
+            replacedTypes[replacedCount] = null;
+        }
+    }
+
+    private void remember(int id, EnvironmentType replaced) {
+        if (replacedCount == replacedIds.length) {
+            replacedIds = Arrays.copyOf(replacedIds, replacedCount * 2);
+            replacedTypes = Arrays.copyOf(replacedTypes, replacedCount * 2);
+        }
+        replacedIds[replacedCount] = id;
+        replacedTypes[replacedCount] = replaced;
+        replacedCount++;
+    }
+
+    public boolean isGlobalVariable(int id){
+        EnvironmentType t = this.get(id);
         if(t == null)
             return false;
         return !t.isFunction && t.isGlobal;
     }
 
     /**
-     * Java Strings are immutable, Types are not they have to be copied
+     * EnvironmentTypes are immutable, so copying the arrays is enough. The copy has no open scopes.
+     * Prefer {@link #enterScope()} and {@link #exitScope()}, which do not copy anything.
      * @param env environment to be copied
      * @return deepCopy of env
      */
 	public static Environment deepCopy(Environment env){
-	    Environment copy = new Environment();
+        if (env.outer != null) {
+            throw new IllegalStateException("A view can not be copied.");
+        }
+	    return new Environment(env.variables.clone(), env.functions.clone(),
+                env.variablesSince.clone(), env.functionsSince.clone());
+    }
+
+    public EnvironmentType get(int id){
+        EnvironmentType type = id < variables.length ? variables[id] : null;
+        if (type == UNBOUND) {
+            return null;
+        }
+        if (type != null || outer == null) {
+            return type;
+        }
+        return visible(outer.variables, outer.variablesSince, id);
+    }
 
-        for (Map.Entry<String, EnvironmentType> entry : env.entrySet()) {
-            copy.put(entry.getKey(), (EnvironmentType) entry.getValue().clone());
+    public void put(int id, EnvironmentType value){
+        variables = ensureCapacity(variables, id);
+        if (scopeCount > 0) {
+            remember(id, variables[id]);
         }
+        if (outer != null && value == null) {
+            value = UNBOUND;
+        } else if (outer == null && variables[id] == null) {
+            variablesSince = ensureCapacity(variablesSince, id);
+            variablesSince[id] = position;
+        }
+        variables[id] = value;
+    }
 
-	    return copy;
+    public void putFunction(int id, EnvironmentType value){
+        functions = ensureCapacity(functions, id);
+        if (scopeCount > 0) {
+            remember(~id, functions[id]);
+        }
+        if (outer == null && functions[id] == null) {
+            functionsSince = ensureCapacity(functionsSince, id);
+            functionsSince[id] = position;
+        } else if (outer == null && scopeCount == 0) {
+            reboundFunctions.put(id, new Binding(functions[id], functionsSince[id], reboundFunctions.get(id)));
+            functionsSince[id] = position;
+        }
+        functions[id] = value;
     }
 
-    public void putFunction(String key, EnvironmentType value){
-        this.put(key +"_func", value);
+    public EnvironmentType getFunction(int id){
+        EnvironmentType type = id < functions.length ? functions[id] : null;
+        if (outer == null || type != null) {
+            return type;
+        }
+        type = visible(outer.functions, outer.functionsSince, id);
+        if (type != null || outer.reboundFunctions.isEmpty()) {
+            return type;
+        }
+        for (Binding b = outer.reboundFunctions.get(id); b != null; b = b.previous) {
+            if (b.since <= position) {
+                return b.type;
+            }
+        }
+        return null;
     }
 
-    public EnvironmentType getFunction(String key){
-        return this.get(key +"_func");
+    /**
+     * @return the type the outer environment has for id, if it was bound at or before the position of this view
+     */
+    private EnvironmentType visible(EnvironmentType[] types, int[] since, int id) {
+        EnvironmentType type = id < types.length ? types[id] : null;
+        return type != null && since[id] <= position ? type : null;
     }
 
+    private static EnvironmentType[] ensureCapacity(EnvironmentType[] types, int id){
+        if (id < types.length) {
+            return types;
+        }
+        return Arrays.copyOf(types, Math.max(id + 1, Math.max(SymbolTable.global().size(), types.length * 2)));
+    }
 
+    private static int[] ensureCapacity(int[] since, int id){
+        if (id < since.length) {
+            return since;
+        }
+        return Arrays.copyOf(since, Math.max(id + 1, Math.max(SymbolTable.global().size(), since.length * 2)));
+    }
 
 }
-
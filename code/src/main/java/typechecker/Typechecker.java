@@ -1,6 +1,7 @@
 package typechecker;
 
 import codeGeneration.CompileException;
+import lexer.SymbolTable;
 import lexer.TokenType;
 import parser.declarations.Declaration;
 import parser.declarations.FunctionDeclaration;
@@ -11,9 +12,14 @@ import parser.types.*;
 import util.Node;
 import util.Visitor;
 
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
 
 
 public class Typechecker implements Visitor {
@@ -22,16 +28,40 @@ public class Typechecker implements Visitor {
     private final Type emptyListType = Types.emptyListType;
 
     private Environment env;
-    private HashMap<String, List<Type>> functionSignatures;
+    private HashMap<Integer, List<Type>> functionSignatures;
 
     private List<TypeError> errors;
 
+    private final Unifier unifier = new Unifier();
+
+    // Functions of which the body is known to typecheck from an earlier compilation
+    private Set<? extends Declaration> checkedBefore = Collections.emptySet();
+
     public Typechecker() {
         this.functionSignatures = new HashMap<>();
         this.errors = new LinkedList<>();
         this.env = new Environment();
     }
 
+    /**
+     * Typechecker for the function bodies of a program of which the signatures are collected already.
+     * @param env view of the global environment
+     * @param functionSignatures signatures of all functions in the program, only read
+     */
+    private Typechecker(Environment env, HashMap<Integer, List<Type>> functionSignatures) {
+        this.functionSignatures = functionSignatures;
+        this.errors = new LinkedList<>();
+        this.env = env;
+    }
+
+    /**
+     * The bodies of these functions are not checked again, only their signatures are added to the environment.
+     * @param checkedBefore functions that did not change since they typechecked without errors
+     */
+    public void setCheckedBefore(Set<? extends Declaration> checkedBefore) {
+        this.checkedBefore = checkedBefore;
+    }
+
     public boolean typecheck(Node ast) {
         ast.accept(this);
         return errors.isEmpty();
@@ -48,6 +78,92 @@ public class Typechecker implements Visitor {
         return correct;
     }
 
+    /**
+     * Typechecks a program in two phases. The global variables and the function signatures are checked from top to
+     * bottom first, then the function bodies are checked in parallel on the common ForkJoinPool. Every body is checked
+     * in a view of the global environment that only holds the declarations above it, so the same errors are found as
+     * with {@link #typecheck(List)}, and in the same order.
+     * @param declarations the top-level declarations of the program
+     * @return whether the program is type correct
+     */
+    public boolean typecheckParallel(List<? extends Declaration> declarations) {
+        List<List<TypeError>> diagnostics = new ArrayList<>(declarations.size());
+        List<TypeError> allErrors = errors;
+        for (int i = 0; i < declarations.size(); i++) {
+            Declaration d = declarations.get(i);
+            errors = new LinkedList<>();
+            env.setPosition(i);
+            if (d instanceof FunctionDeclaration) {
+                FunctionDeclaration f = (FunctionDeclaration) d;
+                if (!declareFunction(f)) {
+                    //the body of f still sees the earlier definition, the declarations below it see f
+                    env.setPosition(i + 1);
+                    env.putFunction(f.funName.id, new EnvironmentType(f.funType.returnType, true, true, false));
+                }
+            } else {
+                d.accept(this);
+            }
+            diagnostics.add(errors);
+        }
+        errors = allErrors;
+
+        int chunk = Math.max(1, declarations.size() / (4 * ForkJoinPool.getCommonPoolParallelism()));
+        ForkJoinPool.commonPool().invoke(new BodiesTask(this, declarations, diagnostics, chunk, 0, declarations.size()));
+
+        for (List<TypeError> declarationErrors : diagnostics) {
+            errors.addAll(declarationErrors);
+        }
+        printErrors();
+        return errors.isEmpty();
+    }
+
+    /**
+     * Checks the function bodies among the declarations [from, to), splitting the work in halves until it is small
+     * enough. Each chunk gets its own view of the global environment, and adds the errors of a declaration to the
+     * list of that declaration only.
+     */
+    private static class BodiesTask extends RecursiveAction {
+        private final Typechecker global;
+        private final List<? extends Declaration> declarations;
+        private final List<List<TypeError>> diagnostics;
+        private final int chunk;
+        private final int from;
+        private final int to;
+
+        BodiesTask(Typechecker global, List<? extends Declaration> declarations, List<List<TypeError>> diagnostics,
+                   int chunk, int from, int to) {
+            this.global = global;
+            this.declarations = declarations;
+            this.diagnostics = diagnostics;
+            this.chunk = chunk;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from > chunk) {
+                int middle = (from + to) >>> 1;
+                invokeAll(new BodiesTask(global, declarations, diagnostics, chunk, from, middle),
+                        new BodiesTask(global, declarations, diagnostics, chunk, middle, to));
+                return;
+            }
+            Typechecker worker = null;
+            for (int i = from; i < to; i++) {
+                if (!(declarations.get(i) instanceof FunctionDeclaration)
+                        || global.checkedBefore.contains(declarations.get(i))) {
+                    continue;
+                }
+                if (worker == null) {
+                    worker = new Typechecker(global.env.view(), global.functionSignatures);
+                }
+                worker.errors = diagnostics.get(i);
+                worker.env.setPosition(i);
+                worker.checkFunctionBody((FunctionDeclaration) declarations.get(i));
+            }
+        }
+    }
+
     private void error(String errorMessage, Node n) {
         errors.add(new TypeError(String.format("%s \n\tError occurred in:\n%s", errorMessage, n)));
     }
@@ -58,6 +174,13 @@ public class Typechecker implements Visitor {
         }
     }
 
+    /**
+     * @return the signature of the function if it is in scope, or null
+     */
+    private List<Type> getSignature(int id) {
+        return env.getFunction(id) == null ? null : functionSignatures.get(id);
+    }
+
     public String getAllErrors() {
         StringBuilder result = new StringBuilder();
         for (TypeError e : errors) {
@@ -81,13 +204,13 @@ public class Typechecker implements Visitor {
     public void visit(CallExpression e) {
         for (Expression exp : e.args)
             this.visit(exp);
-        List<Type> funArgs = functionSignatures.get(e.function_name.name);
+        List<Type> funArgs = getSignature(e.function_name.id);
         if (funArgs == null)
             error(String.format("Function %s was not defined.", e.function_name.name), e);
         else {
             if (funArgs.size() != e.args.size()) {
                 error(String.format("Number of arguments in function call do not match. \n\tExpected: %s\n\tActual: %s",
-                        functionSignatures.get(e.function_name.name).size(), e.args.size()), e);
+                        getSignature(e.function_name.id).size(), e.args.size()), e);
             } else {
                 for (int i = 0; i < funArgs.size(); i++) {
                     if (!funArgs.get(i).equals(e.args.get(i).getType()) &&
@@ -98,11 +221,11 @@ public class Typechecker implements Visitor {
                 }
             }
         }
-        if (env.getFunction(e.function_name.name) == null)
+        if (env.getFunction(e.function_name.id) == null)
             error(String.format("The function %s was not defined",
                     e.function_name.name), e);
         else
-            e.setType(env.getFunction(e.function_name.name).type);
+            e.setType(env.getFunction(e.function_name.id).type);
     }
 
     @Override
@@ -112,14 +235,14 @@ public class Typechecker implements Visitor {
 
     @Override
     public void visit(IdentifierExpression e) {
-        EnvironmentType idType = env.get(e.name);
+        EnvironmentType idType = env.get(e.id);
         if (idType == null)
             error(String.format("Variable %s out of scope or undefined.", e.name), e);
         else {
             if (idType.isVarType) {
-                e.setType(((VarType) env.get(e.name).type).type);
+                e.setType(((VarType) env.get(e.id).type).type);
             } else
-                e.setType(env.get(e.name).type);
+                e.setType(env.get(e.id).type);
         }
     }
 
@@ -374,11 +497,11 @@ public class Typechecker implements Visitor {
             IdentifierExpression id = null;
             if(s.name instanceof IdentifierExpression){
                 id = (IdentifierExpression) s.name;
-                EnvironmentType envT = env.get(id.name);
+                EnvironmentType envT = env.get(id.id);
                 if(envT == null)
                     variableType = null;
                 else
-                variableType = env.get(id.name).type;
+                variableType = env.get(id.id).type;
             }
             if(s.name instanceof PostfixExpression){
                 this.visit(s.name);
@@ -417,7 +540,7 @@ public class Typechecker implements Visitor {
 				}*/
             } else if (variableType instanceof VarType) {
                 s.name.setType(Types.varType(s.right.getType()));
-                env.put(id.name, new EnvironmentType(s.name.getType(), env.get(id.name).isGlobal, env.get(id.name).isFunction, true));
+                env.put(id.id, new EnvironmentType(s.name.getType(), env.get(id.id).isGlobal, env.get(id.id).isFunction, true));
                 s.setType(Types.voidType);
                 return;
             }
@@ -439,13 +562,13 @@ public class Typechecker implements Visitor {
     public void visit(CallStatement s) {
         for (Expression exp : s.args)
             this.visit(exp);
-        List<Type> funArgs = functionSignatures.get(s.function_name.name);
+        List<Type> funArgs = getSignature(s.function_name.id);
         if (funArgs == null)
             error("Function " + s.function_name.name + " was not defined.", s);
         else {
             if (funArgs.size() != s.args.size()) {
                 error("Number of arguments in function call do not match.\nExpected: " +
-                        functionSignatures.get(s.function_name.name).size() +
+                        getSignature(s.function_name.id).size() +
                         " and received: " + s.args.size(), s);
             } else {
                 for (int i = 0; i < funArgs.size(); i++) {
@@ -457,7 +580,7 @@ public class Typechecker implements Visitor {
                 }
             }
         }
-        s.setType(env.getFunction(s.function_name.name).type);
+        s.setType(env.getFunction(s.function_name.id).type);
     }
 
     @Override
@@ -533,18 +656,37 @@ public class Typechecker implements Visitor {
 
     @Override
     public void visit(FunctionDeclaration d) {
-        //Backup original environment to fix let binding
-        Environment backup = Environment.deepCopy(env);
+        boolean declared = declareFunction(d);
+        if (!checkedBefore.contains(d)) {
+            checkFunctionBody(d);
+        }
+        if (!declared) {
+            //a function that is defined again replaces the earlier one for the functions below it
+            env.putFunction(d.funName.id, new EnvironmentType(d.funType.returnType, true, true, false));
+        }
+    }
 
+    /**
+     * Adds the signature of the function to the environment, the body is checked by {@link #checkFunctionBody}.
+     * @return false if a function with the same name was defined already
+     */
+    private boolean declareFunction(FunctionDeclaration d) {
         //set functiontype
         d.setType(d.funType.returnType);
         //Functions are always global
-        if (env.getFunction(d.funName.name) != null) {
+        if (env.getFunction(d.funName.id) != null) {
             error(String.format("The function %s is already defined", d.funName.name), d);
         } else {
-            env.putFunction(d.funName.name, new EnvironmentType(d.funType.returnType, true, true, false));
-            functionSignatures.put(d.funName.name, d.funType.argsTypes);
+            env.putFunction(d.funName.id, new EnvironmentType(d.funType.returnType, true, true, false));
+            functionSignatures.put(d.funName.id, d.funType.argsTypes);
+            return true;
         }
+        return false;
+    }
+
+    private void checkFunctionBody(FunctionDeclaration d) {
+        //Everything the function binds is undone when its scope is exited
+        env.enterScope();
 
         //check if arguments and argument types match
         if (d.args.size() != d.funType.argsTypes.size()) {
@@ -558,18 +700,18 @@ public class Typechecker implements Visitor {
         if (!d.args.isEmpty()) {
             for (int argsCount = 0; argsCount < d.args.size(); argsCount++) {
                 IdentifierExpression id = d.args.get(argsCount);
-                if (env.get(id.name) != null) {
-                    if (!env.get(id.name).isGlobal)
+                if (env.get(id.id) != null) {
+                    if (!env.get(id.id).isGlobal)
                         error(String.format("The identifier %s is already in the list of parameters of this function", id.name), d);
                 } else if (argsCount < d.funType.argsTypes.size())
                     //Arguments are treated as local variable, therefore not global
                     if (d.funType.argsTypes.get(argsCount) instanceof VarType) {
-                        env.put(id.name, new EnvironmentType(d.funType.argsTypes.get(argsCount), false, false, true));
+                        env.put(id.id, new EnvironmentType(d.funType.argsTypes.get(argsCount), false, false, true));
                     } else
-                        env.put(id.name, new EnvironmentType(d.funType.argsTypes.get(argsCount), false, false, false));
+                        env.put(id.id, new EnvironmentType(d.funType.argsTypes.get(argsCount), false, false, false));
                 else
                     //TODO:check this
-                    env.put(id.name, null);
+                    env.put(id.id, null);
             }
         }
 
@@ -588,9 +730,7 @@ public class Typechecker implements Visitor {
                         "\n\tExpected: %s \n\tActual: %s", d.funType.returnType, returnType), d);
         }
 
-        env = backup;
-        //add function signature to environment, so other functions below it can still use it.
-        env.putFunction(d.funName.name, new EnvironmentType(d.funType.returnType, true, true, false));
+        env.exitScope();
     }
 
     @Override
@@ -622,20 +762,20 @@ public class Typechecker implements Visitor {
         }
         //}
         if (d.varType.equals(d.right.getType()) || d.varType instanceof VarType) {
-            if (env.get(d.left.name) != null) {
-                if ((env.get(d.left.name).isGlobal && d.isGlobal) || ((!env.get(d.left.name).isGlobal && !d.isGlobal)))
+            if (env.get(d.left.id) != null) {
+                if ((env.get(d.left.id).isGlobal && d.isGlobal) || ((!env.get(d.left.id).isGlobal && !d.isGlobal)))
                     error(String.format("Variable %s is already defined!", d.left.name), d);
-                else if (env.get(d.left.name).isGlobal && !d.isGlobal) {
+                else if (env.get(d.left.id).isGlobal && !d.isGlobal) {
                     if (d.varType instanceof VarType) {
-                        env.put(d.left.name, new EnvironmentType(d.varType, false, false, true));
+                        env.put(d.left.id, new EnvironmentType(d.varType, false, false, true));
                     } else
-                        env.put(d.left.name, new EnvironmentType(d.right.getType(), false, false, false));
+                        env.put(d.left.id, new EnvironmentType(d.right.getType(), false, false, false));
                 }
             } else {
                 if (d.varType instanceof VarType) {
-                    env.put(d.left.name, new EnvironmentType(d.varType, false, false, true));
+                    env.put(d.left.id, new EnvironmentType(d.varType, false, false, true));
                 } else
-                    env.put(d.left.name, new EnvironmentType(d.right.getType(), d.isGlobal, false, false));
+                    env.put(d.left.id, new EnvironmentType(d.right.getType(), d.isGlobal, false, false));
             }
         } else
             error(String.format("\nVariable %s, of type \n%s cannot have an assignment of type: \n%s.",
@@ -695,7 +835,7 @@ public class Typechecker implements Visitor {
 
         // Any : [] -> [Any]
         if (listTypeRight.listType == emptyListType) {
-            e.setType(new ListType(e.left.getType()));
+            e.setType(Types.listType(e.left.getType()));
             return;
         }
         //If rhs has list type of left.type, it's fine
@@ -716,149 +856,22 @@ public class Typechecker implements Visitor {
             error(String.format("LHS and RHS of cons expression are incompatible\n\tLHS: %s\n\tRHS: %s", e.left.getType(), e.right.getType()), e);
     }
 
-    private boolean checkEmptyListTypeNull(Type e) {
-        if (e instanceof TupleType) {
-            Type left = ((TupleType) e).left;
-            Type right = ((TupleType) e).right;
-            return (checkEmptyListTypeNull(left) || checkEmptyListTypeNull(right));
-        } else if (e instanceof ListType) {
-            Type listType = ((ListType) e).listType;
-            return listType == emptyListType || checkEmptyListTypeNull(listType);
-        } else return e instanceof EmptyListType;
-    }
-
-
+    /**
+     * @return whether both types are equal once the element types of their empty lists are filled in
+     */
     private boolean isCompatible(Type left, Type right, Expression e) {
-        if (checkEmptyListTypeNull(left) || checkEmptyListTypeNull(right)) {
-
-            if (left instanceof ListType && right instanceof ListType) {
-                return isCompatible(((ListType) left).listType, ((ListType) right).listType, e);
-
-            } else {
-                return isCompatibleCheck(left, right, e);
-            }
-        } else {
-            return isCompatibleCheck2(left, right);
-        }
-    }
-
-    private boolean isCompatibleCheck2(Type left, Type right) {
-        if (left == null || right == null)
-            return false;
-        else return left.equals(right);
-    }
-
-    private boolean isCompatibleCheck(Type left, Type right, Expression e) {
-        if (((left instanceof TupleType)) && ((right instanceof TupleType))) {
-
-            return isNestedCompatible(((TupleType) left).left, ((TupleType) right).left, e) &&
-                    isNestedCompatible(((TupleType) left).right, ((TupleType) right).right, e);
-
-        } else if (right == emptyListType) {
-            return true;
-
-        } else
-            return left == emptyListType;
+        return unifier.unifies(left, right);
     }
 
-    private boolean isNestedCompatible(Type left, Type right, Expression e) {
-        //tobeFixed = leftTYPE
-
-        if (checkEmptyListTypeNull(left) || checkEmptyListTypeNull(right)) {
-
-            if (left instanceof ListType && right instanceof ListType) {
-                if (((ListType) left).listType == emptyListType) {
-                    return true;
-                }
-                if (((ListType) left).listType instanceof ListType) {
-                    if (((ListType) ((ListType) left).listType).listType == emptyListType) {
-                        return true;
-                    }
-                }
-                if (((ListType) right).listType == emptyListType) {
-                    return true;
-                }
-                if (((ListType) right).listType instanceof ListType) {
-                    if (((ListType) ((ListType) right).listType).listType == emptyListType) {
-                        return true;
-                    }
-                }
-                return isNestedCompatible(((ListType) left).listType, ((ListType) right).listType, e);
-
-            } else return isCompatibleCheck(left, right, e);
-        } else return isCompatibleCheck2(left, right);
-
-
-    }
-
-
+    /**
+     * @return the type both types are equal to once the element types of their empty lists are filled in, or null
+     */
     private Type inferedTyped(Type left, Type right, Expression e) {
-        //tobeFixed = leftTYPE
-
-        if (checkEmptyListTypeNull(left) || checkEmptyListTypeNull(right)) {
-
-            if (left instanceof ListType && right instanceof ListType) {
-                return Types.listType(inferedTyped(((ListType) left).listType, ((ListType) right).listType, e));
-
-            } else if (((left instanceof TupleType)) && ((right instanceof TupleType))) {
-                return Types.tupleType(inferedNestedTyped(((TupleType) left).left, ((TupleType) right).left, e),
-                        inferedNestedTyped(((TupleType) left).right, ((TupleType) right).right, e));
-            }
-
-            return null;
-
-        } else return checkType(left, right);
-
-
-    }
-
-    private Type inferedNestedTyped(Type left, Type right, Expression e) {
-        //tobeFixed = leftTYPE
-
-        if (checkEmptyListTypeNull(left) || checkEmptyListTypeNull(right)) {
-
-            if (left instanceof ListType && right instanceof ListType) {
-                return Types.listType(inferedNestedTyped(((ListType) left).listType, ((ListType) right).listType, e));
-
-            } else if (((left instanceof TupleType)) && ((right instanceof TupleType))) {
-
-                return Types.tupleType(inferedNestedTyped(((TupleType) left).left, ((TupleType) right).left, e),
-                        inferedNestedTyped(((TupleType) left).right, ((TupleType) right).right, e));
-
-            } else if (right == emptyListType) {
-                return left;
-
-            } else if (left == emptyListType) {
-                return right;
-
-            } else if (right instanceof ListType) {
-                if (((ListType) right).listType == emptyListType)
-                    return left;
-
-            } else if (left instanceof ListType) {
-                if (((ListType) left).listType == emptyListType)
-                    return right;
-
-            }
-            //error("Typechecker: invalid list types",e );
-            return null;
-
-        } else {
-            return checkType(left, right);
-        }
-    }
-
-    private Type checkType(Type left, Type right) {
-        if (left == null || right == null)
-            return null;
-        else if (left.equals(right)) {
-            return left;
-        } else
-            return null;
+        return unifier.unify(left, right);
     }
 
     public Type getVariableType(String name) {
-        return env.get(name).type;
+        return env.get(SymbolTable.global().intern(name)).type;
     }
 
     public Environment getEnvironment() {
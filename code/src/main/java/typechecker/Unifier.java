@@ -0,0 +1,193 @@
+package typechecker;
+
+import parser.types.*;
+
+/**
+ * Unification of types in which the element type of an empty list is still unknown.
+ * Every {@link EmptyListType} in the types that are unified is a fresh type variable. The variables are kept in a
+ * union-find structure with path compression and union by rank, so unifying two types takes time nearly linear in
+ * their size. Afterwards the variables that are still unbound are turned back into {@link EmptyListType}.
+ */
+public class Unifier {
+
+    private static final int VARIABLE = 0;
+    private static final int CONSTANT = 1;
+    private static final int LIST = 2;
+    private static final int TUPLE = 3;
+
+    /**
+     * Node in the union-find structure. A variable points to its parent until it is the representative of its class,
+     * the representative holds the structure that the whole class is bound to.
+     */
+    private static final class Term {
+        Term parent = this;
+        int rank = 0;
+        int kind;
+        // Int, Bool, Char, Void or var type for a constant
+        Type constant;
+        // Element of a list, or the two sides of a tuple
+        Term left;
+        Term right;
+
+        Term(int kind) {
+            this.kind = kind;
+        }
+    }
+
+    /**
+     * @param left type
+     * @param right type
+     * @return whether both types can be made equal by filling in the element types of empty lists
+     */
+    public boolean unifies(Type left, Type right) {
+        return unify(left, right) != null;
+    }
+
+    /**
+     * @param left type
+     * @param right type
+     * @return the most specific type both types are an instance of, or null if there is none
+     */
+    public Type unify(Type left, Type right) {
+        if (left == null || right == null) {
+            return null;
+        }
+        if (left == right) {
+            return left;
+        }
+        Term term = toTerm(left, false);
+        if (!unify(term, toTerm(right, false))) {
+            return null;
+        }
+        return toType(term);
+    }
+
+    private static Term toTerm(Type type, boolean inTuple) {
+        if (type instanceof EmptyListType) {
+            return new Term(VARIABLE);
+        } else if (type instanceof ListType) {
+            Term term = new Term(LIST);
+            Type element = ((ListType) type).listType;
+            if (inTuple && element instanceof ListType && ((ListType) element).listType instanceof EmptyListType) {
+                // Inside a tuple the typechecker has always accepted [[]] for a list of any type, like []
+                term.left = new Term(VARIABLE);
+            } else {
+                term.left = toTerm(element, inTuple);
+            }
+            return term;
+        } else if (type instanceof TupleType) {
+            Term term = new Term(TUPLE);
+            term.left = toTerm(((TupleType) type).left, true);
+            term.right = toTerm(((TupleType) type).right, true);
+            return term;
+        }
+        // The other types are interned, so they are equal exactly when they are the same object
+        Term term = new Term(CONSTANT);
+        term.constant = type;
+        return term;
+    }
+
+    private static Type toType(Term term) {
+        term = find(term);
+        switch (term.kind) {
+            case VARIABLE:
+                return Types.emptyListType;
+            case LIST:
+                return Types.listType(toType(term.left));
+            case TUPLE:
+                return Types.tupleType(toType(term.left), toType(term.right));
+            default:
+                return term.constant;
+        }
+    }
+
+    private static Term find(Term term) {
+        Term root = term;
+        while (root.parent != root) {
+            root = root.parent;
+        }
+        // Path compression
+        while (term != root) {
+            Term next = term.parent;
+            term.parent = root;
+            term = next;
+        }
+        return root;
+    }
+
+    private static boolean unify(Term a, Term b) {
+        a = find(a);
+        b = find(b);
+        if (a == b) {
+            return true;
+        }
+        if (a.kind == VARIABLE || b.kind == VARIABLE) {
+            Term variable = a.kind == VARIABLE ? a : b;
+            Term other = variable == a ? b : a;
+            if (other.kind != VARIABLE && occurs(variable, other)) {
+                return false;
+            }
+            union(variable, other);
+            return true;
+        }
+        if (a.kind != b.kind) {
+            return false;
+        }
+        switch (a.kind) {
+            case CONSTANT:
+                return a.constant == b.constant;
+            case LIST:
+                union(a, b);
+                return unify(a.left, b.left);
+            default:
+                union(a, b);
+                return unify(a.left, b.left) && unify(a.right, b.right);
+        }
+    }
+
+    /**
+     * Links the class of the variable to the class of the other term, which keeps the structure of the other term.
+     */
+    private static void union(Term variable, Term other) {
+        if (variable.rank > other.rank) {
+            // Attach the smaller tree below the larger one, but keep the structure of other as representative
+            swapContents(variable, other);
+            other.parent = variable;
+        } else {
+            variable.parent = other;
+            if (variable.rank == other.rank) {
+                other.rank++;
+            }
+        }
+    }
+
+    private static void swapContents(Term a, Term b) {
+        int kind = a.kind;
+        Type constant = a.constant;
+        Term left = a.left;
+        Term right = a.right;
+        a.kind = b.kind;
+        a.constant = b.constant;
+        a.left = b.left;
+        a.right = b.right;
+        b.kind = kind;
+        b.constant = constant;
+        b.left = left;
+        b.right = right;
+    }
+
+    private static boolean occurs(Term variable, Term term) {
+        term = find(term);
+        if (term == variable) {
+            return true;
+        }
+        switch (term.kind) {
+            case LIST:
+                return occurs(variable, term.left);
+            case TUPLE:
+                return occurs(variable, term.left) || occurs(variable, term.right);
+            default:
+                return false;
+        }
+    }
+}
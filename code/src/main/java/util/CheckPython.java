@@ -7,7 +7,18 @@ import java.util.ArrayList;
 import java.util.List;
 
 public class CheckPython {
-    public static String getPythonVersion(){
+    // Every check starts a Python process, so the answers are kept for the rest of the run
+    private static String pythonVersion;
+    private static Boolean splTypesInstalled;
+
+    public static synchronized String getPythonVersion(){
+        if(pythonVersion == null){
+            pythonVersion = findPythonVersion();
+        }
+        return pythonVersion;
+    }
+
+    private static String findPythonVersion(){
         if(pythonVersionExists("python3")){
             return "python3";
         } else if(pythonVersionExists("python")){
@@ -40,7 +51,14 @@ public class CheckPython {
         }
     }
 
-    public static boolean spl_types_installed(){
+    public static synchronized boolean spl_types_installed(){
+        if(splTypesInstalled == null){
+            splTypesInstalled = findSplTypes();
+        }
+        return splTypesInstalled;
+    }
+
+    private static boolean findSplTypes(){
         String python = getPythonVersion();
         try {
             String[] command = {python, "-c", "from spl_types.lists import Node"};//"\"; print('succes')\""};
@@ -0,0 +1,160 @@
+package util;
+
+import parser.declarations.Declaration;
+import parser.declarations.FunctionDeclaration;
+
+import java.io.*;
+import java.util.*;
+
+/**
+ * On-disk cache of the code generated for the functions of a program, so that a recompilation only typechecks and
+ * generates code for the functions that changed since the previous compilation.
+ * <p>
+ * A function is found in the cache by the MD5 hash of its own text and of the interface of the program: the global
+ * variables and the signatures of all functions, in order. A function whose text and surroundings did not change
+ * typechecks exactly as before and compiles to the same code. The interface covers everything a function can see, so
+ * any change to a global or a signature compiles all functions again, while an edit inside a body only compiles that
+ * function. The text is taken from the AST, so changes to comments and layout do not invalidate anything. It is
+ * printed with every operator expression between parentheses, as (x + 1) * 2 and x + 1 * 2 print the same otherwise.
+ * <p>
+ * What a fragment holds is up to the code generator that produced it. The cache only stores and returns its lines.
+ * The cache is made for one code generator and one version of the code it generates, so a build whose code generator
+ * changed does not reuse fragments of an older build.
+ */
+public class CompilationCache {
+
+    private static final int VERSION = 6;
+
+    private final String filepath;
+    private final String target;
+    private final int codeVersion;
+
+    // Fragments of the previous compilation, by key
+    private final Map<String, List<String>> previous;
+    // Fragments of this compilation, by key. Only these are saved, so functions that are gone are dropped.
+    private final Map<String, List<String>> current = new HashMap<>();
+    // Key of each function of this compilation
+    private final Map<Declaration, String> keys = new IdentityHashMap<>();
+
+    private CompilationCache(String filepath, String target, int codeVersion, Map<String, List<String>> previous) {
+        this.filepath = filepath;
+        this.target = target;
+        this.codeVersion = codeVersion;
+        this.previous = previous;
+    }
+
+    /**
+     * Reads the cache of a previous compilation, if it exists and was made for the same target, and computes the keys
+     * of the functions in the program.
+     * @param filepath file the cache is kept in
+     * @param target name of the code generator, the fragments of other code generators are not used
+     * @param codeVersion version of the code the code generator makes, the fragments of other versions are not used
+     * @param nodes the declarations of the program that is compiled
+     * @return the cache
+     */
+    public static CompilationCache load(String filepath, String target, int codeVersion, List<Declaration> nodes) {
+        CompilationCache cache = new CompilationCache(filepath, target, codeVersion,
+                read(filepath, target, codeVersion));
+        StringBuilder programInterface = new StringBuilder();
+        for (Declaration d : nodes) {
+            if (d instanceof FunctionDeclaration) {
+                FunctionDeclaration f = (FunctionDeclaration) d;
+                programInterface.append(f.funName.name).append(" :: ").append(f.funType).append('\n');
+            } else {
+                programInterface.append(PrettyPrinter.printParenthesized(d)).append('\n');
+            }
+        }
+        String interfaceHash = Hashing.getMD5Hash(programInterface.toString());
+        for (Declaration d : nodes) {
+            if (d instanceof FunctionDeclaration) {
+                cache.keys.put(d, Hashing.getMD5Hash(interfaceHash + '\n' + PrettyPrinter.printParenthesized(d)));
+            }
+        }
+        return cache;
+    }
+
+    private static Map<String, List<String>> read(String filepath, String target, int codeVersion) {
+        Map<String, List<String>> fragments = new HashMap<>();
+        File file = new File(filepath);
+        if (!file.isFile()) {
+            return fragments;
+        }
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            if (in.readInt() != VERSION || !in.readUTF().equals(target) || in.readInt() != codeVersion) {
+                return fragments;
+            }
+            int count = in.readInt();
+            for (int i = 0; i < count; i++) {
+                String key = in.readUTF();
+                int lines = in.readInt();
+                List<String> fragment = new ArrayList<>(lines);
+                for (int j = 0; j < lines; j++) {
+                    fragment.add(in.readUTF());
+                }
+                fragments.put(key, fragment);
+            }
+            return fragments;
+        } catch (IOException e) {
+            // A damaged cache is ignored, everything is compiled again
+            return new HashMap<>();
+        }
+    }
+
+    /**
+     * @return the functions of the program that have a fragment from the previous compilation
+     */
+    public Set<Declaration> reusable() {
+        Set<Declaration> reusable = Collections.newSetFromMap(new IdentityHashMap<>());
+        for (Map.Entry<Declaration, String> entry : keys.entrySet()) {
+            if (previous.containsKey(entry.getValue())) {
+                reusable.add(entry.getKey());
+            }
+        }
+        return reusable;
+    }
+
+    /**
+     * @param d function of the program
+     * @return the fragment generated for the function in the previous compilation, or null
+     */
+    public List<String> get(Declaration d) {
+        String key = keys.get(d);
+        List<String> fragment = key == null ? null : previous.get(key);
+        if (fragment != null) {
+            current.put(key, fragment);
+        }
+        return fragment;
+    }
+
+    /**
+     * @param d function of the program
+     * @param fragment the code generated for the function
+     */
+    public void put(Declaration d, List<String> fragment) {
+        String key = keys.get(d);
+        if (key != null) {
+            current.put(key, fragment);
+        }
+    }
+
+    /**
+     * Writes the fragments of this compilation to disk. Only call this when the program typechecked without errors,
+     * because the cached functions are not checked again.
+     * @throws IOException if the cache could not be written
+     */
+    public void save() throws IOException {
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(filepath)))) {
+            out.writeInt(VERSION);
+            out.writeUTF(target);
+            out.writeInt(codeVersion);
+            out.writeInt(current.size());
+            for (Map.Entry<String, List<String>> entry : current.entrySet()) {
+                out.writeUTF(entry.getKey());
+                out.writeInt(entry.getValue().size());
+                for (String line : entry.getValue()) {
+                    out.writeUTF(line);
+                }
+            }
+        }
+    }
+}
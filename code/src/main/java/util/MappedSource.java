@@ -0,0 +1,95 @@
+package util;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Read-only view on a memory-mapped source file.
+ * SPL programs are plain ASCII in practice, in which case every byte is a character and the lexer reads straight from
+ * the mapped file without any copy on the heap. Files containing other bytes are decoded as UTF-8 instead.
+ */
+public class MappedSource implements CharSequence {
+    private final ByteBuffer buffer;
+    private final int length;
+
+    private MappedSource(ByteBuffer buffer, int length) {
+        this.buffer = buffer;
+        this.length = length;
+    }
+
+    /**
+     * Maps the file at the given path into memory.
+     * @param path path of the source file
+     * @return a MappedSource when the file is ASCII, a decoded CharBuffer otherwise
+     * @throws IOException when the file can not be opened or mapped
+     */
+    public static CharSequence map(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size > Integer.MAX_VALUE) {
+                throw new IOException(String.format("%s is too large to compile (%d bytes).", path, size));
+            }
+            // The mapping stays valid after the channel is closed
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            if (isAscii(buffer)) {
+                return new MappedSource(buffer, (int) size);
+            }
+            return StandardCharsets.UTF_8.decode(buffer);
+        }
+    }
+
+    private static boolean isAscii(ByteBuffer buffer) {
+        int limit = buffer.limit();
+        int i = 0;
+        for (; i + 8 <= limit; i += 8) {
+            if ((buffer.getLong(i) & 0x8080808080808080L) != 0) {
+                return false;
+            }
+        }
+        for (; i < limit; i++) {
+            if (buffer.get(i) < 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public int length() {
+        return length;
+    }
+
+    @Override
+    public char charAt(int index) {
+        if (index < 0 || index >= length) {
+            throw new IndexOutOfBoundsException(String.format("Index %d out of bounds for length %d", index, length));
+        }
+        return (char) buffer.get(index);
+    }
+
+    /**
+     * Copies the characters to a String, as the subsequences the lexer asks for end up in a String anyway.
+     */
+    @Override
+    public CharSequence subSequence(int start, int end) {
+        if (start < 0 || end > length || start > end) {
+            throw new IndexOutOfBoundsException(String.format("Range [%d, %d) out of bounds for length %d",
+                    start, end, length));
+        }
+        byte[] bytes = new byte[end - start];
+        for (int i = 0; i < bytes.length; i++) {
+            bytes[i] = buffer.get(start + i);
+        }
+        return new String(bytes, StandardCharsets.US_ASCII);
+    }
+
+    @Override
+    public String toString() {
+        return subSequence(0, length).toString();
+    }
+}
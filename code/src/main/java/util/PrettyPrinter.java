@@ -17,14 +17,47 @@ import java.util.List;
 public class PrettyPrinter implements Visitor {
     private StringBuilder builder;
     private String prefix;
+    // Whether every operator expression is put between parentheses, so that the grouping is kept in the text
+    private final boolean parenthesize;
 
     public String getResultString() {
         return builder.toString();
     }
 
     public PrettyPrinter() {
+        this(false);
+    }
+
+    /**
+     * @param parenthesize whether to put every operator expression between parentheses. The output then tells apart
+     *                     ASTs that only differ in grouping, like (a + b) * c and a + b * c, which print the same
+     *                     otherwise.
+     */
+    public PrettyPrinter(boolean parenthesize) {
         builder = new StringBuilder();
         prefix = "";
+        this.parenthesize = parenthesize;
+    }
+
+    /**
+     * @return the node printed with every operator expression between parentheses
+     */
+    public static String printParenthesized(Node n) {
+        PrettyPrinter pp = new PrettyPrinter(true);
+        Node.visitNode(pp, n);
+        return pp.getResultString();
+    }
+
+    private void open() {
+        if (parenthesize) {
+            builder.append('(');
+        }
+    }
+
+    private void close() {
+        if (parenthesize) {
+            builder.append(')');
+        }
     }
 
     private void printToken(TokenType t) {
@@ -354,23 +387,29 @@ public class PrettyPrinter implements Visitor {
 
     @Override
     public void visit(OperatorExpression e) {
+        open();
         this.visit(e.left);
         printToken(e.operator);
         this.visit(e.right);
+        close();
     }
 
     @Override
     public void visit(PostfixExpression e) {
+        open();
         this.visit(e.left);
         printToken(e.operator);
+        close();
     }
 
     @Override
     public void visit(PrefixExpression e) {
+        open();
         printToken(e.operator);
         // However, we have to remove the space between the operator and the expression
         builder.setLength(builder.length() - 1);
         this.visit(e.right);
+        close();
     }
 
     @Override
@@ -1,8 +1,10 @@
 package util;
 
+import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
 import java.nio.file.Paths;
 import java.util.stream.Stream;
 
@@ -26,4 +28,22 @@ public class ReadSPL {
         }
         return contentBuilder.toString();
     }
+
+    /**
+     * Memory-maps an SPL file so the lexer can read it without first copying it into a String.
+     * @param filePath path of the SPL file
+     * @return the content of the file
+     * @throws FileNotFoundException when the file does not exist
+     * @throws IOException when the file can not be read
+     */
+    public static CharSequence mapFile(String filePath) throws IOException {
+        try {
+            return MappedSource.map(Paths.get(filePath));
+        } catch (NoSuchFileException e) {
+            // Reported like a missing file was before the file was mapped
+            FileNotFoundException notFound = new FileNotFoundException(filePath);
+            notFound.initCause(e);
+            throw notFound;
+        }
+    }
 }
@@ -0,0 +1,141 @@
+import lexer.Lexer;
+import org.junit.Test;
+import optimizer.AstOptimizer;
+import parser.Parser;
+import parser.declarations.Declaration;
+import parser.expressions.BooleanExpression;
+import parser.expressions.Expression;
+import parser.expressions.IntegerExpression;
+import typechecker.Typechecker;
+
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class AstOptimizerTest {
+
+    private Expression optimizeExpression(String expression) {
+        Expression e = new Parser(new Lexer(expression).tokenize()).parseExpression();
+        assertTrue(new Typechecker().typecheck(e));
+        return new AstOptimizer().optimize(e);
+    }
+
+    private List<Declaration> optimizeProgram(String program) {
+        List<Declaration> nodes = new Parser(new Lexer(program).tokenizeStream()).parseSPL();
+        assertTrue(new Typechecker().typecheck(nodes));
+        new AstOptimizer().optimize(nodes);
+        return nodes;
+    }
+
+    @Test
+    public void testFoldConstants() {
+        assertEquals(new IntegerExpression(7), optimizeExpression("2 * 3 + 1"));
+        assertEquals(new IntegerExpression(-5), optimizeExpression("-(2 + 3)"));
+        assertEquals(new IntegerExpression(1), optimizeExpression("7 % 3"));
+        assertEquals(new BooleanExpression(true), optimizeExpression("1 + 1 == 2"));
+        assertEquals(new BooleanExpression(false), optimizeExpression("'a' > 'b'"));
+        assertEquals(new BooleanExpression(true), optimizeExpression("!False && (True || False)"));
+        assertEquals(new BooleanExpression(true), optimizeExpression("isEmpty([])"));
+        assertEquals(new IntegerExpression(1), optimizeExpression("(1, 2).fst"));
+    }
+
+    @Test
+    public void testFoldedExpressionsAreTyped() {
+        assertEquals("Int", optimizeExpression("2 * 3").getType().toString());
+        assertEquals("Bool", optimizeExpression("2 < 3").getType().toString());
+    }
+
+    @Test
+    public void testNoFoldingWhenBackendsDiffer() {
+        // Division rounds differently in the SSM and Python, and Python integers do not overflow
+        assertEquals("7 / -2", optimizeExpression("7 / -2").toString());
+        assertEquals("2147483647 + 1", optimizeExpression("2147483647 + 1").toString());
+        // Adding characters makes a string in Python
+        assertEquals("'a' + 'b'", optimizeExpression("'a' + 'b'").toString());
+        assertEquals("1 / 0", optimizeExpression("1 / 0").toString());
+    }
+
+    @Test
+    public void testSimplifyOperations() {
+        List<Declaration> nodes = optimizeProgram("f(x, b) :: Int Bool -> Int {\n" +
+                "    Int y = x * 1 + 0;\n" +
+                "    Bool c = !!b && True;\n" +
+                "    Int z = 0 * x;\n" +
+                "    x = x;\n" +
+                "    return y / 1 - 0;\n" +
+                "}");
+        assertEquals("f(x, b) :: Int Bool -> Int {\n" +
+                "\tInt y = x;\n" +
+                "\tBool c = b;\n" +
+                "\tInt z = 0;\n" +
+                "\treturn y;\n" +
+                "}", nodes.get(0).toString());
+    }
+
+    @Test
+    public void testKeepOperandsWithEffects() {
+        List<Declaration> nodes = optimizeProgram("f(x) :: Int -> Int {\n" +
+                "    print(x);\n" +
+                "    return x;\n" +
+                "}\n" +
+                "main() :: -> Void {\n" +
+                "    [Int] xs = [];\n" +
+                "    print(0 * f(1));\n" +
+                "    print(f(2) == 0 || True);\n" +
+                "    print(xs.hd * 0);\n" +
+                "    print(False && f(3) == 0);\n" +
+                "}");
+        assertEquals("main() ::  -> Void {\n" +
+                "\t[Int] xs = [];\n" +
+                "\tprint(0 * f(1));\n" +
+                "\tprint(f(2) == 0 || True);\n" +
+                "\tprint(xs.hd * 0);\n" +
+                "\tprint(False);\n" +
+                "}", nodes.get(1).toString());
+    }
+
+    @Test
+    public void testRemoveDeadBranches() {
+        List<Declaration> nodes = optimizeProgram("f(x) :: Int -> Int {\n" +
+                "    if (1 < 2) {\n" +
+                "        print(x);\n" +
+                "    } else {\n" +
+                "        print(2);\n" +
+                "    }\n" +
+                "    while (x > 1 && False) {\n" +
+                "        print(3);\n" +
+                "    }\n" +
+                "    if (x == 1) {\n" +
+                "        if (False) {\n" +
+                "            print(4);\n" +
+                "        }\n" +
+                "    } else {\n" +
+                "        print(5);\n" +
+                "    }\n" +
+                "    return x;\n" +
+                "    print(6);\n" +
+                "}");
+        // A conditional with only an else part is turned around, the SSM needs code in the then part
+        assertEquals("f(x) :: Int -> Int {\n" +
+                "\tprint(x);\n" +
+                "\tif( !x == 1) {\n" +
+                "\t\tprint(5);\n" +
+                "\t}\n" +
+                "\treturn x;\n" +
+                "}", nodes.get(0).toString());
+    }
+
+    @Test
+    public void testFunctionsKeepTheirIdentity() {
+        String program = "Int g = 1 + 2;\nmain() :: -> Void {\n    print(g * 1);\n}";
+        List<Declaration> nodes = new Parser(new Lexer(program).tokenizeStream()).parseSPL();
+        Declaration main = nodes.get(1);
+        assertTrue(new Typechecker().typecheck(nodes));
+        new AstOptimizer().optimize(nodes);
+        assertSame(main, nodes.get(1));
+        assertEquals("Int g = 3;\n", nodes.get(0).toString());
+        assertEquals("main() ::  -> Void {\n\tprint(g);\n}", nodes.get(1).toString());
+    }
+}
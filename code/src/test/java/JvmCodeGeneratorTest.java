@@ -0,0 +1,137 @@
+import codeGeneration.CompileException;
+import codeGeneration.jvm.CodeGenerator;
+import codeGeneration.jvm.ProgramLoader;
+import codeGeneration.ssm.Machine;
+import lexer.Lexer;
+import org.junit.Test;
+import parser.Parser;
+import parser.declarations.Declaration;
+import typechecker.Typechecker;
+import util.ReadSPL;
+
+import java.io.BufferedReader;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class JvmCodeGeneratorTest {
+
+    private final String rootFolder = "./src/test/resources/splExamples/";
+
+    private String runSPL(String program, String input) throws IOException {
+        Lexer l = new Lexer(program);
+        Parser p = new Parser(l.tokenize());
+        List<Declaration> nodes = p.parseSPL();
+        Typechecker tc = new Typechecker();
+        assertTrue(tc.typecheck(nodes));
+
+        Path classFile = Files.createTempFile("test", ".class");
+        try {
+            CodeGenerator gen = new CodeGenerator(classFile.toString());
+            gen.generateCode(nodes);
+            StringBuilder output = new StringBuilder();
+            ProgramLoader.run(gen.getClassName(), gen.getClassFile(), new BufferedReader(new StringReader(input)),
+                    output);
+            return output.toString();
+        } finally {
+            Files.delete(classFile);
+        }
+    }
+
+    private String runSSM(String program) throws IOException {
+        Lexer l = new Lexer(program);
+        Parser p = new Parser(l.tokenize());
+        List<Declaration> nodes = p.parseSPL();
+        new Typechecker().typecheck(nodes);
+        new codeGeneration.ssm.CodeGenerator("test.ssm").generateCode(nodes, null);
+
+        StringBuilder output = new StringBuilder();
+        try {
+            Machine.load("test.ssm").run(new BufferedReader(new StringReader("")), output);
+        } catch (EOFException | ArithmeticException e) {
+            // The program stopped, with what it printed so far
+        }
+        return output.toString().replace("machine halted\n", "");
+    }
+
+    @Test
+    public void testArithmetic() throws IOException {
+        String result = runSPL("main() :: -> Void { print(1 + 2 * 3 - 10 / 3 % 2); print(-(4 - 6)); }", "");
+        assertEquals("6\n2\n", result);
+
+        result = runSPL("main() :: -> Void { print(100000 * 3); print(-129); print(32767 + 1); }", "");
+        assertEquals("300000\n-129\n32768\n", result);
+    }
+
+    @Test
+    public void testBooleans() throws IOException {
+        String result = runSPL("main() :: -> Void { Bool b = 1 < 2; print(b); print(!b); print(b && 2 < 1); "
+                + "print(!b || 3 >= 3); print('a' == 'a'); print(1 != 1); }", "");
+        assertEquals("-1\n0\n0\n-1\n-1\n0\n", result);
+    }
+
+    @Test
+    public void testShortCircuit() throws IOException {
+        String program = "f() :: -> Bool { print('f'); return True; } "
+                + "main() :: -> Void { if (False && f()) { print('x'); } if (True || f()) { print('y'); } "
+                + "if (!(True && f())) { print('z'); } }";
+        assertEquals("yf", runSPL(program, ""));
+    }
+
+    @Test
+    public void testGlobalsAndLoops() throws IOException {
+        String program = "var total = 0; Int n = 5; "
+                + "main() :: -> Void { while (n > 0) { total = total + n; n = n - 1; } print(total); }";
+        assertEquals("15\n", runSPL(program, ""));
+    }
+
+    @Test
+    public void testListsAndTuples() throws IOException {
+        String program = "main() :: -> Void { [Int] xs = 1 : 2 : []; (Int, Char) t = (3, 'c'); "
+                + "xs.tl.hd = 7; t.snd = 'd'; print(xs.hd + xs.tl.hd); print(isEmpty(xs.tl.tl)); print(t); "
+                + "print(((1, 'a'), 2)); }";
+        assertEquals("8\n-1\n(3\n, 'd')((1\n, 'a'), 2\n)", runSPL(program, ""));
+    }
+
+    @Test
+    public void testRead() throws IOException {
+        String program = "main() :: -> Void { Int i = read(0); Char c = read(1); print(i + 1); print(c); }";
+        assertEquals("Please enter an integer: Please enter a character: 43\nx", runSPL(program, "42\nx\n"));
+    }
+
+    @Test
+    public void testDefaultReturn() throws IOException {
+        String program = "f(x) :: Int -> Int { if (x > 0) { return x; } } "
+                + "g() :: -> [Int] { [Int] xs = []; if (False) { return xs; } } "
+                + "main() :: -> Void { print(f(5)); print(f(-5)); print(isEmpty(g())); }";
+        assertEquals("5\n0\n-1\n", runSPL(program, ""));
+    }
+
+    @Test(expected = ArithmeticException.class)
+    public void testDivisionByZero() throws IOException {
+        runSPL("main() :: -> Void { Int zero = 0; print(1 / zero); }", "");
+    }
+
+    @Test(expected = CompileException.class)
+    public void testPrintBoolInTuple() throws IOException {
+        runSPL("main() :: -> Void { print((True, 1)); }", "");
+    }
+
+    @Test
+    public void testMatchesSSM() throws IOException {
+        // Not tuples_crazy, whose heap runs into its code on the SSM
+        String[] files = {"quick_sort.spl", "insertion_sort.spl", "factorial_recursive.spl",
+                "factorial_imperative.spl", "lists_crazy.spl", "scope_test.spl",
+                "markus/3-ok/functions.spl", "markus/3-ok/lists.spl"};
+        for (String file : files) {
+            String program = ReadSPL.readLineByLineJava8(rootFolder + file);
+            assertEquals(file, runSSM(program), runSPL(program, ""));
+        }
+    }
+}
@@ -1,10 +1,15 @@
 import lexer.*;
 import org.junit.Test;
+import parser.expressions.IdentifierExpression;
+import util.ReadSPL;
 
+import java.io.FileNotFoundException;
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
 
 public class LexerTest {
 
@@ -21,6 +26,99 @@ public class LexerTest {
         assertEquals(TokenType.TOK_EOF, l.nextToken().getType());
     }
 
+    @Test
+    public void testCommentsBetweenTokens() {
+        Lexer l = new Lexer("a /* block\n comment */ / b // trailing comment without a newline");
+        assertEquals(new TokenIdentifier("a"), l.nextToken());
+        assertEquals(TokenType.TOK_DIV, l.nextToken().getType());
+        assertEquals(new TokenIdentifier("b"), l.nextToken());
+        assertEquals(TokenType.TOK_EOF, l.nextToken().getType());
+    }
+
+    @Test
+    public void testUnterminatedBlockComment() {
+        Lexer l = new Lexer("a /* never closed");
+        l.tokenize();
+        assertEquals(1, l.getErrors().size());
+    }
+
+    @Test
+    public void testTokenPosition() {
+        Lexer l = new Lexer("var a = 1;\n/* comment\n */  a = 2;");
+        for (int i = 0; i < 5; i++) {
+            l.nextToken();
+        }
+        assertEquals(new TokenIdentifier("a"), l.nextToken());
+        assertEquals(3, l.getTokenLine());
+        assertEquals(6, l.getTokenColumn());
+        assertEquals(27, l.getTokenOffset());
+    }
+
+    @Test
+    public void testSharedTokens() {
+        Lexer l = new Lexer("+ + True");
+        assertSame(l.nextToken(), l.nextToken());
+        assertSame(TokenBool.TRUE, l.nextToken());
+    }
+
+    @Test
+    public void testMappedSource() throws IOException {
+        String path = "./src/test/resources/splExamples/insertion_sort.spl";
+        List<Token> fromString = new Lexer(ReadSPL.readLineByLineJava8(path)).tokenize();
+        List<Token> fromMappedFile = new Lexer(ReadSPL.mapFile(path)).tokenize();
+        assertEquals(fromString, fromMappedFile);
+    }
+
+    @Test(expected = FileNotFoundException.class)
+    public void testMappedSourceMissingFile() throws IOException {
+        ReadSPL.mapFile("./src/test/resources/splExamples/missing.spl");
+    }
+
+    @Test
+    public void testTokenStream() {
+        String program = ReadSPL.readLineByLineJava8("./src/test/resources/splExamples/insertion_sort.spl");
+        List<Token> tokens = new Lexer(program).tokenize();
+        TokenStream stream = new Lexer(program).tokenizeStream();
+        assertEquals(tokens, stream.toList());
+        assertEquals(tokens, TokenStream.of(tokens).toList());
+    }
+
+    @Test
+    public void testTokenStreamPayload() {
+        TokenStream stream = new Lexer("foo 42 'c' False foo").tokenizeStream();
+        assertEquals(6, stream.size());
+        assertEquals(TokenType.TOK_IDENTIFIER, stream.getType(0));
+        assertEquals("foo", stream.getIdentifier(0));
+        assertEquals(stream.getValue(0), stream.getValue(4));
+        assertEquals(42, stream.getValue(1));
+        assertEquals(4, stream.getOffset(1));
+        assertEquals('c', stream.getValue(2));
+        assertEquals(TokenBool.FALSE, stream.get(3));
+        assertEquals(TokenType.TOK_EOF, stream.getType(5));
+        assertEquals(TokenType.TOK_EOF, stream.getType(100));
+    }
+
+    @Test
+    public void testSymbolTable() {
+        SymbolTable symbols = SymbolTable.global();
+        int id = symbols.intern("symbolTableTest");
+        assertEquals(id, symbols.intern("a symbolTableTest b", 2, 17));
+        assertEquals(id, symbols.lookup("symbolTableTest", 0, 15));
+        assertEquals("symbolTableTest", symbols.name(id));
+        assertEquals(-1, symbols.lookup("symbolTableTestUnknown", 0, 22));
+    }
+
+    @Test
+    public void testInternedIdentifiers() {
+        Lexer l = new Lexer("internedIdentifier + internedIdentifier");
+        Token first = l.nextToken();
+        l.nextToken();
+        Token second = l.nextToken();
+        assertSame(first.getValue(), second.getValue());
+        assertEquals(new IdentifierExpression("internedIdentifier").id,
+                SymbolTable.global().lookup("internedIdentifier", 0, 18));
+    }
+
     @Test
     public void testSingleDigitInteger() {
         Lexer l = new Lexer("5");
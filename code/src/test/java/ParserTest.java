@@ -5,6 +5,7 @@ import parser.declarations.VariableDeclaration;
 import parser.expressions.*;
 import lexer.Lexer;
 import lexer.Token;
+import lexer.TokenStream;
 import lexer.TokenType;
 import org.junit.Test;
 import parser.Parser;
@@ -13,11 +14,21 @@ import parser.exceptions.ParseException;
 import parser.exceptions.SemicolonError;
 import parser.statements.*;
 import util.Node;
+import util.PrettyPrinter;
+import util.ReadSPL;
 
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 
 public class ParserTest {
 
@@ -1526,4 +1537,150 @@ public class ParserTest {
         Parser p = new Parser(tokens);
         p.parseSPL();
     }
+
+    @Test
+    public void testErrorPosition() {
+        Lexer l = new Lexer("main()::->Void\n" +
+                "{\n" +
+                "    [Int] a = 7:8:9[];\n" +
+                "}");
+        Parser p = new Parser(l.tokenizeStream());
+        try {
+            p.parseSPL();
+            fail("Expected a ParseException");
+        } catch (ParseException e) {
+            assertTrue(e.getMessage(), e.getMessage().contains("line 3, column 20: '[Int] a = 7:8:9[];'"));
+        }
+    }
+
+    @Test
+    public void testErrorLineWithoutSource() {
+        Lexer l = new Lexer("foo = bar; this=wrong");
+        Parser p = new Parser(l.tokenize());
+        try {
+            p.parseBlock();
+            fail("Expected a SemicolonError");
+        } catch (SemicolonError e) {
+            assertTrue(e.getMessage(), e.getMessage().contains("Error found in line this=wrong"));
+        }
+    }
+
+    @Test
+    public void testParallelParseMatchesSequential() throws IOException {
+        List<Path> files;
+        try (Stream<Path> paths = Files.walk(Paths.get("./src/test/resources/splExamples"))) {
+            files = paths.filter(path -> path.toString().endsWith(".spl")).sorted().collect(Collectors.toList());
+        }
+        StringBuilder all = new StringBuilder();
+        int compared = 0;
+        for (Path file : files) {
+            String program = ReadSPL.readLineByLineJava8(file.toString());
+            List<Declaration> sequential;
+            try {
+                sequential = new Parser(new Lexer(program).tokenizeStream()).parseSPL();
+            } catch (RuntimeException e) {
+                continue;
+            }
+            all.append(program).append('\n');
+            List<Declaration> parallel = new Parser(new Lexer(program).tokenizeStream()).parseSPLParallel();
+            assertEquals(file.toString(), print(sequential), print(parallel));
+            compared++;
+        }
+        assertTrue(compared > 0);
+
+        // Large enough to be split over several tasks
+        TokenStream tokens = new Lexer(all.toString()).tokenizeStream();
+        assertEquals(print(new Parser(tokens).parseSPL()), print(new Parser(tokens).parseSPLParallel()));
+    }
+
+    @Test(expected = ParseException.class)
+    public void testParallelParseError() {
+        Lexer l = new Lexer("var a = 1;\n" +
+                "main()::->Void\n" +
+                "{\n" +
+                "    [Int] a = 7:8:9[];\n" +
+                "}\n" +
+                "var b = 2;");
+        new Parser(l.tokenizeStream()).parseSPLParallel();
+    }
+
+    @Test
+    public void testRecoveryReportsAllErrors() {
+        Lexer l = new Lexer("var a = 1 +;\n" +
+                "var ok = 2;\n" +
+                "f(x) :: Int -> Int {\n" +
+                "    var y = x;\n" +
+                "    y = y + ;\n" +
+                "    while (x) { x = x - ; }\n" +
+                "    return y;\n" +
+                "}\n" +
+                "g() :: -> Void {\n" +
+                "    print(1)\n" +
+                "    return;\n" +
+                "}\n" +
+                "Int b = ;\n" +
+                "main() :: -> Void {\n" +
+                "    f(1);\n" +
+                "}");
+        Parser p = new Parser(l.tokenizeStream());
+        p.setRecovering(true);
+        List<Declaration> declarations = p.parseSPL();
+
+        List<ParseException> errors = p.getErrors();
+        assertEquals(5, errors.size());
+        assertTrue(errors.get(0).getMessage(), errors.get(0).getMessage().contains("line 1, column 12"));
+        assertTrue(errors.get(1).getMessage(), errors.get(1).getMessage().contains("line 5, column 13"));
+        assertTrue(errors.get(2).getMessage(), errors.get(2).getMessage().contains("line 6, column 25"));
+        assertTrue(errors.get(3) instanceof SemicolonError);
+        assertTrue(errors.get(3).getMessage(), errors.get(3).getMessage().contains("line 11, column 5"));
+        assertTrue(errors.get(4).getMessage(), errors.get(4).getMessage().contains("line 13, column 9"));
+
+        // Only the declarations without errors at the top level remain
+        assertEquals(4, declarations.size());
+        FunctionDeclaration f = (FunctionDeclaration) declarations.get(1);
+        assertEquals(2, f.stats.size());
+    }
+
+    @Test
+    public void testRecoveryWithoutErrors() {
+        String program = ReadSPL.readLineByLineJava8("./src/test/resources/splExamples/quick_sort.spl");
+        Parser p = new Parser(new Lexer(program).tokenizeStream());
+        p.setRecovering(true);
+        List<Declaration> recovered = p.parseSPL();
+
+        assertTrue(p.getErrors().isEmpty());
+        assertEquals(print(new Parser(new Lexer(program).tokenizeStream()).parseSPL()), print(recovered));
+    }
+
+    @Test
+    public void testRecoveryUnclosedFunction() {
+        Lexer l = new Lexer("main() :: -> Void {\n" +
+                "    print(1);\n");
+        Parser p = new Parser(l.tokenizeStream());
+        p.setRecovering(true);
+        assertTrue(p.parseSPL().isEmpty());
+        assertEquals(1, p.getErrors().size());
+    }
+
+    @Test
+    public void testRecoveryCallOnNonIdentifier() {
+        Lexer l = new Lexer("main() :: -> Void {\n" +
+                "    x = (1 + 2)(3);\n" +
+                "    print(1);\n" +
+                "}");
+        Parser p = new Parser(l.tokenizeStream());
+        p.setRecovering(true);
+        List<Declaration> declarations = p.parseSPL();
+
+        assertEquals(1, p.getErrors().size());
+        assertEquals(1, ((FunctionDeclaration) declarations.get(0)).stats.size());
+    }
+
+    private static String print(List<Declaration> declarations) {
+        PrettyPrinter pp = new PrettyPrinter();
+        for (Declaration declaration : declarations) {
+            declaration.accept(pp);
+        }
+        return pp.getResultString();
+    }
 }
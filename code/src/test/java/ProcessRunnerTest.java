@@ -0,0 +1,74 @@
+import cli.ProcessRunner;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.file.Paths;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class ProcessRunnerTest {
+
+    /**
+     * Prints a number of lines to the standard output and error, then exits with code 3.
+     */
+    public static class Printer {
+        public static void main(String[] args) {
+            int lines = Integer.parseInt(args[0]);
+            for (int i = 0; i < lines; i++) {
+                System.out.println("out " + i);
+                System.err.println("err " + i);
+            }
+            System.exit(3);
+        }
+    }
+
+    public static class Sleeper {
+        public static void main(String[] args) throws InterruptedException {
+            System.out.println("sleeping");
+            Thread.sleep(60_000);
+        }
+    }
+
+    private static ProcessBuilder java(Class<?> mainClass, String... args) {
+        String[] command = new String[4 + args.length];
+        command[0] = Paths.get(System.getProperty("java.home"), "bin", "java").toString();
+        command[1] = "-cp";
+        command[2] = System.getProperty("java.class.path");
+        command[3] = mainClass.getName();
+        System.arraycopy(args, 0, command, 4, args.length);
+        return new ProcessBuilder(command);
+    }
+
+    @Test(timeout = 30_000)
+    public void testOutputLargerThanPipe() throws IOException, InterruptedException {
+        // Far more than the pipe buffer of the OS, on both streams
+        int lines = 100_000;
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ByteArrayOutputStream err = new ByteArrayOutputStream();
+        ProcessRunner.Result result = new ProcessRunner(0, out, err).run(java(Printer.class, "" + lines));
+
+        assertEquals(3, result.exitCode);
+        assertFalse(result.timedOut);
+        String[] outLines = out.toString().split(System.lineSeparator());
+        String[] errLines = err.toString().split(System.lineSeparator());
+        assertEquals(lines, outLines.length);
+        assertEquals(lines, errLines.length);
+        assertEquals("out " + (lines - 1), outLines[lines - 1]);
+        assertEquals("err " + (lines - 1), errLines[lines - 1]);
+    }
+
+    @Test(timeout = 30_000)
+    public void testTimeout() throws IOException, InterruptedException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ProcessRunner.Result result = new ProcessRunner(2000, out, new ByteArrayOutputStream())
+                .run(java(Sleeper.class));
+
+        assertTrue(result.timedOut);
+        assertEquals(-1, result.exitCode);
+        assertTrue(result.wallMillis >= 2000);
+        assertEquals("sleeping", out.toString().trim());
+    }
+}
@@ -1,6 +1,10 @@
 import codeGeneration.CompileException;
 import codeGeneration.ssm.CodeGenerator;
 import codeGeneration.ssm.Command;
+import codeGeneration.ssm.Machine;
+import codeGeneration.ssm.ObjectFile;
+import codeGeneration.ssm.Opcode;
+import codeGeneration.ssm.PeepholeOptimizer;
 import codeGeneration.ssm.ProgramWriter;
 import lexer.Lexer;
 import org.junit.ComparisonFailure;
@@ -8,6 +12,7 @@ import org.junit.Test;
 import parser.Parser;
 import parser.declarations.Declaration;
 import typechecker.Typechecker;
+import util.CompilationCache;
 import util.Node;
 import util.ReadSPL;
 
@@ -16,46 +21,60 @@ import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 import java.util.stream.Stream;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
 
 public class SSMCodeGeneratorTest {
 
     private final String rootFolder = "./src/test/resources/splExamples/";
 
     private String runSSM(boolean debug) {
+        StringBuilder output = new StringBuilder();
         try {
-            List<String> command = new ArrayList<>();
-            command.add("java");
-            command.add("-jar");
-            command.add("ssm.jar");
-            command.add("--cli");
-            command.add("--file");
-            command.add("test.ssm");
-            ProcessBuilder builder = new ProcessBuilder(command);
-            final Process process = builder.start();
-            InputStream is = process.getInputStream();
-            InputStreamReader isr = new InputStreamReader(is);
-            BufferedReader br = new BufferedReader(isr);
-
-            String line;
-            String result = br.readLine();
-            if (debug) {
-                while ((line = br.readLine()) != null){
-                    result = result + " " + line;
-//                    System.out.println(line);
-                }
-            }
-            return result;
-
+            Machine.load("test.ssm").run(new BufferedReader(new StringReader("")), output);
+        } catch (EOFException | ArithmeticException e) {
+            // ssm.jar stops as well, with what it printed so far
         } catch (IOException e) {
             return e.getMessage();
         }
+        String[] lines = output.toString().split("\n");
+        return debug ? String.join(" ", lines) : lines[0];
+    }
+
+    private String runSSMJar(String file) throws IOException {
+        List<String> command = new ArrayList<>();
+        command.add("java");
+        command.add("-jar");
+        command.add("ssm.jar");
+        command.add("--cli");
+        command.add("--file");
+        command.add(file);
+        ProcessBuilder builder = new ProcessBuilder(command);
+        final Process process = builder.start();
+        InputStream is = process.getInputStream();
+        InputStreamReader isr = new InputStreamReader(is);
+        BufferedReader br = new BufferedReader(isr);
+
+        StringBuilder result = new StringBuilder();
+        String line;
+        while ((line = br.readLine()) != null) {
+            result.append(line).append('\n');
+        }
+        return result.toString();
     }
 
     private String runSPL(String program, Command postamble, boolean debug){
+        return runSPL(program, postamble, debug, null);
+    }
+
+    private String runSPL(String program, Command postamble, boolean debug, PeepholeOptimizer optimizer){
         Lexer l = new Lexer(program);
         Parser p = new Parser(l.tokenize());
         List<Declaration> nodes = p.parseSPL();
@@ -63,6 +82,7 @@ public class SSMCodeGeneratorTest {
         tc.typecheck(nodes);
 
         CodeGenerator gen = new CodeGenerator("test.ssm");
+        gen.setOptimizer(optimizer);
         try {
             gen.generateCode(nodes, postamble);
         } catch (FileNotFoundException e) {
@@ -90,123 +110,123 @@ public class SSMCodeGeneratorTest {
 
     @Test
     public void testIntegerConstant(){
-        String result = runExpression("42", new Command("trap", "0"), false);
+        String result = runExpression("42", new Command(Opcode.TRAP, 0), false);
         assertEquals("42", result);
     }
 
     @Test
     public void testBoolean(){
-        String result = runExpression("True",new Command("trap", "0"),false);
+        String result = runExpression("True",new Command(Opcode.TRAP, 0),false);
         assertEquals("-1", result);
 
-        result = runExpression("False",new Command("trap", "0"),false);
+        result = runExpression("False",new Command(Opcode.TRAP, 0),false);
         assertEquals("0", result);
 
-        result = runExpression("True != False", new Command("trap", "0"),false);
+        result = runExpression("True != False", new Command(Opcode.TRAP, 0),false);
         //-1 represents True;
         assertEquals("-1", result);
     }
 
     @Test
     public void testCharacterConstant(){
-        String result = runExpression("'a'",new Command("trap", "1"), false);
+        String result = runExpression("'a'",new Command(Opcode.TRAP, 1), false);
         assertEquals("amachine halted", result);
     }
 
     @Test
     public void testPrefix(){
-        String result = runExpression("--1",new Command("trap", "0"), false);
+        String result = runExpression("--1",new Command(Opcode.TRAP, 0), false);
         assertEquals("1", result);
 
-        result = runExpression("!True",new Command("trap", "0"), false);
+        result = runExpression("!True",new Command(Opcode.TRAP, 0), false);
         assertEquals("0", result);
 
-        result = runExpression("!False",new Command("trap", "0"), false);
+        result = runExpression("!False",new Command(Opcode.TRAP, 0), false);
         assertEquals("-1", result);
     }
 
     @Test
     public void testAddition(){
-        String result = runExpression("4 + 2",new Command("trap", "0"), false);
+        String result = runExpression("4 + 2",new Command(Opcode.TRAP, 0), false);
         assertEquals("6", result);
     }
 
     @Test
     public void testAdditionVsMultiplicationPrecedence(){
-        String result = runExpression("4 + 2 * 3 + 2",new Command("trap", "0"), false);
+        String result = runExpression("4 + 2 * 3 + 2",new Command(Opcode.TRAP, 0), false);
         assertEquals("12", result);
     }
 
     @Test
     public void testSubtraction(){
-        String result = runExpression("42-45", new Command("trap", "0"),false);
+        String result = runExpression("42-45", new Command(Opcode.TRAP, 0),false);
         assertEquals("-3", result);
     }
 
     @Test
     public void testSubtractionAssociativity(){
-        String result = runExpression("6 - 3 - 2", new Command("trap", "0"),false);
+        String result = runExpression("6 - 3 - 2", new Command(Opcode.TRAP, 0),false);
         assertEquals("1", result);
-        result = runExpression("6 - (3 - 2)", new Command("trap", "0"),false);
+        result = runExpression("6 - (3 - 2)", new Command(Opcode.TRAP, 0),false);
         assertEquals("5", result);
-        result = runExpression("(6 - 3) - 2",new Command("trap", "0"), false);
+        result = runExpression("(6 - 3) - 2",new Command(Opcode.TRAP, 0), false);
         assertEquals("1", result);
     }
 
     @Test
     public void testAllBinaryOps(){
-        String result = runExpression("42-45",new Command("trap", "0"), false);
+        String result = runExpression("42-45",new Command(Opcode.TRAP, 0), false);
         assertEquals("-3", result);
 
-        result = runExpression("7+3",new Command("trap", "0"), false);
+        result = runExpression("7+3",new Command(Opcode.TRAP, 0), false);
         assertEquals("10", result);
 
-        result = runExpression("7*3",new Command("trap", "0"), false);
+        result = runExpression("7*3",new Command(Opcode.TRAP, 0), false);
         assertEquals("21", result);
 
-        result = runExpression("6/3", new Command("trap", "0"), false);
+        result = runExpression("6/3", new Command(Opcode.TRAP, 0), false);
         assertEquals("2", result);
 
-        result = runExpression("5%3", new Command("trap", "0"), false);
+        result = runExpression("5%3", new Command(Opcode.TRAP, 0), false);
         assertEquals("2", result);
 
-        result = runExpression("5 > 3", new Command("trap", "0"), false);
+        result = runExpression("5 > 3", new Command(Opcode.TRAP, 0), false);
         assertEquals("-1", result);
 
-        result = runExpression("5 < 3", new Command("trap", "0"), false);
+        result = runExpression("5 < 3", new Command(Opcode.TRAP, 0), false);
         assertEquals("0", result);
 
-        result = runExpression("5 >= 5", new Command("trap", "0"), false);
+        result = runExpression("5 >= 5", new Command(Opcode.TRAP, 0), false);
         assertEquals("-1", result);
 
-        result = runExpression("5 >= 6", new Command("trap", "0"), false);
+        result = runExpression("5 >= 6", new Command(Opcode.TRAP, 0), false);
         assertEquals("0", result);
 
-        result = runExpression("5 <= 5", new Command("trap", "0"), false);
+        result = runExpression("5 <= 5", new Command(Opcode.TRAP, 0), false);
         assertEquals("-1", result);
 
-        result = runExpression("5 <= 6", new Command("trap", "0"), false);
+        result = runExpression("5 <= 6", new Command(Opcode.TRAP, 0), false);
         assertEquals("-1", result);
 
-        result = runExpression("6 <= 5", new Command("trap", "0"), false);
+        result = runExpression("6 <= 5", new Command(Opcode.TRAP, 0), false);
         assertEquals("0", result);
 
-        result = runExpression("1 == 1", new Command("trap", "0"), false);
+        result = runExpression("1 == 1", new Command(Opcode.TRAP, 0), false);
         assertEquals("-1", result);
 
-        result = runExpression("1 == 1 && 1 != 0", new Command("trap", "0"), false);
+        result = runExpression("1 == 1 && 1 != 0", new Command(Opcode.TRAP, 0), false);
         assertEquals("-1", result);
     }
 
     @Test
     public void testReadInteger(){
-        String result = runExpression("read(0)", new Command("trap", "0"), false);
+        String result = runExpression("read(0)", new Command(Opcode.TRAP, 0), false);
         assertEquals("Please enter an integer: ", result);
     }
 
     @Test
     public void testReadChar(){
-        String result = runExpression("read(1)", new Command("trap", "1"), false);
+        String result = runExpression("read(1)", new Command(Opcode.TRAP, 1), false);
         assertEquals("Please enter a character: ", result);
     }
 
@@ -379,6 +399,108 @@ public class SSMCodeGeneratorTest {
         assertEquals("0 1 2 3 4 5 6 7 8 8 8 machine halted", result);
     }
 
+    @Test
+    public void nestedLabelsAreUnique() throws IOException {
+        String program = "f(n) :: Int -> Int {\n" +
+                "    Int i = 0;\n" +
+                "    Int s = 0;\n" +
+                "    while (i < n) {\n" +
+                "        if (i % 2 == 0) {\n" +
+                "            while (s < i) {\n" +
+                "                s = s + 1;\n" +
+                "            }\n" +
+                "        } else {\n" +
+                "            if (i == 3) {\n" +
+                "                s = s + 10;\n" +
+                "            }\n" +
+                "        }\n" +
+                "        i = i + 1;\n" +
+                "    }\n" +
+                "    return s;\n" +
+                "}\n" +
+                "main() :: -> Void {\n" +
+                "    Int j = 0;\n" +
+                "    while (j < 2) {\n" +
+                "        if (j == 0) {\n" +
+                "            print(f(5));\n" +
+                "        } else {\n" +
+                "            print(f(2));\n" +
+                "        }\n" +
+                "        j = j + 1;\n" +
+                "    }\n" +
+                "}";
+
+        String result = runSPL(program, null, true);
+        assertEquals("12 0 machine halted", result);
+
+        Set<String> labels = new HashSet<>();
+        for (String line : Files.readAllLines(Paths.get("test.ssm"))) {
+            String label = line.substring(0, ProgramWriter.LENGTH_BRANCH).trim();
+            if (!label.isEmpty()) {
+                assertTrue(label, labels.add(label));
+            }
+        }
+        // f, main, and two labels for each of the four loops and two conditionals
+        assertEquals(2 + 2 * 6, labels.size());
+        assertTrue(labels.contains("0_f_loop:"));
+        assertTrue(labels.contains("0_main_loop:"));
+    }
+
+    @Test
+    public void peepholeOptimizerKeepsOutput() {
+        String[] files = {"markus/3-ok/while.spl", "markus/3-ok/ifThenElse2.spl", "markus/3-ok/functions.spl",
+                "markus/3-ok/lists.spl", "markus/3-ok/tuples.spl", "markus/3-ok/precedence.spl",
+                "markus/3-ok/globalVariables.spl", "insertion_sort.spl", "quick_sort.spl"};
+        for (String file : files) {
+            String program = ReadSPL.readLineByLineJava8(rootFolder + file);
+            String expected = runSPL(program, null, true);
+            assertEquals(file, expected, runSPL(program, null, true, new PeepholeOptimizer()));
+        }
+    }
+
+    private List<String> mnemonics() throws IOException {
+        List<String> mnemonics = new ArrayList<>();
+        for (String line : Files.readAllLines(Paths.get("test.ssm"))) {
+            String[] words = line.substring(line.indexOf(':') + 1).trim().split("\\s+");
+            if (!words[0].isEmpty()) {
+                mnemonics.add(words.length > 1 ? words[0] + " " + words[1] : words[0]);
+            }
+        }
+        return mnemonics;
+    }
+
+    @Test
+    public void peepholeRules() throws IOException {
+        String program = "main() :: -> Void {\n" +
+                "    [Int] xs = 1 : [];\n" +
+                "    Int i = 2 * 3 + 1;\n" +
+                "    while (!isEmpty(xs)) {\n" +
+                "        print(xs.hd + i);\n" +
+                "        xs = xs.tl;\n" +
+                "    }\n" +
+                "    print(i);\n" +
+                "}";
+        assertEquals("8 7 machine halted", runSPL(program, null, true));
+        List<String> plain = mnemonics();
+        assertTrue(plain.contains("nop"));
+        assertTrue(plain.contains("mul"));
+
+        assertEquals("8 7 machine halted", runSPL(program, null, true, new PeepholeOptimizer()));
+        List<String> optimized = mnemonics();
+        assertTrue(optimized.size() < plain.size());
+        // The constants are folded, the cons adds -1 with ldaa, and the condition is a single brf
+        assertTrue(optimized.contains("ldc 7"));
+        assertTrue(optimized.contains("ldaa -1"));
+        for (String mnemonic : new String[]{"nop", "mul", "eq", "not", "sub"}) {
+            assertFalse(mnemonic, optimized.contains(mnemonic));
+        }
+
+        // Only the chosen rules are applied
+        runSPL(program, null, true, new PeepholeOptimizer(PeepholeOptimizer.Rule.parse("nops")));
+        assertFalse(mnemonics().contains("nop"));
+        assertTrue(mnemonics().contains("mul"));
+    }
+
     @Test
     public void test_empty(){
         String program = ReadSPL.readLineByLineJava8(rootFolder + "is_empty.spl");
@@ -453,6 +575,54 @@ public class SSMCodeGeneratorTest {
     }
 
 
+    @Test
+    public void testShortCircuit(){
+        // The right operand is not evaluated, so there is no division by zero
+        String result = runExpression("False && 1 / 0 == 0", new Command(Opcode.TRAP, 0), false);
+        assertEquals("0", result);
+
+        result = runExpression("True || 1 / 0 == 0", new Command(Opcode.TRAP, 0), false);
+        assertEquals("-1", result);
+
+        result = runExpression("True && !(False || 1 > 2)", new Command(Opcode.TRAP, 0), false);
+        assertEquals("-1", result);
+
+        result = runExpression("1 > 2 || !True && True", new Command(Opcode.TRAP, 0), false);
+        assertEquals("0", result);
+    }
+
+    /**
+     * Counts the calls of getNthElement in a program, the right operand of && must not be evaluated when the left
+     * one is False. The counts are the ones the Python code prints.
+     */
+    private String countNthElementCalls(String file, String[][] replacements){
+        String program = "Int calls = 0;\n" + ReadSPL.readLineByLineJava8(rootFolder + file)
+                .replace("return list.hd;", "calls = calls + 1;\n    return list.hd;");
+        for (String[] replacement : replacements) {
+            program = program.replace(replacement[0], replacement[1]);
+        }
+        return runSPL(program, null, true);
+    }
+
+    @Test
+    public void insertionSortShortCircuit(){
+        // The inner loop stops on j >= 0 without getting element -1
+        String result = countNthElementCalls("insertion_sort.spl", new String[][]{
+                {"printList(a);", "printList(a);\n    print(calls);"}});
+        assertEquals("1 2 3 4 5 6 7 8 9 10 11 12 13 14 15 16 17 18 19 20 181 machine halted", result);
+    }
+
+    @Test
+    public void quickSortShortCircuit(){
+        // The scans of the partition check the bounds before getting an element
+        String result = countNthElementCalls("quick_sort.spl", new String[][]{
+                {"while(getNthElement(list, left) < pivot){", "while(left <= end && getNthElement(list, left) < pivot){"},
+                {"while(getNthElement(list, right) > pivot){", "while(right >= begin && getNthElement(list, right) > pivot){"},
+                {"printList(quickSort(a, 0, length-1));", "printList(quickSort(a, 0, length-1));\n    print(calls);"}});
+        assertEquals("1 2 3 4 5 6 7 8 9 10 11 12 13 14 15 16 17 18 19 20 226 machine halted", result);
+    }
+
+
     @Test(expected = CompileException.class)
     public void testNoMain(){
         String program = ReadSPL.readLineByLineJava8(rootFolder + "no_main.spl");
@@ -650,4 +820,142 @@ public class SSMCodeGeneratorTest {
         }
     }
 
-}
\ No newline at end of file
+    private String compile(String program, String cacheFile) throws IOException {
+        List<Declaration> nodes = new Parser(new Lexer(program).tokenizeStream()).parseSPL();
+        CompilationCache cache = cacheFile == null ? null : CompilationCache.load(cacheFile, "ssm", CodeGenerator.CODE_VERSION, nodes);
+        Typechecker tc = new Typechecker();
+        if (cache != null) {
+            tc.setCheckedBefore(cache.reusable());
+        }
+        assertTrue(tc.typecheck(nodes));
+        CodeGenerator gen = new CodeGenerator("test.ssm");
+        gen.setCache(cache);
+        gen.generateCode(nodes, null);
+        if (cache != null) {
+            cache.save();
+        }
+        return new String(Files.readAllBytes(Paths.get("test.ssm")));
+    }
+
+    @Test
+    public void testIncrementalCompilation() throws IOException {
+        File cacheFile = File.createTempFile("quick_sort", ".splcache");
+        cacheFile.delete();
+        String program = ReadSPL.readLineByLineJava8(rootFolder + "quick_sort.spl");
+        List<Declaration> nodes = new Parser(new Lexer(program).tokenizeStream()).parseSPL();
+
+        String expected = compile(program, null);
+        assertEquals(expected, compile(program, cacheFile.getPath()));
+        assertEquals(nodes.size(), CompilationCache.load(cacheFile.getPath(), "ssm", CodeGenerator.CODE_VERSION, nodes).reusable().size());
+        assertEquals(expected, compile(program, cacheFile.getPath()));
+
+        // Only the edited function is compiled again
+        String edited = program.replace("length = length + 1;", "length = length + 2;");
+        List<Declaration> editedNodes = new Parser(new Lexer(edited).tokenizeStream()).parseSPL();
+        assertEquals(nodes.size() - 1, CompilationCache.load(cacheFile.getPath(), "ssm", CodeGenerator.CODE_VERSION,
+                editedNodes).reusable().size());
+        assertEquals(compile(edited, null), compile(edited, cacheFile.getPath()));
+
+        // Another code generator does not use the fragments
+        assertEquals(0, CompilationCache.load(cacheFile.getPath(), "python", CodeGenerator.CODE_VERSION,
+                editedNodes).reusable().size());
+
+        // Nor does another version of the code generator
+        assertEquals(0, CompilationCache.load(cacheFile.getPath(), "ssm", CodeGenerator.CODE_VERSION + 1,
+                editedNodes).reusable().size());
+        cacheFile.delete();
+    }
+
+    @Test
+    public void testIncrementalCompilationGrouping() throws IOException {
+        File cacheFile = File.createTempFile("grouping", ".splcache");
+        cacheFile.delete();
+        String program = "f(x) :: Int -> Int { return (x + 1) * 2; }\n"
+                + "g(a, b, c) :: Int Int Bool -> Bool { return (a == b) == c; }\n"
+                + "main() :: -> Void { print(f(3)); print(g(1, 1, True)); }\n";
+        compile(program, cacheFile.getPath());
+
+        // Only the grouping changes, which the pretty printer does not show
+        String regrouped = program.replace("(x + 1) * 2", "x + 1 * 2");
+        List<Declaration> nodes = new Parser(new Lexer(regrouped).tokenizeStream()).parseSPL();
+        Set<Declaration> reusable = CompilationCache.load(cacheFile.getPath(), "ssm", CodeGenerator.CODE_VERSION,
+                nodes).reusable();
+        assertEquals(nodes.size() - 1, reusable.size());
+        assertFalse(reusable.contains(nodes.get(0)));
+        assertEquals(compile(regrouped, null), compile(regrouped, cacheFile.getPath()));
+
+        // A regrouping that does not typecheck must not be taken from the cache either
+        String illTyped = regrouped.replace("(a == b) == c", "a == (b == c)");
+        nodes = new Parser(new Lexer(illTyped).tokenizeStream()).parseSPL();
+        reusable = CompilationCache.load(cacheFile.getPath(), "ssm", CodeGenerator.CODE_VERSION, nodes).reusable();
+        assertFalse(reusable.contains(nodes.get(1)));
+        cacheFile.delete();
+    }
+
+    @Test
+    public void testMachineMatchesSSMJar() throws IOException {
+        // Also tuples_crazy, whose heap runs into its code and that executes illegal instructions
+        String[] files = {"tuples_crazy.spl", "quick_sort.spl", "lists_crazy.spl", "markus/3-ok/functions.spl",
+                "markus/3-ok/lists.spl"};
+        for (String file : files) {
+            compile(ReadSPL.readLineByLineJava8(rootFolder + file), null);
+            StringBuilder output = new StringBuilder();
+            try {
+                Machine.load("test.ssm").run(new BufferedReader(new StringReader("")), output);
+            } catch (ArithmeticException e) {
+                // ssm.jar stops as well, with what it printed so far
+            }
+            assertEquals(file, runSSMJar("test.ssm"), output.toString());
+        }
+    }
+
+    private String runMachine(String file) throws IOException {
+        StringBuilder output = new StringBuilder();
+        try {
+            Machine.load(file).run(new BufferedReader(new StringReader("")), output);
+        } catch (ArithmeticException e) {
+            // ssm.jar stops as well, with what it printed so far
+        }
+        return output.toString();
+    }
+
+    @Test
+    public void testObjectFile() throws IOException {
+        String[] files = {"quick_sort.spl", "tuples_crazy.spl", "lists_crazy.spl", "markus/3-ok/functions.spl"};
+        File objectFile = File.createTempFile("test", ObjectFile.EXTENSION);
+        try {
+            for (String file : files) {
+                String text = compile(ReadSPL.readLineByLineJava8(rootFolder + file), null);
+                List<Declaration> nodes = new Parser(new Lexer(ReadSPL.readLineByLineJava8(rootFolder + file))
+                        .tokenizeStream()).parseSPL();
+                new Typechecker().typecheck(nodes);
+                new CodeGenerator(objectFile.getPath()).generateCode(nodes, null);
+
+                assertTrue(file, objectFile.length() * 4 < text.length());
+                assertTrue(ObjectFile.isObjectFile(objectFile.getPath()));
+                assertFalse(ObjectFile.isObjectFile("test.ssm"));
+                assertEquals(file, runMachine("test.ssm"), runMachine(objectFile.getPath()));
+                assertEquals(file, Files.readAllLines(Paths.get("test.ssm")),
+                        ObjectFile.read(objectFile.getPath()).disassemble());
+            }
+        } finally {
+            objectFile.delete();
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testTruncatedObjectFile() throws IOException {
+        File objectFile = File.createTempFile("test", ObjectFile.EXTENSION);
+        try {
+            List<Declaration> nodes = new Parser(new Lexer(ReadSPL.readLineByLineJava8(rootFolder
+                    + "quick_sort.spl")).tokenizeStream()).parseSPL();
+            new Typechecker().typecheck(nodes);
+            new CodeGenerator(objectFile.getPath()).generateCode(nodes, null);
+            byte[] bytes = Files.readAllBytes(objectFile.toPath());
+            Files.write(objectFile.toPath(), Arrays.copyOf(bytes, bytes.length / 2));
+            ObjectFile.read(objectFile.getPath());
+        } finally {
+            objectFile.delete();
+        }
+    }
+}
@@ -22,6 +22,7 @@ import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
 public class TypecheckerTest {
@@ -786,4 +787,130 @@ public class TypecheckerTest {
         typecheckSPL(s);
         assertTypecheckFailure();
     }
+
+    @Test
+    public void testEnvironmentScopes() {
+        Environment env = new Environment();
+        int a = lexer.SymbolTable.global().intern("a");
+        int f = lexer.SymbolTable.global().intern("f");
+        EnvironmentType global = new EnvironmentType(Types.intType, true, false, false);
+        env.put(a, global);
+
+        env.enterScope();
+        EnvironmentType local = new EnvironmentType(Types.boolType, false, false, false);
+        env.put(a, local);
+        env.putFunction(f, new EnvironmentType(Types.voidType, true, true, false));
+        assertSame(local, env.get(a));
+
+        env.exitScope();
+        assertSame(global, env.get(a));
+        assertNull(env.getFunction(f));
+    }
+
+    @Test
+    public void testLocalDoesNotLeak() {
+        typecheckSPL("f(x) :: Int -> Int {\n" +
+                "    Bool b = True;\n" +
+                "    return x;\n" +
+                "}\n" +
+                "g(x) :: Bool -> Bool {\n" +
+                "    return x;\n" +
+                "}");
+        assertTypecheckSuccess();
+
+        typecheckSPL("f() :: -> Bool {\n" +
+                "    Bool b = True;\n" +
+                "    return b;\n" +
+                "}\n" +
+                "g() :: -> Bool {\n" +
+                "    return b;\n" +
+                "}");
+        assertTypecheckFailure();
+    }
+
+    @Test
+    public void testTypesAreInterned() {
+        Type nested = Types.listType(Types.tupleType(Types.intType, Types.listType(Types.charType)));
+        assertSame(nested, Types.listType(Types.tupleType(Types.intType, Types.listType(Types.charType))));
+        assertNotSame(nested, Types.listType(Types.tupleType(Types.charType, Types.listType(Types.intType))));
+        assertSame(Types.varType(), Types.varType(null));
+        assertSame(Types.varType(nested), Types.varType(nested));
+
+        // Types written in the program are the same objects as the ones the typechecker builds
+        Lexer l = new Lexer("[(Int, [Char])] a = [];");
+        VariableDeclaration d = (VariableDeclaration) new Parser(l.tokenize()).parseSPL().get(0);
+        assertSame(nested, d.varType);
+    }
+
+    @Test
+    public void testUnifyEmptyLists() {
+        Unifier unifier = new Unifier();
+        Type intList = Types.listType(Types.intType);
+        Type emptyList = Types.listType(Types.emptyListType);
+        assertSame(intList, unifier.unify(intList, emptyList));
+        assertSame(intList, unifier.unify(emptyList, intList));
+        assertSame(emptyList, unifier.unify(emptyList, emptyList));
+        assertNull(unifier.unify(intList, Types.listType(Types.charType)));
+
+        Type tuple = Types.tupleType(Types.emptyListType, Types.listType(Types.boolType));
+        Type other = Types.tupleType(Types.intType, Types.listType(Types.emptyListType));
+        assertSame(Types.tupleType(Types.intType, Types.listType(Types.boolType)), unifier.unify(tuple, other));
+
+        typecheckSPL("var a = (1 : []) : [];\n" +
+                "[[Int]] b = a;");
+        assertTypecheckSuccess();
+    }
+
+    @Test
+    public void testParallelMatchesSequential() throws IOException {
+        List<Path> files;
+        try (Stream<Path> paths = Files.walk(Paths.get(rootFolder))) {
+            files = paths.filter(path -> path.toString().endsWith(".spl")).sorted().collect(Collectors.toList());
+        }
+        StringBuilder all = new StringBuilder();
+        int compared = 0;
+        for (Path file : files) {
+            String program = ReadSPL.readLineByLineJava8(file.toString());
+            Typechecker sequential = new Typechecker();
+            try {
+                sequential.typecheck(new Parser(new Lexer(program).tokenizeStream()).parseSPL());
+            } catch (RuntimeException e) {
+                continue;
+            }
+            all.append(program).append('\n');
+            Typechecker parallel = new Typechecker();
+            parallel.typecheckParallel(new Parser(new Lexer(program).tokenizeStream()).parseSPL());
+            assertEquals(file.toString(), sequential.getAllErrors(), parallel.getAllErrors());
+            compared++;
+        }
+        assertTrue(compared > 0);
+
+        // Large enough to be split over several tasks
+        Typechecker sequential = new Typechecker();
+        sequential.typecheck(new Parser(new Lexer(all.toString()).tokenizeStream()).parseSPL());
+        Typechecker parallel = new Typechecker();
+        parallel.typecheckParallel(new Parser(new Lexer(all.toString()).tokenizeStream()).parseSPL());
+        assertEquals(sequential.getAllErrors(), parallel.getAllErrors());
+    }
+
+    @Test
+    public void testParallelOnlySeesDeclarationsAbove() {
+        String program = "f() :: -> Int {\n" +
+                "    return g() + a;\n" +
+                "}\n" +
+                "var a = 1;\n" +
+                "g() :: -> Int {\n" +
+                "    return f() + a;\n" +
+                "}\n" +
+                "h(a) :: Bool -> Bool {\n" +
+                "    return a;\n" +
+                "}";
+        Typechecker sequential = new Typechecker();
+        sequential.typecheck(new Parser(new Lexer(program).tokenizeStream()).parseSPL());
+        Typechecker parallel = new Typechecker();
+        assertFalse(parallel.typecheckParallel(new Parser(new Lexer(program).tokenizeStream()).parseSPL()));
+        assertEquals(sequential.getAllErrors(), parallel.getAllErrors());
+        assertTrue(parallel.getAllErrors().contains("Function g was not defined."));
+        assertTrue(parallel.getAllErrors().contains("Variable a out of scope or undefined."));
+    }
 }
@@ -0,0 +1,82 @@
+package benchmark;
+
+import util.ReadSPL;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Helpers shared by the benchmarks in this package.
+ * The benchmarks are plain main classes so they do not slow down the test suite. Run them from the code folder with:
+ * <pre>
+ *     mvn test-compile
+ *     java -cp target/classes:target/test-classes benchmark.LexerBenchmark
+ * </pre>
+ */
+public class Benchmark {
+
+    public static final String CORPUS_FOLDER = "./src/test/resources/splExamples/markus/3-ok";
+
+    /**
+     * Builds a large SPL source by repeating the example programs until it has at least the given length.
+     * Function names are repeated as well, so the result parses but does not typecheck.
+     * @param minimumLength minimal number of characters in the result
+     * @return SPL source code
+     */
+    public static String corpus(int minimumLength) {
+        List<String> programs = programs(CORPUS_FOLDER);
+        StringBuilder sb = new StringBuilder(minimumLength + 4096);
+        while (sb.length() < minimumLength) {
+            for (String program : programs) {
+                sb.append(program);
+            }
+        }
+        return sb.toString();
+    }
+
+    public static List<String> programs(String folder) {
+        try (Stream<Path> paths = Files.walk(Paths.get(folder))) {
+            return paths.filter(Files::isRegularFile)
+                    .sorted()
+                    .map(p -> ReadSPL.readLineByLineJava8(p.toString()))
+                    .collect(Collectors.toList());
+        } catch (IOException e) {
+            throw new IllegalStateException("The benchmark corpus could not be read from " + folder, e);
+        }
+    }
+
+    /**
+     * Runs the task a number of times and returns the median wall time of the measured runs.
+     * @param warmups number of runs that are not measured, to let the JIT kick in
+     * @param runs number of measured runs
+     * @param task the code to measure
+     * @return median time in seconds
+     */
+    public static double measure(int warmups, int runs, Runnable task) {
+        for (int i = 0; i < warmups; i++) {
+            task.run();
+        }
+        double[] times = new double[runs];
+        for (int i = 0; i < runs; i++) {
+            long start = System.nanoTime();
+            task.run();
+            times[i] = (System.nanoTime() - start) / 1e9;
+        }
+        Arrays.sort(times);
+        return times[runs / 2];
+    }
+
+    public static void report(String name, double seconds, long bytes) {
+        System.out.println(String.format("%-40s %10.2f ms %10.2f MB/s", name, seconds * 1e3, bytes / seconds / 1e6));
+    }
+
+    public static void report(String name, double seconds) {
+        System.out.println(String.format("%-40s %10.2f ms", name, seconds * 1e3));
+    }
+}
@@ -0,0 +1,55 @@
+package benchmark;
+
+import codeGeneration.ssm.CodeGenerator;
+import lexer.Lexer;
+import parser.Parser;
+import parser.declarations.Declaration;
+import typechecker.Typechecker;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.UncheckedIOException;
+import java.util.List;
+
+/**
+ * Measures SSM code generation, including writing the file, on a generated program with n functions that each hold
+ * a loop and a conditional. Output throughput is reported in MB of SSM code per second.
+ */
+public class CodeGeneratorBenchmark {
+
+    public static void main(String[] args) {
+        int n = args.length > 0 ? Integer.parseInt(args[0]) : 20000;
+        List<Declaration> ast = new Parser(new Lexer(program(n)).tokenizeStream()).parseSPL();
+        new Typechecker().typecheck(ast);
+
+        File output = new File("benchmark.ssm");
+        double seconds = Benchmark.measure(5, 10, () -> {
+            try {
+                new CodeGenerator(output.getPath()).generateCode(ast, null);
+            } catch (FileNotFoundException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+        Benchmark.report(String.format("SSM CodeGenerator (%d functions)", n), seconds, output.length());
+        output.delete();
+    }
+
+    static String program(int n) {
+        StringBuilder program = new StringBuilder();
+        for (int i = 0; i < n; i++) {
+            program.append(String.format("f%d(x) :: Int -> Int {\n" +
+                    "    Int y = 0;\n" +
+                    "    while (y < x) {\n" +
+                    "        if (y %% 2 == 0) {\n" +
+                    "            y = y + %d;\n" +
+                    "        } else {\n" +
+                    "            y = y * 2;\n" +
+                    "        }\n" +
+                    "    }\n" +
+                    "    return y;\n" +
+                    "}\n", i, i));
+        }
+        program.append("main() :: -> Void {\n    print(f0(1));\n}\n");
+        return program.toString();
+    }
+}
@@ -0,0 +1,30 @@
+package benchmark;
+
+import lexer.Lexer;
+import util.ReadSPL;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
+/**
+ * Measures the lexing throughput on a few megabytes of SPL code, both from a String and from a memory-mapped file.
+ */
+public class LexerBenchmark {
+
+    public static void main(String[] args) throws IOException {
+        int size = args.length > 0 ? Integer.parseInt(args[0]) : 8_000_000;
+        String program = Benchmark.corpus(size);
+
+        double seconds = Benchmark.measure(5, 10, () -> new Lexer(program).tokenize());
+        Benchmark.report(String.format("Lexer.tokenize (%d chars)", program.length()), seconds, program.length());
+
+        File file = File.createTempFile("benchmark", ".spl");
+        file.deleteOnExit();
+        Files.write(file.toPath(), program.getBytes(StandardCharsets.US_ASCII));
+        CharSequence mapped = ReadSPL.mapFile(file.getPath());
+        seconds = Benchmark.measure(5, 10, () -> new Lexer(mapped).tokenize());
+        Benchmark.report("Lexer.tokenize (mapped file)", seconds, program.length());
+    }
+}
@@ -0,0 +1,67 @@
+package benchmark;
+
+import codeGeneration.ssm.CodeGenerator;
+import codeGeneration.ssm.ObjectFile;
+import lexer.Lexer;
+import parser.Parser;
+import parser.declarations.Declaration;
+import typechecker.Typechecker;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.List;
+
+/**
+ * Compares the text and the binary format of SSM code on the program of the {@link CodeGeneratorBenchmark}: the size
+ * of the files, the time to write them, and the time to load them into an {@link ObjectFile}, which is what the
+ * {@link codeGeneration.ssm.Machine} does before it runs a program.
+ */
+public class ObjectFileBenchmark {
+
+    public static void main(String[] args) {
+        int n = args.length > 0 ? Integer.parseInt(args[0]) : 20000;
+        List<Declaration> ast = new Parser(new Lexer(CodeGeneratorBenchmark.program(n)).tokenizeStream()).parseSPL();
+        new Typechecker().typecheck(ast);
+
+        File text = new File("benchmark.ssm");
+        File object = new File("benchmark" + ObjectFile.EXTENSION);
+        double writeText = Benchmark.measure(5, 10, () -> generate(ast, text));
+        double writeObject = Benchmark.measure(5, 10, () -> generate(ast, object));
+        Benchmark.report(String.format("write text (%d functions)", n), writeText, text.length());
+        Benchmark.report(String.format("write binary (%d functions)", n), writeObject, object.length());
+
+        double loadText = Benchmark.measure(5, 10, () -> {
+            try {
+                ObjectFile.assemble(Files.readAllLines(text.toPath(), StandardCharsets.UTF_8));
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+        double loadObject = Benchmark.measure(5, 10, () -> {
+            try {
+                ObjectFile.read(object.getPath());
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+        Benchmark.report(String.format("load text (%d functions)", n), loadText, text.length());
+        Benchmark.report(String.format("load binary (%d functions)", n), loadObject, object.length());
+        System.out.println(String.format("%-40s %10.1f times smaller", "binary size",
+                (double) text.length() / object.length()));
+
+        text.delete();
+        object.delete();
+    }
+
+    private static void generate(List<Declaration> ast, File output) {
+        try {
+            new CodeGenerator(output.getPath()).generateCode(ast, null);
+        } catch (FileNotFoundException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
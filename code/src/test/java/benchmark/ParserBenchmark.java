@@ -0,0 +1,46 @@
+package benchmark;
+
+import lexer.Lexer;
+import lexer.TokenStream;
+import parser.Parser;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Measures the parsing throughput, in tokens per second, on the splExamples corpus scaled up to a few megabytes.
+ * The parallel parser scales with the size of the common ForkJoinPool, which can be set with
+ * -Djava.util.concurrent.ForkJoinPool.common.parallelism=N.
+ */
+public class ParserBenchmark {
+
+    public static void main(String[] args) {
+        int size = args.length > 0 ? Integer.parseInt(args[0]) : 8_000_000;
+        String program = Benchmark.corpus(size);
+        TokenStream tokens = new Lexer(program).tokenizeStream();
+
+        double seconds = Benchmark.measure(5, 10, () -> new Parser(tokens).parseSPL());
+        Benchmark.report(String.format("Parser.parseSPL (%d tokens)", tokens.size()), seconds, program.length());
+        System.out.println(String.format("%-40s %10.2f M tokens/s", "", tokens.size() / seconds / 1e6));
+
+        seconds = Benchmark.measure(5, 10, () -> new Parser(tokens).parseSPLParallel());
+        Benchmark.report(String.format("Parser.parseSPLParallel (%d threads)",
+                ForkJoinPool.getCommonPoolParallelism()), seconds, program.length());
+        System.out.println(String.format("%-40s %10.2f M tokens/s", "", tokens.size() / seconds / 1e6));
+
+        // Many small programs, where constructing the parsers is a large part of the work
+        List<TokenStream> programs = new ArrayList<>();
+        for (String example : Benchmark.programs(Benchmark.CORPUS_FOLDER)) {
+            programs.add(new Lexer(example).tokenizeStream());
+        }
+        seconds = Benchmark.measure(5, 10, () -> {
+            for (int i = 0; i < 1000; i++) {
+                for (TokenStream example : programs) {
+                    new Parser(example).parseSPL();
+                }
+            }
+        });
+        Benchmark.report(String.format("%d x Parser.parseSPL", 1000 * programs.size()), seconds);
+    }
+}
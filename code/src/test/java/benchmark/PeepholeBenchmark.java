@@ -0,0 +1,141 @@
+package benchmark;
+
+import codeGeneration.CompileException;
+import codeGeneration.ssm.CodeGenerator;
+import codeGeneration.ssm.Machine;
+import codeGeneration.ssm.PeepholeOptimizer;
+import lexer.Lexer;
+import lexer.TokenException;
+import parser.Parser;
+import parser.declarations.Declaration;
+import parser.exceptions.ParseException;
+import typechecker.Typechecker;
+import util.ReadSPL;
+
+import java.io.BufferedReader;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Counts the SSM instructions that the programs in the splExamples folder execute, without and with the
+ * PeepholeOptimizer, and checks that both print the same. Programs that do not compile are skipped.
+ * <p>
+ * The programs are run by the {@link Machine}, which counts the instructions it executes. Programs that read get no
+ * input and do not halt.
+ */
+public class PeepholeBenchmark {
+
+    private static final String FOLDER = "./src/test/resources/splExamples";
+    private static final long MAX_STEPS = 50_000_000L;
+
+    public static void main(String[] args) throws IOException {
+        String folder = args.length > 0 ? args[0] : FOLDER;
+        List<Path> files;
+        try (Stream<Path> paths = Files.walk(Paths.get(folder))) {
+            files = paths.filter(p -> p.toString().endsWith(".spl")).sorted().collect(Collectors.toList());
+        }
+
+        System.out.println(String.format("%-40s %8s %8s %12s %12s %8s", "program", "size", "size -O",
+                "executed", "executed -O", "saved"));
+        long executed = 0;
+        long optimized = 0;
+        for (Path file : files) {
+            Program before = compile(file, null);
+            Program after = compile(file, new PeepholeOptimizer());
+            if (before == null || after == null) {
+                continue;
+            }
+            Run runBefore = run(before);
+            Run runAfter = run(after);
+            if (!runBefore.output.equals(runAfter.output)) {
+                System.out.println(String.format("%-40s prints %s instead of %s", file.getFileName(),
+                        runAfter.output, runBefore.output));
+            }
+            if (!runBefore.halted || !runAfter.halted) {
+                System.out.println(String.format("%-40s did not halt", file.getFileName()));
+                continue;
+            }
+            executed += runBefore.steps;
+            optimized += runAfter.steps;
+            System.out.println(String.format("%-40s %8d %8d %12d %12d %7.1f%%", file.getFileName(),
+                    before.size, after.size, runBefore.steps, runAfter.steps, saved(runBefore.steps, runAfter.steps)));
+        }
+        System.out.println(String.format("%-40s %8s %8s %12d %12d %7.1f%%", "total", "", "", executed, optimized,
+                saved(executed, optimized)));
+    }
+
+    private static double saved(long before, long after) {
+        return before == 0 ? 0 : 100.0 * (before - after) / before;
+    }
+
+    private static final class Program {
+        final List<String> lines;
+        final int size;
+
+        Program(List<String> lines) {
+            this.lines = lines;
+            this.size = (int) lines.stream().map(PeepholeBenchmark::instruction).filter(i -> !i.isEmpty()).count();
+        }
+    }
+
+    private static Program compile(Path file, PeepholeOptimizer optimizer) throws IOException {
+        List<Declaration> nodes;
+        try {
+            nodes = new Parser(new Lexer(ReadSPL.readLineByLineJava8(file.toString())).tokenizeStream()).parseSPL();
+        } catch (ParseException | TokenException e) {
+            return null;
+        }
+        if (!new Typechecker().typecheck(nodes)) {
+            return null;
+        }
+        Path output = Files.createTempFile("peephole", ".ssm");
+        try {
+            CodeGenerator generator = new CodeGenerator(output.toString());
+            generator.setOptimizer(optimizer);
+            generator.generateCode(nodes, null);
+            return new Program(Files.readAllLines(output));
+        } catch (CompileException e) {
+            return null;
+        } finally {
+            Files.delete(output);
+        }
+    }
+
+    /**
+     * @return the line without its label
+     */
+    private static String instruction(String line) {
+        return line.substring(line.indexOf(':') + 1).trim();
+    }
+
+    private static final class Run {
+        final String output;
+        final long steps;
+        final boolean halted;
+
+        Run(String output, long steps, boolean halted) {
+            this.output = output;
+            this.steps = steps;
+            this.halted = halted;
+        }
+    }
+
+    private static Run run(Program program) throws IOException {
+        Machine machine = new Machine(program.lines);
+        StringBuilder output = new StringBuilder();
+        boolean halted;
+        try {
+            halted = machine.run(new BufferedReader(new StringReader("")), output, MAX_STEPS);
+        } catch (ArithmeticException | EOFException e) {
+            halted = false;
+        }
+        return new Run(output.toString().trim().replace('\n', ' '), machine.getSteps(), halted);
+    }
+}
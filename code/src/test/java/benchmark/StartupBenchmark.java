@@ -0,0 +1,84 @@
+package benchmark;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Measures the wall time of "java -jar compiler.jar -c" on small programs, from starting the JVM until the code is
+ * written and the JVM exits. For files this small that is mostly the start of the JVM and the loading of classes.
+ * <p>
+ * Build the jar first, and optionally a class data archive with the -a option of the compiler:
+ * <pre>
+ *     mvn package -DskipTests
+ *     java -jar target/compiler-1.2.2.jar -a target/compiler.jsa -i src/test/resources/splExamples/quick_sort.spl
+ *     java -cp target/classes:target/test-classes benchmark.StartupBenchmark target/compiler-1.2.2.jar target/compiler.jsa
+ * </pre>
+ */
+public class StartupBenchmark {
+
+    private static final String[] PROGRAMS = {"simple.spl", "quick_sort.spl", "tuples_crazy.spl"};
+    private static final String FOLDER = "./src/test/resources/splExamples/";
+
+    public static void main(String[] args) throws IOException {
+        String jar = args.length > 0 ? args[0] : "target/compiler-1.2.2.jar";
+        String archive = args.length > 1 ? args[1] : null;
+        if (!new File(jar).isFile()) {
+            System.err.println("Build the jar first with: mvn package -DskipTests");
+            return;
+        }
+
+        Path folder = Files.createTempDirectory("startup");
+        for (String program : PROGRAMS) {
+            Path input = folder.resolve(program);
+            Files.copy(Paths.get(FOLDER, program), input, StandardCopyOption.REPLACE_EXISTING);
+
+            String in = input.toString();
+            Benchmark.report(program + " (no CDS)",
+                    Benchmark.measure(2, 10, () -> run(jar, "-Xshare:off", "-c", "-i", in)));
+            Benchmark.report(program + " (JDK CDS)",
+                    Benchmark.measure(2, 10, () -> run(jar, null, "-c", "-i", in)));
+            if (archive != null) {
+                String shared = "-XX:SharedArchiveFile=" + archive;
+                Benchmark.report(program + " (AppCDS)",
+                        Benchmark.measure(2, 10, () -> run(jar, shared, "-c", "-i", in)));
+                Benchmark.report(program + " (AppCDS, python)",
+                        Benchmark.measure(2, 10, () -> run(jar, shared, "-c", "-p", "-i", in)));
+            } else {
+                Benchmark.report(program + " (JDK CDS, python)",
+                        Benchmark.measure(2, 10, () -> run(jar, null, "-c", "-p", "-i", in)));
+            }
+        }
+    }
+
+    // What the compiler prints, like the warnings of the Python backend, would get in between the results
+    private static final File LOG = new File(System.getProperty("java.io.tmpdir"), "startup-benchmark.log");
+
+    private static void run(String jar, String jvmOption, String... args) {
+        List<String> command = new ArrayList<>();
+        command.add(Paths.get(System.getProperty("java.home"), "bin", "java").toString());
+        if (jvmOption != null) {
+            command.add(jvmOption);
+        }
+        command.add("-jar");
+        command.add(jar);
+        command.addAll(Arrays.asList(args));
+        try {
+            Process process = new ProcessBuilder(command)
+                    .redirectOutput(ProcessBuilder.Redirect.appendTo(LOG))
+                    .redirectError(ProcessBuilder.Redirect.appendTo(LOG))
+                    .start();
+            if (process.waitFor() != 0) {
+                throw new IllegalStateException("The compiler failed, see " + LOG + ": " + String.join(" ", command));
+            }
+        } catch (IOException | InterruptedException e) {
+            throw new IllegalStateException("The compiler could not be started", e);
+        }
+    }
+}
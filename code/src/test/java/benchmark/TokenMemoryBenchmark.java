@@ -0,0 +1,40 @@
+package benchmark;
+
+import lexer.Lexer;
+import lexer.Token;
+import lexer.TokenStream;
+
+import java.util.List;
+
+/**
+ * Compares the heap used by the tokens of a large program as a List of Token objects and as a TokenStream.
+ */
+public class TokenMemoryBenchmark {
+
+    public static void main(String[] args) {
+        int size = args.length > 0 ? Integer.parseInt(args[0]) : 8_000_000;
+        String program = Benchmark.corpus(size);
+
+        long before = usedMemory();
+        List<Token> list = new Lexer(program).tokenize();
+        long listBytes = usedMemory() - before;
+        System.out.println(String.format("%-40s %10d tokens %10.2f MB", "List<Token>", list.size(), listBytes / 1e6));
+        list = null;
+
+        before = usedMemory();
+        TokenStream stream = new Lexer(program).tokenizeStream();
+        long streamBytes = usedMemory() - before;
+        System.out.println(String.format("%-40s %10d tokens %10.2f MB", "TokenStream", stream.size(), streamBytes / 1e6));
+
+        double seconds = Benchmark.measure(5, 10, () -> new Lexer(program).tokenizeStream());
+        Benchmark.report("Lexer.tokenizeStream", seconds, program.length());
+    }
+
+    private static long usedMemory() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+}
@@ -0,0 +1,57 @@
+package benchmark;
+
+import lexer.Lexer;
+import parser.Parser;
+import parser.declarations.Declaration;
+import typechecker.Typechecker;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Measures the typechecker on generated programs with n globals and n functions, for growing n.
+ * When checking a function costs a constant amount of work the time per function stays flat, if it grows with n the
+ * typechecker is quadratic in the size of the program.
+ * The parallel typechecker scales with the size of the common ForkJoinPool, which can be set with
+ * -Djava.util.concurrent.ForkJoinPool.common.parallelism=N.
+ */
+public class TypecheckerBenchmark {
+    private static final int WARMUPS = 3;
+    private static final int RUNS = 5;
+
+    public static void main(String[] args) {
+        for (int n = 1000; n <= 16000; n *= 2) {
+            Deque<List<Declaration>> asts = new ArrayDeque<>();
+            String program = program(n);
+            // The typechecker annotates the AST, so every run gets a fresh one
+            for (int i = 0; i < WARMUPS + RUNS; i++) {
+                asts.add(new Parser(new Lexer(program).tokenizeStream()).parseSPL());
+            }
+            double seconds = Benchmark.measure(WARMUPS, RUNS, () -> new Typechecker().typecheck(asts.pop()));
+            Benchmark.report(String.format("Typechecker (%d globals, %d functions)", n, n), seconds);
+            System.out.println(String.format("%-40s %10.2f us per function", "", seconds / n * 1e6));
+
+            for (int i = 0; i < WARMUPS + RUNS; i++) {
+                asts.add(new Parser(new Lexer(program).tokenizeStream()).parseSPL());
+            }
+            seconds = Benchmark.measure(WARMUPS, RUNS, () -> new Typechecker().typecheckParallel(asts.pop()));
+            Benchmark.report(String.format("Typechecker parallel (%d threads)",
+                    ForkJoinPool.getCommonPoolParallelism()), seconds);
+            System.out.println(String.format("%-40s %10.2f us per function", "", seconds / n * 1e6));
+        }
+    }
+
+    private static String program(int n) {
+        StringBuilder program = new StringBuilder();
+        for (int i = 0; i < n; i++) {
+            program.append(String.format("var g%d = %d;\n", i, i));
+        }
+        for (int i = 0; i < n; i++) {
+            program.append(String.format("f%d(x) :: Int -> Int {\n    var y = x + g%d;\n    return y;\n}\n", i, i));
+        }
+        program.append("main() :: -> Void {\n    print(f0(1));\n}\n");
+        return program.toString();
+    }
+}